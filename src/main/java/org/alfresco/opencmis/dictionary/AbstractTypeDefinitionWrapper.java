@@ -35,8 +35,7 @@ import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.opencmis.mapping.CMISMapping;
@@ -86,14 +85,15 @@ public abstract class AbstractTypeDefinitionWrapper implements TypeDefinitionWra
     private static final long serialVersionUID = 1L;
     private Log logger = LogFactory.getLog(AbstractTypeDefinitionWrapper.class);
     
-    protected AbstractTypeDefinition typeDef;
-    protected AbstractTypeDefinition typeDefInclProperties;
+    // volatile so that readers see (re)published definitions without locking
+    protected volatile AbstractTypeDefinition typeDef;
+    protected volatile AbstractTypeDefinition typeDefInclProperties;
 
     protected TypeDefinitionWrapper parent;
 //    protected List<TypeDefinitionWrapper> children;
 
     private String tenantId;
-    private ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock writeLock = new ReentrantLock();
     
     @Override
     public String getTenantId()
@@ -113,21 +113,13 @@ public abstract class AbstractTypeDefinitionWrapper implements TypeDefinitionWra
 
     public TypeDefinition getTypeDefinition(boolean includePropertyDefinitions)
     {
-        lock.readLock().lock();
-        try
+        if (includePropertyDefinitions)
         {
-            if (includePropertyDefinitions)
-            {
-                return typeDefInclProperties;
-            }
-            else
-            {
-                return typeDef;
-            }
+            return typeDefInclProperties;
         }
-        finally
+        else
         {
-            lock.readLock().unlock();
+            return typeDef;
         }
     }
 
@@ -263,29 +255,33 @@ public abstract class AbstractTypeDefinitionWrapper implements TypeDefinitionWra
 
     public void setTypeDefDisplayName(String name)
     {
-        lock.writeLock().lock();
+        writeLock.lock();
         try
         {
             typeDef.setDisplayName(name != null ? name : typeDef.getId());
             typeDefInclProperties.setDisplayName(name != null ? name : typeDef.getId());
+            // re-publish through the volatile fields so lock-free readers see the change
+            setTypeDefinition(typeDef, typeDefInclProperties);
         }
         finally
         {
-            lock.writeLock().unlock();
+            writeLock.unlock();
         }
     }
 
     public void setTypeDefDescription(String desc)
     {
-        lock.writeLock().lock();
+        writeLock.lock();
         try
         {
             typeDef.setDescription(desc != null ? desc : typeDef.getId());
             typeDefInclProperties.setDescription(desc != null ? desc : typeDef.getId());
+            // re-publish through the volatile fields so lock-free readers see the change
+            setTypeDefinition(typeDef, typeDefInclProperties);
         }
         finally
         {
-            lock.writeLock().unlock();
+            writeLock.unlock();
         }
     }
     
@@ -29,10 +29,17 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.opencmis.mapping.CMISMapping;
 import org.alfresco.repo.cache.SimpleCache;
 import org.alfresco.repo.dictionary.CompiledModel;
@@ -70,14 +77,26 @@ public abstract class CMISAbstractDictionaryService extends AbstractLifecycleBea
     protected PropertyLuceneBuilderMapping luceneBuilderMapping;
     protected TenantService tenantService;
 
-    private final ReentrantReadWriteLock registryLock = new ReentrantReadWriteLock();
-    private final WriteLock registryWriteLock = registryLock.writeLock();
-    private final ReadLock registryReadLock = registryLock.readLock();
-
     // note: cache is tenant-aware (if using TransctionalCache impl)
     private SimpleCache<String, CMISDictionaryRegistry> cmisRegistryCache;
     private final String KEY_OPENCMIS_DICTIONARY_REGISTRY = "key.openCmisDictionaryRegistry";
 
+    // precomputed registry cache keys, by tenant (cleared if the CMIS mapping changes)
+    private final ConcurrentMap<String, String> cacheKeysByTenant = new ConcurrentHashMap<String, String>();
+
+    // registries currently being built, by cache key - used to coalesce concurrent misses
+    private final ConcurrentMap<String, FutureTask<CMISDictionaryRegistry>> pendingRegistries = new ConcurrentHashMap<String, FutureTask<CMISDictionaryRegistry>>();
+
+    // parallel construction of type definition wrappers (1 = sequential, the default)
+    private int registryBuildParallelism = 1;
+    private volatile ForkJoinPool registryBuildPool;
+
+    // optional background pre-warm of tenant registries
+    private boolean prewarmRegistries = false;
+    private List<String> prewarmTenantDomains = Collections.emptyList();
+    private final AtomicInteger prewarmCompleted = new AtomicInteger();
+    private volatile int prewarmTotal;
+
     public void setTenantService(TenantService tenantService)
     {
         this.tenantService = tenantService;
@@ -92,6 +111,7 @@ public abstract class CMISAbstractDictionaryService extends AbstractLifecycleBea
     public void setCmisMapping(CMISMapping cmisMapping)
     {
         this.cmisMapping = cmisMapping;
+        this.cacheKeysByTenant.clear();
     }
 
     /**
@@ -143,6 +163,54 @@ public abstract class CMISAbstractDictionaryService extends AbstractLifecycleBea
         this.cmisRegistryCache = singletonCache;
     }
 
+    /**
+     * Set the number of threads used to create type definition wrappers when building a registry.
+     * 
+     * @param registryBuildParallelism
+     *            number of threads, 1 (the default, or less) to build registries sequentially on the calling thread
+     */
+    public void setRegistryBuildParallelism(int registryBuildParallelism)
+    {
+        this.registryBuildParallelism = registryBuildParallelism;
+    }
+
+    /**
+     * Enable building the registries of the default and {@link #setPrewarmTenantDomains(List) configured} tenants in
+     * the background at startup, rather than lazily on the first CMIS call for each tenant.
+     * 
+     * @param prewarmRegistries
+     *            <tt>true</tt> to pre-warm registries at startup
+     */
+    public void setPrewarmRegistries(boolean prewarmRegistries)
+    {
+        this.prewarmRegistries = prewarmRegistries;
+    }
+
+    /**
+     * @param prewarmTenantDomains
+     *            the tenant domains whose registries are built when pre-warming
+     */
+    public void setPrewarmTenantDomains(List<String> prewarmTenantDomains)
+    {
+        this.prewarmTenantDomains = (prewarmTenantDomains == null) ? Collections.<String> emptyList() : prewarmTenantDomains;
+    }
+
+    /**
+     * @return the number of tenant registries built so far by the current (or last) pre-warm
+     */
+    public int getPrewarmedRegistryCount()
+    {
+        return prewarmCompleted.get();
+    }
+
+    /**
+     * @return the number of tenant registries the current (or last) pre-warm is building
+     */
+    public int getPrewarmRegistryTotal()
+    {
+        return prewarmTotal;
+    }
+
     protected interface DictionaryInitializer
     {
         Collection<AbstractTypeDefinitionWrapper> createDefinitions(CMISDictionaryRegistry cmisRegistry);
@@ -163,36 +231,83 @@ public abstract class CMISAbstractDictionaryService extends AbstractLifecycleBea
 
     CMISDictionaryRegistry getRegistry(String tenant)
     {
-        CMISDictionaryRegistry cmisRegistry = null;
-
         String cacheKey = getCacheKey(tenant);
 
-        registryReadLock.lock();
-        try
-        {
-            cmisRegistry = cmisRegistryCache.get(cacheKey);
-        }
-        finally
+        // fast path: registries are published to the cache fully built, so no locking is required to read them
+        CMISDictionaryRegistry cmisRegistry = cmisRegistryCache.get(cacheKey);
+        if (cmisRegistry == null)
         {
-            registryReadLock.unlock();
+            cmisRegistry = buildDictionaryRegistry(tenant, cacheKey);
         }
 
-        if (cmisRegistry == null)
+        return cmisRegistry;
+    }
+
+    /**
+     * Build and publish the registry for the given tenant. Concurrent callers missing on the same key wait for a single
+     * build rather than each creating their own registry.
+     */
+    private CMISDictionaryRegistry buildDictionaryRegistry(final String tenant, String cacheKey)
+    {
+        FutureTask<CMISDictionaryRegistry> task = new FutureTask<CMISDictionaryRegistry>(() -> createDictionaryRegistry(tenant));
+        FutureTask<CMISDictionaryRegistry> existingTask = pendingRegistries.putIfAbsent(cacheKey, task);
+        if (existingTask == null)
         {
-            cmisRegistry = createDictionaryRegistry(tenant);
+            // we won the race - check again in case another thread published while we were getting here
+            CMISDictionaryRegistry cmisRegistry = cmisRegistryCache.get(cacheKey);
+            if (cmisRegistry != null)
+            {
+                pendingRegistries.remove(cacheKey, task);
+                return cmisRegistry;
+            }
 
-            registryWriteLock.lock();
             try
             {
-                cmisRegistryCache.put(cacheKey, cmisRegistry);
+                task.run();
+                cmisRegistry = waitForRegistry(task);
+
+                // only publish if the registry has not been invalidated while it was being built
+                if (pendingRegistries.remove(cacheKey, task))
+                {
+                    cmisRegistryCache.put(cacheKey, cmisRegistry);
+                }
+                return cmisRegistry;
             }
             finally
             {
-                registryWriteLock.unlock();
+                pendingRegistries.remove(cacheKey, task);
             }
         }
+        else
+        {
+            return waitForRegistry(existingTask);
+        }
+    }
 
-        return cmisRegistry;
+    private CMISDictionaryRegistry waitForRegistry(FutureTask<CMISDictionaryRegistry> task)
+    {
+        try
+        {
+            return task.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new AlfrescoRuntimeException("Interrupted while waiting for CMIS dictionary registry", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new AlfrescoRuntimeException("Failed to create CMIS dictionary registry", cause);
+        }
     }
 
     /*
@@ -206,6 +321,11 @@ public abstract class CMISAbstractDictionaryService extends AbstractLifecycleBea
     {
         afterDictionaryInit();
 
+        if (prewarmRegistries)
+        {
+            prewarmRegistries(prewarmTenantDomains);
+        }
+
         // TODO revisit (for KS and/or 1.1)
         if (dictionaryDAO != null)
         {
@@ -227,6 +347,186 @@ public abstract class CMISAbstractDictionaryService extends AbstractLifecycleBea
     @Override
     protected void onShutdown(ApplicationEvent event)
     {
+        ForkJoinPool pool = registryBuildPool;
+        if (pool != null)
+        {
+            registryBuildPool = null;
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Build the registries of the given tenants on a background thread. Progress is available via
+     * {@link #getPrewarmedRegistryCount()} and {@link #getPrewarmRegistryTotal()}.
+     * 
+     * @param tenantDomains
+     *            the tenant domains to pre-warm (the default domain is always built first)
+     * @return the background thread doing the work
+     */
+    public Thread prewarmRegistries(Collection<String> tenantDomains)
+    {
+        final List<String> tenants = new ArrayList<String>(tenantDomains.size() + 1);
+        tenants.add(TenantService.DEFAULT_DOMAIN);
+        for (String tenantDomain : tenantDomains)
+        {
+            if (!tenants.contains(tenantDomain))
+            {
+                tenants.add(tenantDomain);
+            }
+        }
+        prewarmCompleted.set(0);
+        prewarmTotal = tenants.size();
+
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                long start = System.currentTimeMillis();
+                for (final String tenant : tenants)
+                {
+                    try
+                    {
+                        TenantUtil.runAsSystemTenant(new TenantUtil.TenantRunAsWork<CMISDictionaryRegistry>()
+                        {
+                            @Override
+                            public CMISDictionaryRegistry doWork() throws Exception
+                            {
+                                return getRegistry(tenant);
+                            }
+                        }, tenant);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        logger.warn("Failed to pre-warm CMIS dictionary registry for tenant " + tenant, e);
+                    }
+                    int completed = prewarmCompleted.incrementAndGet();
+                    if (logger.isDebugEnabled())
+                    {
+                        logger.debug("Pre-warmed CMIS dictionary registry for tenant " + tenant + " (" + completed + "/"
+                                + tenants.size() + ")");
+                    }
+                }
+                if (logger.isInfoEnabled())
+                {
+                    logger.info("Pre-warmed " + tenants.size() + " CMIS dictionary registries in "
+                            + (System.currentTimeMillis() - start) + "ms");
+                }
+            }
+        }, "CMISDictionaryPrewarm");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private ForkJoinPool getRegistryBuildPool()
+    {
+        if (registryBuildParallelism <= 1)
+        {
+            return null;
+        }
+        ForkJoinPool pool = registryBuildPool;
+        if (pool == null)
+        {
+            synchronized (this)
+            {
+                pool = registryBuildPool;
+                if (pool == null)
+                {
+                    pool = new ForkJoinPool(registryBuildParallelism);
+                    registryBuildPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Create type definition wrappers for the given classes, in parallel if configured to do so. Wrappers are only
+     * created here - registering them with a registry must still be done sequentially by the caller.
+     * 
+     * @param classQNames
+     *            the classes to create wrappers for
+     * @param factory
+     *            creates the wrapper for a class, or returns <tt>null</tt> if the class is not mapped to CMIS
+     * @return the (non-null) wrappers, in the same order as the given classes
+     */
+    protected <T> List<T> createWrappers(Collection<QName> classQNames, final Function<QName, T> factory)
+    {
+        final List<QName> qnames = new ArrayList<QName>(classQNames);
+        ForkJoinPool pool = getRegistryBuildPool();
+        List<T> ret = new ArrayList<T>(qnames.size());
+        if (pool == null || qnames.size() < 2)
+        {
+            for (QName qname : qnames)
+            {
+                T wrapper = factory.apply(qname);
+                if (wrapper != null)
+                {
+                    ret.add(wrapper);
+                }
+            }
+            return ret;
+        }
+
+        // the workers must see the same tenant's dictionary as the calling thread
+        final String tenant = TenantUtil.getCurrentDomain();
+        int chunks = Math.min(qnames.size(), registryBuildParallelism * 4);
+        int chunkSize = (qnames.size() + chunks - 1) / chunks;
+        List<Callable<List<T>>> tasks = new ArrayList<Callable<List<T>>>(chunks);
+        for (int from = 0; from < qnames.size(); from += chunkSize)
+        {
+            final List<QName> chunk = qnames.subList(from, Math.min(from + chunkSize, qnames.size()));
+            tasks.add(new Callable<List<T>>()
+            {
+                @Override
+                public List<T> call() throws Exception
+                {
+                    return TenantUtil.runAsSystemTenant(new TenantUtil.TenantRunAsWork<List<T>>()
+                    {
+                        @Override
+                        public List<T> doWork() throws Exception
+                        {
+                            List<T> wrappers = new ArrayList<T>(chunk.size());
+                            for (QName qname : chunk)
+                            {
+                                wrappers.add(factory.apply(qname));
+                            }
+                            return wrappers;
+                        }
+                    }, tenant);
+                }
+            });
+        }
+
+        try
+        {
+            for (Future<List<T>> future : pool.invokeAll(tasks))
+            {
+                for (T wrapper : future.get())
+                {
+                    if (wrapper != null)
+                    {
+                        ret.add(wrapper);
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new AlfrescoRuntimeException("Interrupted while creating CMIS type definitions", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new AlfrescoRuntimeException("Failed to create CMIS type definitions", cause);
+        }
+        return ret;
     }
 
     private String getCacheKey()
@@ -237,8 +537,13 @@ public abstract class CMISAbstractDictionaryService extends AbstractLifecycleBea
 
     private String getCacheKey(String tenant)
     {
-        String cacheKey = KEY_OPENCMIS_DICTIONARY_REGISTRY + "." + tenant + "."
-                + cmisMapping.getCmisVersion().toString();
+        String cacheKey = cacheKeysByTenant.get(tenant);
+        if (cacheKey == null)
+        {
+            cacheKey = KEY_OPENCMIS_DICTIONARY_REGISTRY + "." + tenant + "."
+                    + cmisMapping.getCmisVersion().toString();
+            cacheKeysByTenant.putIfAbsent(tenant, cacheKey);
+        }
         return cacheKey;
     }
 
@@ -264,17 +569,9 @@ public abstract class CMISAbstractDictionaryService extends AbstractLifecycleBea
         CMISDictionaryRegistry cmisRegistry = createDictionaryRegistry(tenant);
         String cacheKey = getCacheKey(tenant);
 
-        registryWriteLock.lock();
-        try
-        {
-            // publish new registry
-            cmisRegistryCache.put(cacheKey, cmisRegistry);
-
-        }
-        finally
-        {
-            registryWriteLock.unlock();
-        }
+        // publish new registry, superseding any registry still being built from the old dictionary
+        pendingRegistries.remove(cacheKey);
+        cmisRegistryCache.put(cacheKey, cmisRegistry);
 
         return cmisRegistry;
     }
@@ -475,16 +772,9 @@ public abstract class CMISAbstractDictionaryService extends AbstractLifecycleBea
     @Override
     public void afterDictionaryDestroy()
     {
-        registryWriteLock.lock();
-        try
-        {
-            String cacheKey = getCacheKey();
-            cmisRegistryCache.remove(cacheKey);
-        }
-        finally
-        {
-            registryWriteLock.unlock();
-        }
+        String cacheKey = getCacheKey();
+        pendingRegistries.remove(cacheKey);
+        cmisRegistryCache.remove(cacheKey);
     }
 
     @Override
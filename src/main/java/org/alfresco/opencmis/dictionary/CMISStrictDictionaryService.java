@@ -25,15 +25,15 @@
  */
 package org.alfresco.opencmis.dictionary;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 
 import org.alfresco.opencmis.mapping.CMISMapping;
 import org.alfresco.repo.dictionary.CompiledModel;
-import org.alfresco.service.cmr.dictionary.AspectDefinition;
 import org.alfresco.service.cmr.dictionary.AssociationDefinition;
 import org.alfresco.service.cmr.dictionary.ClassDefinition;
-import org.alfresco.service.cmr.dictionary.TypeDefinition;
 import org.alfresco.service.namespace.QName;
 import org.apache.chemistry.opencmis.commons.enums.BaseTypeId;
 import org.apache.chemistry.opencmis.commons.enums.CmisVersion;
@@ -108,38 +108,9 @@ public class CMISStrictDictionaryService extends CMISAbstractDictionaryService
 				
 				model.getClass(model.getTypes().iterator().next().getName());
 
-				for(TypeDefinition typeDef : model.getTypes())
-				{
-					QName classQName = typeDef.getName();
-					AbstractTypeDefinitionWrapper objectTypeDef = createTypeDef(classQName);
-		            if(objectTypeDef != null)
-		            {
-		                cmisRegistry.registerTypeDefinition(objectTypeDef);
-		                ret.add(objectTypeDef);
-		            }
-				}
-
-				for(AssociationDefinition assocDef : model.getAssociations())
-				{
-					QName classQName = assocDef.getName();
-					RelationshipTypeDefintionWrapper assocTypeDef =  createAssocDef(classQName);
-		        	if(assocTypeDef != null)
-		        	{	
-			            cmisRegistry.registerTypeDefinition(assocTypeDef);
-				        ret.add(assocTypeDef);
-		        	}
-				}
-
-				for(AspectDefinition aspectDef : model.getAspects())
-				{
-					QName classQName = aspectDef.getName();
-					AbstractTypeDefinitionWrapper objectTypeDef = createTypeDef(classQName);
-		            if(objectTypeDef != null)
-		            {
-		                cmisRegistry.registerTypeDefinition(objectTypeDef);
-		                ret.add(objectTypeDef);
-		            }
-				}
+				ret.addAll(createTypeDefs(cmisRegistry, getClassNames(model.getTypes())));
+				ret.addAll(createAssocDefs(cmisRegistry, getAssociationNames(model.getAssociations())));
+				ret.addAll(createTypeDefs(cmisRegistry, getClassNames(model.getAspects())));
 
 				return ret;
 		    }
@@ -163,38 +134,9 @@ public class CMISStrictDictionaryService extends CMISAbstractDictionaryService
 		    {
 				Collection<AbstractTypeDefinitionWrapper> ret = new LinkedList<>();
 
-				for(TypeDefinition typeDef : model.getTypes())
-				{
-					QName classQName = typeDef.getName();
-					AbstractTypeDefinitionWrapper objectTypeDef = createTypeDef(classQName);
-		            if(objectTypeDef != null)
-		            {
-		                cmisRegistry.registerTypeDefinition(objectTypeDef);
-		                ret.add(objectTypeDef);
-		            }
-				}
-
-				for(AssociationDefinition assocDef : model.getAssociations())
-				{
-					QName classQName = assocDef.getName();
-					RelationshipTypeDefintionWrapper assocTypeDef =  createAssocDef(classQName);
-		        	if(assocTypeDef != null)
-		        	{	
-			            cmisRegistry.registerTypeDefinition(assocTypeDef);
-				        ret.add(assocTypeDef);
-		        	}
-				}
-
-				for(AspectDefinition aspectDef : model.getAspects())
-				{
-					QName classQName = aspectDef.getName();
-					AbstractTypeDefinitionWrapper objectTypeDef = createTypeDef(classQName);
-		            if(objectTypeDef != null)
-		            {
-		                cmisRegistry.registerTypeDefinition(objectTypeDef);
-		                ret.add(objectTypeDef);
-		            }
-				}
+				ret.addAll(createTypeDefs(cmisRegistry, getClassNames(model.getTypes())));
+				ret.addAll(createAssocDefs(cmisRegistry, getAssociationNames(model.getAssociations())));
+				ret.addAll(createTypeDefs(cmisRegistry, getClassNames(model.getAspects())));
 
 				return ret;
 		    }
@@ -246,19 +188,35 @@ public class CMISStrictDictionaryService extends CMISAbstractDictionaryService
         return objectTypeDef;
     }
 
+    private Collection<QName> getClassNames(Collection<? extends ClassDefinition> classDefs)
+    {
+    	Collection<QName> ret = new ArrayList<>(classDefs.size());
+    	for (ClassDefinition classDef : classDefs)
+    	{
+    		ret.add(classDef.getName());
+    	}
+    	return ret;
+    }
+
+    private Collection<QName> getAssociationNames(Collection<AssociationDefinition> assocDefs)
+    {
+    	Collection<QName> ret = new ArrayList<>(assocDefs.size());
+    	for (AssociationDefinition assocDef : assocDefs)
+    	{
+    		ret.add(assocDef.getName());
+    	}
+    	return ret;
+    }
+
     private Collection<AbstractTypeDefinitionWrapper> createTypeDefs(CMISDictionaryRegistry registry,
     		Collection<QName> classQNames)
     {
-    	Collection<AbstractTypeDefinitionWrapper> ret = new LinkedList<>();
+    	// wrappers may be created in parallel, but are registered in order on this thread
+    	List<AbstractTypeDefinitionWrapper> ret = createWrappers(classQNames, this::createTypeDef);
 
-        for (QName classQName : classQNames)
+        for (AbstractTypeDefinitionWrapper objectTypeDef : ret)
         {
-        	AbstractTypeDefinitionWrapper objectTypeDef = createTypeDef(classQName);
-            if (objectTypeDef != null)
-            {
-                registry.registerTypeDefinition(objectTypeDef);
-                ret.add(objectTypeDef);
-            }
+            registry.registerTypeDefinition(objectTypeDef);
         }
 
         return ret;
@@ -289,17 +247,12 @@ public class CMISStrictDictionaryService extends CMISAbstractDictionaryService
     private Collection<RelationshipTypeDefintionWrapper> createAssocDefs(CMISDictionaryRegistry registry,
     		Collection<QName> classQNames)
     {
-    	Collection<RelationshipTypeDefintionWrapper> ret = new LinkedList<>();
+    	List<RelationshipTypeDefintionWrapper> ret = createWrappers(classQNames, this::createAssocDef);
 
         // register all other relationships
-        for (QName classQName : classQNames)
+        for (RelationshipTypeDefintionWrapper assocTypeDef : ret)
         {
-        	RelationshipTypeDefintionWrapper assocTypeDef = createAssocDef(classQName);
-        	if(assocTypeDef != null)
-        	{	
-	            registry.registerTypeDefinition(assocTypeDef);
-		        ret.add(assocTypeDef);
-        	}
+            registry.registerTypeDefinition(assocTypeDef);
         }
 
         return ret;
@@ -30,12 +30,19 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.alfresco.model.ContentModel;
 import org.alfresco.opencmis.CMISAccessControlFormatEnum;
 import org.alfresco.opencmis.dictionary.QNameFilter;
+import org.alfresco.repo.dictionary.CompiledModel;
+import org.alfresco.repo.dictionary.DictionaryDAO;
+import org.alfresco.repo.dictionary.ExtendedDictionaryListener;
+import org.alfresco.repo.tenant.TenantUtil;
 import org.alfresco.service.cmr.dictionary.AspectDefinition;
 import org.alfresco.service.cmr.dictionary.AssociationDefinition;
+import org.alfresco.service.cmr.dictionary.ClassDefinition;
 import org.alfresco.service.cmr.dictionary.DataTypeDefinition;
 import org.alfresco.service.cmr.dictionary.DictionaryService;
 import org.alfresco.service.cmr.dictionary.TypeDefinition;
@@ -53,10 +60,15 @@ import org.springframework.beans.factory.InitializingBean;
 /**
  * CMIS <-> Alfresco mappings. It additionally excludes a list of QNames based
  * on a user defined list
+ * <p>
+ * The CMIS classification of each Alfresco class (exclusion, validity per base
+ * type, type id) is memoized per tenant. The table is populated when the
+ * dictionary initialises and is discarded whenever the dictionary is
+ * (re-)initialised or destroyed.
  * 
  * @author andyh
  */
-public class CMISMapping implements InitializingBean
+public class CMISMapping implements InitializingBean, ExtendedDictionaryListener
 {
 
     /**
@@ -107,6 +119,7 @@ public class CMISMapping implements InitializingBean
     // Service Dependencies
     protected DictionaryService dictionaryService;
     protected NamespaceService namespaceService;
+    protected DictionaryDAO dictionaryDAO;
 
     // Mappings
     private Map<QName, String> mapAlfrescoQNameToTypeId = new HashMap<QName, String>();
@@ -118,10 +131,15 @@ public class CMISMapping implements InitializingBean
     private QNameFilter filter;
 
     private CmisVersion cmisVersion;
+
+    // memoized classifications, by tenant (cleared when the dictionary is re-initialised)
+    private static final int MAX_CLASSIFICATIONS = 16384;
+    private final ConcurrentMap<String, ConcurrentMap<QName, Classification>> classificationsByTenant = new ConcurrentHashMap<String, ConcurrentMap<QName, Classification>>();
     
     public void setCmisVersion(CmisVersion cmisVersion)
     {
 		this.cmisVersion = cmisVersion;
+		classificationsByTenant.clear();
 	}
     
     public CmisVersion getCmisVersion()
@@ -195,11 +213,17 @@ public class CMISMapping implements InitializingBean
         mapCmisDataTypeToAlfresco.put(PropertyType.DATETIME, DataTypeDefinition.DATETIME);
         mapCmisDataTypeToAlfresco.put(PropertyType.URI, DataTypeDefinition.TEXT);
         mapCmisDataTypeToAlfresco.put(PropertyType.HTML, DataTypeDefinition.TEXT);
+
+        if (dictionaryDAO != null)
+        {
+            dictionaryDAO.registerListener(this);
+        }
     }
 
     public void setFilter(QNameFilter filter)
     {
         this.filter = filter;
+        classificationsByTenant.clear();
     }
 
     /**
@@ -208,6 +232,7 @@ public class CMISMapping implements InitializingBean
     public void setDictionaryService(DictionaryService dictionaryService)
     {
         this.dictionaryService = dictionaryService;
+        classificationsByTenant.clear();
     }
 
     /**
@@ -216,6 +241,19 @@ public class CMISMapping implements InitializingBean
     public void setNamespaceService(NamespaceService namespaceService)
     {
         this.namespaceService = namespaceService;
+        classificationsByTenant.clear();
+    }
+
+    /**
+     * Optional - if set, classifications are memoized and invalidated on
+     * dictionary changes. Without it nothing tells the mapping that the
+     * dictionary has changed, so classes are classified afresh on every use.
+     * 
+     * @param dictionaryDAO dictionaryDAO
+     */
+    public void setDictionaryDAO(DictionaryDAO dictionaryDAO)
+    {
+        this.dictionaryDAO = dictionaryDAO;
     }
 
     /**
@@ -238,6 +276,19 @@ public class CMISMapping implements InitializingBean
      * Is the type excluded from the CMIS dictionary and therefore not visible to clients?
      */
     public boolean isExcluded(QName typeQName)
+    {
+        if (filter == null || typeQName == null)
+        {
+            return false;
+        }
+        if (dictionaryDAO == null)
+        {
+            return computeExcluded(typeQName);
+        }
+        return classify(typeQName).excluded;
+    }
+
+    private boolean computeExcluded(QName typeQName)
     {
     	boolean isExcluded = false;
 
@@ -326,50 +377,71 @@ public class CMISMapping implements InitializingBean
     }
 
     public String getCmisTypeId(QName classQName)
+    {
+        if (dictionaryDAO == null)
+        {
+            BaseTypeId baseTypeId = computeBaseTypeId(classQName, null);
+            return (baseTypeId == null) ? null : getCmisTypeId(baseTypeId, classQName);
+        }
+        Classification classification = classify(classQName);
+        String typeId = classification.typeId;
+        if (typeId == null && classification.baseTypeId != null)
+        {
+            // resolved lazily as not every classified QName has a namespace prefix
+            typeId = getCmisTypeId(classification.baseTypeId, classQName);
+            classification.typeId = typeId;
+        }
+        return typeId;
+    }
+
+    /**
+     * @param classification the classification being built, or <tt>null</tt> to check each base type afresh
+     */
+    private BaseTypeId computeBaseTypeId(QName classQName, Classification classification)
     {
         if (classQName.equals(ContentModel.TYPE_CONTENT))
         {
-            return getCmisTypeId(BaseTypeId.CMIS_DOCUMENT, classQName);
+            return BaseTypeId.CMIS_DOCUMENT;
         }
         if (classQName.equals(ContentModel.TYPE_FOLDER))
         {
-            return getCmisTypeId(BaseTypeId.CMIS_FOLDER, classQName);
+            return BaseTypeId.CMIS_FOLDER;
         }
         if (classQName.equals(CMISMapping.RELATIONSHIP_QNAME))
         {
-            return getCmisTypeId(BaseTypeId.CMIS_RELATIONSHIP, classQName);
+            return BaseTypeId.CMIS_RELATIONSHIP;
         }
         if (classQName.equals(CMISMapping.POLICY_QNAME))
         {
-            return getCmisTypeId(BaseTypeId.CMIS_POLICY, classQName);
+            return BaseTypeId.CMIS_POLICY;
         }
         if (classQName.equals(CMISMapping.ASPECTS_QNAME))
         {
-            return getCmisTypeId(BaseTypeId.CMIS_POLICY, classQName);
+            return BaseTypeId.CMIS_POLICY;
         }
-        if (isValidCmisDocument(classQName))
+        if ((classification == null) ? isValidCmisDocument(classQName) : classification.document)
         {
-            return getCmisTypeId(BaseTypeId.CMIS_DOCUMENT, classQName);
+            return BaseTypeId.CMIS_DOCUMENT;
         }
-        if (isValidCmisFolder(classQName))
+        if ((classification == null) ? isValidCmisFolder(classQName) : classification.folder)
         {
-            return getCmisTypeId(BaseTypeId.CMIS_FOLDER, classQName);
+            return BaseTypeId.CMIS_FOLDER;
         }
-        if (isValidCmisRelationship(classQName))
+        if ((classification == null) ? isValidCmisRelationship(classQName) : classification.relationship)
         {
-            return getCmisTypeId(BaseTypeId.CMIS_RELATIONSHIP, classQName);
+            return BaseTypeId.CMIS_RELATIONSHIP;
         }
-        if (cmisVersion.equals(CmisVersion.CMIS_1_1) && isValidCmisSecondaryType(classQName))
+        if (cmisVersion.equals(CmisVersion.CMIS_1_1) && ((classification == null) ? isValidCmisSecondaryType(classQName) : classification.secondary))
         {
-            return getCmisTypeId(BaseTypeId.CMIS_SECONDARY, classQName);
+            return BaseTypeId.CMIS_SECONDARY;
         }
-        if (cmisVersion.equals(CmisVersion.CMIS_1_1) && isValidCmisItem(classQName))
+        if (cmisVersion.equals(CmisVersion.CMIS_1_1) && ((classification == null) ? isValidCmisItem(classQName) : classification.item))
         {
-            return getCmisTypeId(BaseTypeId.CMIS_ITEM, classQName);
+            return BaseTypeId.CMIS_ITEM;
         }
-        if (cmisVersion.equals(CmisVersion.CMIS_1_0) && isValidCmisPolicy(classQName))
+        if (cmisVersion.equals(CmisVersion.CMIS_1_0) && ((classification == null) ? isValidCmisPolicy(classQName) : classification.policy))
         {
-            return getCmisTypeId(BaseTypeId.CMIS_POLICY, classQName);
+            return BaseTypeId.CMIS_POLICY;
         }
 
         return null;
@@ -420,7 +492,20 @@ public class CMISMapping implements InitializingBean
      */
     public boolean isValidCmisFolder(QName typeQName)
     {
-    	if(isExcluded(typeQName))
+        if (typeQName == null)
+        {
+            return false;
+        }
+        if (dictionaryDAO == null)
+        {
+            return computeValidCmisFolder(typeQName, isExcluded(typeQName));
+        }
+        return classify(typeQName).folder;
+    }
+
+    private boolean computeValidCmisFolder(QName typeQName, boolean excluded)
+    {
+    	if(excluded)
     	{
             return false;
         }
@@ -456,7 +541,20 @@ public class CMISMapping implements InitializingBean
      */
     public boolean isValidCmisDocument(QName typeQName)
     {
-    	if(isExcluded(typeQName))
+        if (typeQName == null)
+        {
+            return false;
+        }
+        if (dictionaryDAO == null)
+        {
+            return computeValidCmisDocument(typeQName, isExcluded(typeQName));
+        }
+        return classify(typeQName).document;
+    }
+
+    private boolean computeValidCmisDocument(QName typeQName, boolean excluded)
+    {
+    	if(excluded)
     	{
             return false;
         }
@@ -491,7 +589,20 @@ public class CMISMapping implements InitializingBean
      */
     public boolean isValidCmisSecondaryType(QName typeQName)
     {
-    	if(isExcluded(typeQName))
+        if (typeQName == null)
+        {
+            return false;
+        }
+        if (dictionaryDAO == null)
+        {
+            return computeValidCmisSecondaryType(typeQName, isExcluded(typeQName));
+        }
+        return classify(typeQName).secondary;
+    }
+
+    private boolean computeValidCmisSecondaryType(QName typeQName, boolean excluded)
+    {
+    	if(excluded)
     	{
             return false;
         }
@@ -530,7 +641,21 @@ public class CMISMapping implements InitializingBean
      * @return boolean
      */
     public boolean isValidCmisPolicy(QName typeQName)
-    {        if (typeQName == null)
+    {
+        if (typeQName == null)
+        {
+            return false;
+        }
+        if (dictionaryDAO == null)
+        {
+            return computeValidCmisPolicy(typeQName);
+        }
+        return classify(typeQName).policy;
+    }
+
+    private boolean computeValidCmisPolicy(QName typeQName)
+    {
+        if (typeQName == null)
         {
             return false;
         }
@@ -576,6 +701,19 @@ public class CMISMapping implements InitializingBean
      * @return boolean
      */
     public boolean isValidCmisRelationship(QName associationQName)
+    {
+        if (associationQName == null)
+        {
+            return false;
+        }
+        if (dictionaryDAO == null)
+        {
+            return computeValidCmisRelationship(associationQName);
+        }
+        return classify(associationQName).relationship;
+    }
+
+    private boolean computeValidCmisRelationship(QName associationQName)
     {
         if (associationQName == null)
         {
@@ -607,6 +745,21 @@ public class CMISMapping implements InitializingBean
     }
     
     public boolean isValidCmisRelationshipEndPoint(QName typeQName)
+    {
+        if (dictionaryDAO == null)
+        {
+            return computeValidCmisRelationshipEndPoint(typeQName);
+        }
+        Boolean endPoint = classify(typeQName).relationshipEndPoint;
+        if (endPoint == null)
+        {
+            // not a class - fail as before
+            return computeValidCmisRelationshipEndPoint(typeQName);
+        }
+        return endPoint.booleanValue();
+    }
+
+    private boolean computeValidCmisRelationshipEndPoint(QName typeQName)
     {
         if(dictionaryService.getClass(typeQName).isAspect())
         {
@@ -639,7 +792,20 @@ public class CMISMapping implements InitializingBean
      */
     public boolean isValidCmisItem(QName typeQName)
     {
-    	if(isExcluded(typeQName))
+        if (typeQName == null)
+        {
+            return false;
+        }
+        if (dictionaryDAO == null)
+        {
+            return computeValidCmisItem(typeQName, isExcluded(typeQName));
+        }
+        return classify(typeQName).item;
+    }
+
+    private boolean computeValidCmisItem(QName typeQName, boolean excluded)
+    {
+    	if(excluded)
     	{
             return false;
         }
@@ -692,6 +858,140 @@ public class CMISMapping implements InitializingBean
 
     
     
+    /**
+     * Gets the memoized classification of a class for the current tenant,
+     * computing it on first use. Only used with a dictionaryDAO, which tells
+     * the mapping when the classifications go stale.
+     */
+    private Classification classify(QName typeQName)
+    {
+        ConcurrentMap<QName, Classification> classifications = getClassifications();
+        Classification classification = classifications.get(typeQName);
+        if (classification == null)
+        {
+            // not computeIfAbsent - classifying a class classifies its parents and association end points
+            classification = new Classification(typeQName);
+            if (classifications.size() >= MAX_CLASSIFICATIONS)
+            {
+                classifications.clear();
+            }
+            Classification existing = classifications.putIfAbsent(typeQName, classification);
+            if (existing != null)
+            {
+                classification = existing;
+            }
+        }
+        return classification;
+    }
+
+    private ConcurrentMap<QName, Classification> getClassifications()
+    {
+        String tenant = TenantUtil.getCurrentDomain();
+        ConcurrentMap<QName, Classification> classifications = classificationsByTenant.get(tenant);
+        if (classifications == null)
+        {
+            classifications = new ConcurrentHashMap<QName, Classification>();
+            ConcurrentMap<QName, Classification> existing = classificationsByTenant.putIfAbsent(tenant, classifications);
+            if (existing != null)
+            {
+                classifications = existing;
+            }
+        }
+        return classifications;
+    }
+
+    /**
+     * CMIS view of an Alfresco class. Immutable apart from the lazily resolved type id.
+     */
+    private final class Classification
+    {
+        private final boolean excluded;
+        private final boolean folder;
+        private final boolean document;
+        private final boolean secondary;
+        private final boolean policy;
+        private final boolean relationship;
+        private final boolean item;
+        // null if the QName is not a class
+        private final Boolean relationshipEndPoint;
+        // null if the QName is not a valid CMIS type
+        private final BaseTypeId baseTypeId;
+        private volatile String typeId;
+
+        private Classification(QName typeQName)
+        {
+            excluded = computeExcluded(typeQName);
+            folder = computeValidCmisFolder(typeQName, excluded);
+            document = computeValidCmisDocument(typeQName, excluded);
+            secondary = computeValidCmisSecondaryType(typeQName, excluded);
+            policy = computeValidCmisPolicy(typeQName);
+            relationship = computeValidCmisRelationship(typeQName);
+            item = computeValidCmisItem(typeQName, excluded);
+            ClassDefinition classDef = dictionaryService.getClass(typeQName);
+            relationshipEndPoint = (classDef == null) ? null : Boolean.valueOf(computeValidCmisRelationshipEndPoint(typeQName));
+            baseTypeId = computeBaseTypeId(typeQName, this);
+        }
+    }
+
+    /**
+     * Classifies all the classes and associations of the current tenant's dictionary.
+     */
+    private void populateClassifications()
+    {
+        for (QName typeQName : dictionaryService.getAllTypes())
+        {
+            classify(typeQName);
+        }
+        for (QName aspectQName : dictionaryService.getAllAspects())
+        {
+            classify(aspectQName);
+        }
+        for (QName associationQName : dictionaryService.getAllAssociations())
+        {
+            classify(associationQName);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.alfresco.repo.dictionary.DictionaryListener#onDictionaryInit()
+     */
+    @Override
+    public void onDictionaryInit()
+    {
+        classificationsByTenant.remove(TenantUtil.getCurrentDomain());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.alfresco.repo.dictionary.DictionaryListener#afterDictionaryInit()
+     */
+    @Override
+    public void afterDictionaryInit()
+    {
+        classificationsByTenant.remove(TenantUtil.getCurrentDomain());
+        populateClassifications();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.alfresco.repo.dictionary.DictionaryListener#afterDictionaryDestroy()
+     */
+    @Override
+    public void afterDictionaryDestroy()
+    {
+        classificationsByTenant.remove(TenantUtil.getCurrentDomain());
+    }
+
+    @Override
+    public void modelAdded(CompiledModel model, String tenantDomain)
+    {
+        classificationsByTenant.remove(tenantDomain);
+    }
+
     /**
      * Given an Alfresco model type map it to the appropriate type. Maps
      * cm:folder and cm:content to the CMIS definitions
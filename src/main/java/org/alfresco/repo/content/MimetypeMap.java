@@ -63,6 +63,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides a bidirectional mapping between well-known mimetypes and the
@@ -358,6 +359,8 @@ public class MimetypeMap implements MimetypeService
 
     private String mimetypeJsonConfigDir;
 
+    private boolean watchMimetypeJsonConfigDir;
+
     private CronExpression cronExpression;
 
     private CronExpression initialAndOnErrorCronExpression;
@@ -366,6 +369,8 @@ public class MimetypeMap implements MimetypeService
     {
         private List<String> mimetypes = new ArrayList<String>(40);
 
+        private Set<String> mimetypeSet = new HashSet<String>(59);
+
         private Map<String, String> extensionsByMimetype = new HashMap<String, String>(59);
 
         private Map<String, String> mimetypesByExtension = new HashMap<String, String>(59);
@@ -380,13 +385,68 @@ public class MimetypeMap implements MimetypeService
 
         private int fileCount;
 
+        // Lookup structures built once the config has been read. Until then the maps above are used directly.
+
+        private ExtensionTable extensionTable;
+
+        private Map<String, Collection<String>> singletonsByMimetype;
+
+        private Collection<String> mimetypesSortedByExtension;
+
+        // The known mimetype (or "" if there is none) for each type Tika has detected, cleared if it gets too big
+        private static final int MAX_TIKA_TYPES = 1024;
+        private final Map<String, String> knownMimetypesByTikaType = new ConcurrentHashMap<String, String>();
+
         private void makeCollectionsReadOnly()
         {
             mimetypes = Collections.unmodifiableList(mimetypes);
+            mimetypeSet = Collections.unmodifiableSet(mimetypeSet);
             extensionsByMimetype = Collections.unmodifiableMap(extensionsByMimetype);
             mimetypesByExtension = Collections.unmodifiableMap(mimetypesByExtension);
             displaysByMimetype = Collections.unmodifiableMap(displaysByMimetype);
             displaysByExtension = Collections.unmodifiableMap(displaysByExtension);
+
+            Map<String, Collection<String>> singletons = new HashMap<String, Collection<String>>(mimetypes.size() * 2);
+            for (String mimetype : mimetypes)
+            {
+                singletons.put(mimetype, Collections.singleton(mimetype));
+            }
+            singletonsByMimetype = singletons;
+            mimetypesSortedByExtension = Collections.unmodifiableList(sortByExtension(mimetypes));
+            extensionTable = new ExtensionTable(mimetypesByExtension);
+        }
+
+        /**
+         * Mimetypes ordered by their default extensions, as previously done on every call to getMimetypes(null).
+         */
+        private List<String> sortByExtension(Collection<String> mimetypes)
+        {
+            List<String> result = new ArrayList<String>(mimetypes);
+            for (int i=result.size()-1; i>= 0; i--)
+            {
+                String extension = extensionsByMimetype.get(result.get(i));
+                result.set(i, extension == null ? EXTENSION_BINARY : extension);
+            }
+            Collections.sort(result);
+            for (int i=result.size()-1; i>= 0; i--)
+            {
+                String mimetype = mimetypesByExtension.get(result.get(i));
+                result.set(i, mimetype == null ? MIMETYPE_BINARY : mimetype);
+            }
+            return result;
+        }
+
+        /**
+         * @return the mimetype for the extension held in {@code str} between {@code start} and {@code end}, ignoring
+         *         case, or {@code null} if unknown.
+         */
+        private String getMimetype(String str, int start, int end)
+        {
+            if (extensionTable != null)
+            {
+                return extensionTable.get(str, start, end);
+            }
+            return mimetypesByExtension.get(str.substring(start, end).toLowerCase());
         }
 
         @Override
@@ -397,6 +457,83 @@ public class MimetypeMap implements MimetypeService
         }
     }
 
+    /**
+     * Read only, open addressing hash table of mimetypes by lowercase extension. Any part of a String may be looked
+     * up ignoring case, so neither a substring nor a lowercase copy of the extension is needed.
+     */
+    private static class ExtensionTable
+    {
+        private final String[] extensions;
+        private final String[] mimetypes;
+        private final int mask;
+
+        private ExtensionTable(Map<String, String> mimetypesByExtension)
+        {
+            int capacity = 2;
+            while (capacity < mimetypesByExtension.size() * 2)
+            {
+                capacity <<= 1;
+            }
+            extensions = new String[capacity];
+            mimetypes = new String[capacity];
+            mask = capacity - 1;
+            for (Map.Entry<String, String> entry : mimetypesByExtension.entrySet())
+            {
+                String extension = entry.getKey();
+                int i = hash(extension, 0, extension.length()) & mask;
+                while (extensions[i] != null && !matches(extensions[i], extension, 0, extension.length()))
+                {
+                    i = (i + 1) & mask;
+                }
+                if (extensions[i] == null)
+                {
+                    extensions[i] = extension;
+                    mimetypes[i] = entry.getValue();
+                }
+            }
+        }
+
+        private String get(String str, int start, int end)
+        {
+            for (int i = hash(str, start, end) & mask; extensions[i] != null; i = (i + 1) & mask)
+            {
+                if (matches(extensions[i], str, start, end))
+                {
+                    return mimetypes[i];
+                }
+            }
+            return null;
+        }
+
+        private static boolean matches(String extension, String str, int start, int end)
+        {
+            return extension.length() == end - start && extension.regionMatches(true, 0, str, start, end - start);
+        }
+
+        // Must be consistent with String.regionMatches(true, ...) so that matching keys have the same hash
+        private static int hash(String str, int start, int end)
+        {
+            int h = 0;
+            for (int i = start; i < end; i++)
+            {
+                char c = str.charAt(i);
+                if (c < 0x80)
+                {
+                    if (c >= 'A' && c <= 'Z')
+                    {
+                        c += 'a' - 'A';
+                    }
+                }
+                else
+                {
+                    c = Character.toLowerCase(Character.toUpperCase(c));
+                }
+                h = 31 * h + c;
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+
     private static class MediaTypeDef
     {
         private String name;
@@ -459,6 +596,12 @@ public class MimetypeMap implements MimetypeService
             return MimetypeMap.this.readConfig();
         }
 
+        @Override
+        public boolean isConfigChanged() throws IOException
+        {
+            return MimetypeMap.this.isConfigChanged();
+        }
+
         @Override
         public Object createData()
         {
@@ -544,6 +687,15 @@ public class MimetypeMap implements MimetypeService
         this.mimetypeJsonConfigDir = mimetypeJsonConfigDir;
     }
 
+    /**
+     * @param watchMimetypeJsonConfigDir if {@code true} the JSON config directories on disk are monitored for changes,
+     *                                   rather than being examined on each scheduled read.
+     */
+    public void setWatchMimetypeJsonConfigDir(boolean watchMimetypeJsonConfigDir)
+    {
+        this.watchMimetypeJsonConfigDir = watchMimetypeJsonConfigDir;
+    }
+
     public void setCronExpression(CronExpression cronExpression)
     {
         this.cronExpression = cronExpression;
@@ -632,6 +784,7 @@ public class MimetypeMap implements MimetypeService
                     }
                 }
             };
+            jsonConfigFileFinder.setWatchDirectories(watchMimetypeJsonConfigDir);
         }
 
         // TikaConfig should be given, but work around it if not
@@ -675,6 +828,24 @@ public class MimetypeMap implements MimetypeService
         return successReadingConfig;
     }
 
+    /**
+     * Only the JSON config is checked for changes, as the XML config comes from the ConfigService, which does not
+     * change once loaded.
+     */
+    public boolean isConfigChanged()
+    {
+        if (jsonConfigFileFinder == null)
+        {
+            return true;
+        }
+        boolean changed = jsonConfigFileFinder.hasChanged("alfresco/mimetypes", logger);
+        if (!changed && mimetypeJsonConfigDir != null && !mimetypeJsonConfigDir.isBlank())
+        {
+            changed = jsonConfigFileFinder.hasChanged(mimetypeJsonConfigDir, logger);
+        }
+        return changed;
+    }
+
     private void registerMimetypes(List<ConfigElement> mimetypes)
     {
         int count = 0;
@@ -691,7 +862,7 @@ public class MimetypeMap implements MimetypeService
             }
             // we store it as lowercase
             mimetype = mimetype.toLowerCase();
-            boolean replacement = data.mimetypes.contains(mimetype);
+            boolean replacement = !data.mimetypeSet.add(mimetype);
             if (!replacement)
             {
                 data.mimetypes.add(mimetype);
@@ -824,12 +995,8 @@ public class MimetypeMap implements MimetypeService
         String mimetype = null;
         if (extension != null)
         {
-            extension = extension.toLowerCase();
             Data data = getData();
-            if (data.mimetypesByExtension.containsKey(extension))
-            {
-                mimetype = data.mimetypesByExtension.get(extension);
-            }
+            mimetype = data.getMimetype(extension, 0, extension.length());
         }
         return mimetype == null ? defaultMimetype : mimetype;
     }
@@ -1071,11 +1238,11 @@ public class MimetypeMap implements MimetypeService
             int index = filename.lastIndexOf('.');
             if (index > -1 && (index < filename.length() - 1))
             {
-                String extension = filename.substring(index + 1).toLowerCase();
                 Data data = getData();
-                if (data.mimetypesByExtension.containsKey(extension))
+                String extensionMimetype = data.getMimetype(filename, index + 1, filename.length());
+                if (extensionMimetype != null)
                 {
-                    mimetype = data.mimetypesByExtension.get(extension);
+                    mimetype = extensionMimetype;
                 }
             }
         }
@@ -1134,18 +1301,19 @@ public class MimetypeMap implements MimetypeService
         // So, detect when this happens and use ours in preference
         String tikaType = type.toString();
         Data data = getData();
-        if (data.mimetypes.contains(tikaType))
+        String knownType = data.knownMimetypesByTikaType.get(tikaType);
+        if (knownType == null)
         {
-            // Alfresco and Tika agree!
-            return tikaType;
+            knownType = getKnownMimetype(data, type, tikaType);
+            if (data.knownMimetypesByTikaType.size() >= Data.MAX_TIKA_TYPES)
+            {
+                data.knownMimetypesByTikaType.clear();
+            }
+            data.knownMimetypesByTikaType.put(tikaType, knownType);
         }
-
-        // Check the aliases
-        SortedSet<MediaType> aliases = tikaConfig.getMediaTypeRegistry().getAliases(type);
-        for (MediaType alias : aliases)
+        if (!knownType.isEmpty())
         {
-            String aliasType = alias.toString();
-            if (data.mimetypes.contains(aliasType)) { return aliasType; }
+            return knownType;
         }
 
         // If we get here, then Tika has identified something that
@@ -1155,6 +1323,27 @@ public class MimetypeMap implements MimetypeService
         return tikaType;
     }
     
+    /**
+     * @return the Tika type or one of its aliases if known to Alfresco, otherwise an empty String.
+     */
+    private String getKnownMimetype(Data data, MediaType type, String tikaType)
+    {
+        if (data.mimetypeSet.contains(tikaType))
+        {
+            // Alfresco and Tika agree!
+            return tikaType;
+        }
+
+        // Check the aliases
+        SortedSet<MediaType> aliases = tikaConfig.getMediaTypeRegistry().getAliases(type);
+        for (MediaType alias : aliases)
+        {
+            String aliasType = alias.toString();
+            if (data.mimetypeSet.contains(aliasType)) { return aliasType; }
+        }
+        return "";
+    }
+
     /**
      * Returns a collection of mimetypes ordered by extension.
      * @param extension to restrict the collection to one entry
@@ -1162,43 +1351,30 @@ public class MimetypeMap implements MimetypeService
     public Collection<String> getMimetypes(String extension)
     {
         Collection<String> sourceMimetypes;
+        Data data = getData();
         if (extension == null)
         {
-            sourceMimetypes = getMimetypes();
-            sourceMimetypes = sortMimetypesByExt(sourceMimetypes);
+            // callers have always been given their own list
+            sourceMimetypes = data.mimetypesSortedByExtension == null
+                    ? data.sortByExtension(data.mimetypes)
+                    : new ArrayList<String>(data.mimetypesSortedByExtension);
         }
         else
         {
-            String mimetype = getMimetype(extension, null);
+            String mimetype = data.getMimetype(extension, 0, extension.length());
             if (mimetype == null)
             {
                 sourceMimetypes = Collections.emptySet();
             }
             else
             {
-                sourceMimetypes = Collections.singleton(mimetype);
+                sourceMimetypes = data.singletonsByMimetype == null ? null : data.singletonsByMimetype.get(mimetype);
+                if (sourceMimetypes == null)
+                {
+                    sourceMimetypes = Collections.singleton(mimetype);
+                }
             }
         }
         return sourceMimetypes;
     }
-
-    /**
-     * Copies and sorts the supplied mimetypes by their file extensions
-     * @param mimetypes to be sorted
-     * @return a new List of sorted mimetypes
-     */
-    private Collection<String> sortMimetypesByExt(Collection<String> mimetypes)
-    {
-        List<String> result = new ArrayList<String>(mimetypes);
-        for (int i=result.size()-1; i>= 0; i--)
-        {
-            result.set(i, getExtension(result.get(i)));
-        }
-        Collections.sort(result);
-        for (int i=result.size()-1; i>= 0; i--)
-        {
-            result.set(i, getMimetype(result.get(i)));
-        }
-        return result;
-    }
 }
@@ -25,15 +25,24 @@
  */
 package org.alfresco.repo.dictionary;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.alfresco.repo.tenant.TenantService;
 import org.alfresco.service.cmr.dictionary.DictionaryException;
+import org.alfresco.service.cmr.dictionary.ModelDefinition;
 import org.alfresco.service.namespace.QName;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -62,6 +71,20 @@ public class DictionaryBootstrap implements DictionaryListener
 
     private Properties globalProperties;
 
+    // Number of models parsed at the same time (1 = parse on the calling thread)
+    private int parseParallelism = Runtime.getRuntime().availableProcessors();
+
+    // Pool shared by all bootstraps to parse model XML, bounded by the number of processors
+    private static ForkJoinPool parsePool;
+
+    // Serialized models by model checksum, shared by all bootstraps - a fresh copy is deserialized for each use,
+    // as compiling a model modifies it
+    private static final int MAX_SERIALIZED_MODELS = 1024;
+    private static final Map<Long, byte[]> serializedModels = new ConcurrentHashMap<Long, byte[]>();
+
+    // Checksum of the model read from each bootstrap resource
+    private final Map<String, Long> modelChecksums = new ConcurrentHashMap<String, Long>();
+
     // Logger
     private static Log logger = LogFactory.getLog(DictionaryBootstrap.class);
     
@@ -106,6 +129,16 @@ public class DictionaryBootstrap implements DictionaryListener
         this.models = modelResources;
     }
     
+    /**
+     * Sets the number of threads used to parse the bootstrap models
+     * 
+     * @param parseParallelism number of threads, 1 (or less) to parse models on the calling thread
+     */
+    public void setParseParallelism(int parseParallelism)
+    {
+        this.parseParallelism = parseParallelism;
+    }
+
     /**
      * Sets the initial list of models to bootstrap with
      * 
@@ -155,17 +188,38 @@ public class DictionaryBootstrap implements DictionaryListener
         
         if ((tenantService == null) || (! tenantService.isTenantUser()))
         {
-            // register models
-            for (String bootstrapModel : models)
+            // read model resources - unless already read, and serialized, by an earlier initialisation
+            long readStartTime = System.currentTimeMillis();
+            List<byte[]> modelContents = new ArrayList<byte[]>(models.size());
+            boolean[] serialized = new boolean[models.size()];
+            int serializedCnt = 0;
+            for (int i = 0; i < models.size(); i++)
             {
-                InputStream modelStream = getClass().getClassLoader().getResourceAsStream(bootstrapModel);
-                if (modelStream == null)
+                byte[] content = getSerializedModel(models.get(i));
+                serialized[i] = (content != null);
+                if (serialized[i])
+                {
+                    serializedCnt++;
+                }
+                else
                 {
-                    throw new DictionaryException("d_dictionary.bootstrap.model_not_found", bootstrapModel);
+                    content = readModel(models.get(i));
                 }
+                modelContents.add(content);
+            }
+
+            // parse models - in parallel; each model is a fresh copy, as compiling a model modifies it
+            long parseStartTime = System.currentTimeMillis();
+            M2Model[] parsed = parseModels(modelContents, serialized);
+
+            // register (and compile) models - in order, as models depend on those before them
+            long compileStartTime = System.currentTimeMillis();
+            for (int i = 0; i < models.size(); i++)
+            {
+                String bootstrapModel = models.get(i);
+                M2Model model = parsed[i];
                 try
                 {
-                    M2Model model = M2Model.createModel(modelStream);
                     model.setConfigProperties(globalProperties);
                     
                     if (logger.isDebugEnabled())
@@ -179,18 +233,8 @@ public class DictionaryBootstrap implements DictionaryListener
                 {
                     throw new DictionaryException("d_dictionary.bootstrap.model_not_imported", e, bootstrapModel);
                 }
-                finally
-                {
-                    try
-                    {
-                        modelStream.close();
-                    } 
-                    catch (IOException ioe)
-                    {
-                        logger.warn("Failed to close model input stream for '"+bootstrapModel+"': "+ioe);
-                    }
-                }
             }
+            long endTime = System.currentTimeMillis();
             
             Collection<QName> modelsAfter = dictionaryDAO.getModels(true);
             int modelsAfterCnt = (modelsAfter != null ? modelsAfter.size() : 0);
@@ -198,8 +242,178 @@ public class DictionaryBootstrap implements DictionaryListener
             if (logger.isDebugEnabled())
             {
                 logger.debug("Model count: before="+modelsBeforeCnt+", load="+models.size()+", after="+modelsAfterCnt+" in "+(System.currentTimeMillis()-startTime)+" msecs ["+Thread.currentThread()+"]");
+                logger.debug("Model phases: read="+(parseStartTime-readStartTime)+" msecs, parse="+(compileStartTime-parseStartTime)+
+                        " msecs ("+serializedCnt+" from serialized models), compile="+(endTime-compileStartTime)+" msecs");
+            }
+        }
+    }
+
+    private byte[] readModel(String bootstrapModel)
+    {
+        InputStream modelStream = getClass().getClassLoader().getResourceAsStream(bootstrapModel);
+        if (modelStream == null)
+        {
+            throw new DictionaryException("d_dictionary.bootstrap.model_not_found", bootstrapModel);
+        }
+        try
+        {
+            return modelStream.readAllBytes();
+        }
+        catch (IOException e)
+        {
+            throw new DictionaryException("d_dictionary.bootstrap.model_not_imported", e, bootstrapModel);
+        }
+        finally
+        {
+            try
+            {
+                modelStream.close();
+            } 
+            catch (IOException ioe)
+            {
+                logger.warn("Failed to close model input stream for '"+bootstrapModel+"': "+ioe);
+            }
+        }
+    }
+
+    private byte[] getSerializedModel(String bootstrapModel)
+    {
+        Long checksum = modelChecksums.get(bootstrapModel);
+        return (checksum == null ? null : serializedModels.get(checksum));
+    }
+
+    private void putSerializedModel(String bootstrapModel, M2Model model)
+    {
+        // serialized before the model is compiled
+        long checksum = model.getChecksum(ModelDefinition.XMLBindingType.DEFAULT);
+        if (!serializedModels.containsKey(checksum))
+        {
+            ByteArrayOutputStream xml = new ByteArrayOutputStream();
+            model.toXML(ModelDefinition.XMLBindingType.DEFAULT, xml);
+            if (serializedModels.size() >= MAX_SERIALIZED_MODELS)
+            {
+                serializedModels.clear();
+            }
+            serializedModels.put(checksum, xml.toByteArray());
+        }
+        modelChecksums.put(bootstrapModel, checksum);
+    }
+
+    private M2Model parseModel(String bootstrapModel, byte[] content, boolean serialized)
+    {
+        try
+        {
+            M2Model model = M2Model.createModel(new ByteArrayInputStream(content));
+            if (!serialized)
+            {
+                putSerializedModel(bootstrapModel, model);
+            }
+            return model;
+        }
+        catch(DictionaryException e)
+        {
+            throw new DictionaryException("d_dictionary.bootstrap.model_not_imported", e, bootstrapModel);
+        }
+    }
+
+    private M2Model[] parseModels(final List<byte[]> modelContents, final boolean[] serialized)
+    {
+        final M2Model[] parsed = new M2Model[modelContents.size()];
+        final int tasks = Math.min(parseParallelism, parsed.length);
+        if (tasks <= 1)
+        {
+            for (int i = 0; i < parsed.length; i++)
+            {
+                parsed[i] = parseModel(models.get(i), modelContents.get(i), serialized[i]);
+            }
+            return parsed;
+        }
+
+        // each task parses every n-th model, so no more than parseParallelism models are parsed at once
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        List<Callable<Void>> parseTasks = new ArrayList<Callable<Void>>(tasks);
+        for (int task = 0; task < tasks; task++)
+        {
+            final int first = task;
+            parseTasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    // model bindings are looked up via the context class loader
+                    Thread thread = Thread.currentThread();
+                    ClassLoader previous = thread.getContextClassLoader();
+                    thread.setContextClassLoader(classLoader);
+                    try
+                    {
+                        for (int i = first; i < parsed.length; i += tasks)
+                        {
+                            try
+                            {
+                                parsed[i] = parseModel(models.get(i), modelContents.get(i), serialized[i]);
+                            }
+                            catch (DictionaryException e)
+                            {
+                                throw e;
+                            }
+                            catch (RuntimeException e)
+                            {
+                                throw new DictionaryException("d_dictionary.bootstrap.model_not_imported", e, models.get(i));
+                            }
+                        }
+                    }
+                    finally
+                    {
+                        thread.setContextClassLoader(previous);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try
+        {
+            for (Future<Void> result : getParsePool().invokeAll(parseTasks))
+            {
+                result.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new DictionaryException("d_dictionary.bootstrap.model_not_imported", e, getFirstUnparsedModel(parsed));
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
             }
+            throw new DictionaryException("d_dictionary.bootstrap.model_not_imported", e.getCause(), getFirstUnparsedModel(parsed));
+        }
+        return parsed;
+    }
+
+    private String getFirstUnparsedModel(M2Model[] parsed)
+    {
+        for (int i = 0; i < parsed.length; i++)
+        {
+            if (parsed[i] == null)
+            {
+                return models.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static synchronized ForkJoinPool getParsePool()
+    {
+        // worker threads are daemons and end when idle, so the pool does not need to be shut down
+        if (parsePool == null)
+        {
+            parsePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
         }
+        return parsePool;
     }
     
     /*
@@ -228,5 +442,6 @@ public class DictionaryBootstrap implements DictionaryListener
         {
             I18NUtil.registerResourceBundle(resourceBundle);
         }
+        M2Label.clearLabels();
     }
 }
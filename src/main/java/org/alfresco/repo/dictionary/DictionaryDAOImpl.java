@@ -227,6 +227,8 @@ public class DictionaryDAOImpl implements DictionaryDAO, NamespaceDAO,
 
         // TODO Should be reworked when ACE-2001 will be implemented
         dictionaryRegistryCache.remove(tenant);
+        // message bundles are re-registered along with the models
+        M2Label.clearLabels();
 
         if (logger.isDebugEnabled())
         {
@@ -275,6 +277,7 @@ public class DictionaryDAOImpl implements DictionaryDAO, NamespaceDAO,
         QName modelName = compiledModel.getModelDefinition().getName();
 
         getTenantDictionaryRegistry().putModel(compiledModel);
+        M2Label.clearLabels();
 
         if (logger.isTraceEnabled())
         {
@@ -297,6 +300,7 @@ public class DictionaryDAOImpl implements DictionaryDAO, NamespaceDAO,
     public void removeModel(QName modelName)
     {
         getTenantDictionaryRegistry().removeModel(modelName);
+        M2Label.clearLabels();
     }
 
     private DictionaryRegistry getTenantDictionaryRegistry()
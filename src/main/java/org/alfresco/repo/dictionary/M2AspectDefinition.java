@@ -44,16 +44,18 @@ import org.alfresco.service.namespace.QName;
 /*package*/ class M2AspectDefinition extends M2ClassDefinition
     implements AspectDefinition
 {
+    private final M2Label aspectLabel;
 
     /*package*/ M2AspectDefinition(ModelDefinition model, M2Aspect m2Aspect, NamespacePrefixResolver resolver, Map<QName, PropertyDefinition> modelProperties, Map<QName, AssociationDefinition> modelAssociations)
     {
         super(model, m2Aspect, resolver, modelProperties, modelAssociations);
+        this.aspectLabel = new M2Label(model, "aspect", name);
     }
 
     @Override
     public String getDescription(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(model, messageLookup, "aspect", name, "description");
+        String value = aspectLabel.getDescription(messageLookup);
         
         // if we don't have a description call the super class
         if (value == null)
@@ -67,7 +69,7 @@ import org.alfresco.service.namespace.QName;
     @Override
     public String getTitle(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(model, messageLookup, "aspect", name, "title");
+        String value = aspectLabel.getTitle(messageLookup);
         
         // if we don't have a title call the super class
         if (value == null)
@@ -56,6 +56,7 @@ import org.alfresco.util.EqualsHelper;
     private QName sourceRoleName;
     private QName targetRoleName;
     private transient MessageLookup staticMessageLookup = new StaticMessageLookup();
+    private M2Label label;
     
     
     /**
@@ -75,6 +76,7 @@ import org.alfresco.util.EqualsHelper;
         this.targetClassName = QName.createQName(assoc.getTargetClassName(), resolver);
         this.sourceRoleName = QName.createQName(assoc.getSourceRoleName(), resolver);
         this.targetRoleName = QName.createQName(assoc.getTargetRoleName(), resolver);
+        this.label = new M2Label(classDef.getModel(), "association", name);
     }
     
     @Override
@@ -147,7 +149,7 @@ import org.alfresco.util.EqualsHelper;
     @Override
     public String getTitle(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(classDef.getModel(), messageLookup, "association", name, "title"); 
+        String value = label.getTitle(messageLookup); 
         if (value == null)
         {
             value = assoc.getTitle();
@@ -159,7 +161,7 @@ import org.alfresco.util.EqualsHelper;
     @Override
     public String getDescription(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(classDef.getModel(), messageLookup, "association", name, "description"); 
+        String value = label.getDescription(messageLookup); 
         if (value == null)
         {
             value = assoc.getDescription();
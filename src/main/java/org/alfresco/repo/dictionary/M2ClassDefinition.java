@@ -96,6 +96,7 @@ import org.alfresco.util.EqualsHelper;
     private Boolean inheritedIncludedInSuperTypeQuery = null;
     private String  analyserResourceBundleName;
     private transient MessageLookup staticMessageLookup = new StaticMessageLookup();
+    private M2Label label;
     
     /**
      * Construct
@@ -116,6 +117,7 @@ import org.alfresco.util.EqualsHelper;
         {
             throw new DictionaryException(ERR_CLASS_NOT_DEFINED_NAMESPACE, name.toPrefixString(), name.getNamespaceURI(), model.getName().toPrefixString());
         }
+        this.label = new M2Label(model, "class", name);
         this.archive = m2Class.getArchive();
         this.includedInSuperTypeQuery = m2Class.getIncludedInSuperTypeQuery();
         if (m2Class.getParentName() != null && m2Class.getParentName().length() > 0)
@@ -397,7 +399,7 @@ import org.alfresco.util.EqualsHelper;
      */
     public String getTitle(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(model, messageLookup, "class", name, "title"); 
+        String value = label.getTitle(messageLookup); 
         if (value == null)
         {
             value = m2Class.getTitle();
@@ -410,7 +412,7 @@ import org.alfresco.util.EqualsHelper;
      */
     public String getDescription(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(model, messageLookup, "class", name, "description"); 
+        String value = label.getDescription(messageLookup); 
         if (value == null)
         {
             value = m2Class.getDescription();
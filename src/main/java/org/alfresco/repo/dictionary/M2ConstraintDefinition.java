@@ -80,6 +80,7 @@ import org.springframework.beans.PropertyAccessException;
     private Constraint constraint;
     private boolean resolving;
     private transient MessageLookup staticMessageLookup = new StaticMessageLookup();
+    private M2Label label;
 
     /* package */M2ConstraintDefinition(M2PropertyDefinition m2PropertyDef, M2Constraint m2Constraint,
             NamespacePrefixResolver prefixResolver)
@@ -115,6 +116,7 @@ import org.springframework.beans.PropertyAccessException;
                 throw new DictionaryException(ERR_NAMESPACE_NOT_DEFINED, name.toPrefixString(), name.getNamespaceURI(), model.getName().toPrefixString());
             }
         }
+        this.label = new M2Label(model, "constraint", name);
     }
 
     /* package */synchronized void resolveDependencies(ModelQuery query, boolean enableConstraintClassLoading)
@@ -336,7 +338,7 @@ import org.springframework.beans.PropertyAccessException;
     @Override
     public String getTitle(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(model, messageLookup, "constraint", name, "title"); 
+        String value = label.getTitle(messageLookup); 
         if (value == null)
         {
             value = m2Constraint.getTitle();
@@ -347,7 +349,7 @@ import org.springframework.beans.PropertyAccessException;
     @Override
     public String getDescription(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(model, messageLookup, "constraint", name, "description"); 
+        String value = label.getDescription(messageLookup); 
         if (value == null)
         {
             value = m2Constraint.getDescription();
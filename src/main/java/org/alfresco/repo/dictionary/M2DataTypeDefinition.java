@@ -56,6 +56,7 @@ import org.alfresco.service.namespace.QName;
     private M2DataType dataType;
     private String  analyserResourceBundleName;
     private transient MessageLookup staticMessageLookup = new StaticMessageLookup();
+    private M2Label label;
     
     
     /*package*/ M2DataTypeDefinition(ModelDefinition model, M2DataType propertyType, NamespacePrefixResolver resolver)
@@ -66,6 +67,7 @@ import org.alfresco.service.namespace.QName;
         {
             throw new DictionaryException(ERR_NOT_DEFINED_NAMESPACE, name.toPrefixString(), name.getNamespaceURI(), model.getName().toPrefixString());
         }
+        this.label = new M2Label(model, "datatype", name);
         this.dataType = propertyType;
         this.analyserResourceBundleName = dataType.getAnalyserResourceBundleName();
     }
@@ -127,7 +129,7 @@ import org.alfresco.service.namespace.QName;
     @Override
     public String getTitle(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(model, messageLookup, "datatype", name, "title"); 
+        String value = label.getTitle(messageLookup); 
         if (value == null)
         {
             value = dataType.getTitle();
@@ -138,7 +140,7 @@ import org.alfresco.service.namespace.QName;
     @Override
     public String getDescription(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(model, messageLookup, "datatype", name, "description"); 
+        String value = label.getDescription(messageLookup); 
         if (value == null)
         {
             value = dataType.getDescription();
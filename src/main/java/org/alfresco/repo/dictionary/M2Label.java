@@ -26,8 +26,11 @@
 package org.alfresco.repo.dictionary;
 
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.extensions.surf.util.I18NUtil;
+import org.alfresco.repo.i18n.StaticMessageLookup;
 import org.alfresco.service.cmr.dictionary.ModelDefinition;
 import org.alfresco.service.cmr.i18n.MessageLookup;
 import org.alfresco.service.namespace.QName;
@@ -36,11 +39,85 @@ import org.springframework.util.StringUtils;
 
 /**
  * Helper for obtaining display labels for data dictionary items
+ * <p>
+ * Instances hold the message keys of one data dictionary item, built once when the
+ * item is compiled. Labels found by a plain {@link StaticMessageLookup}, i.e. in the
+ * bundles registered by the dictionary, are cached per locale until {@link #clearLabels()}
+ * is called, which the dictionary does whenever it (re-)registers message bundles.
+ * <p>
+ * Missing labels and labels from any other lookup are not cached, as their bundles can
+ * change without the dictionary knowing. In particular the repository resolves labels
+ * through its MessageService, so there only the precomputed keys apply and every label
+ * is still looked up.
  * 
  * @author David Caruana
  */
 public class M2Label
 {
+    // labels found by the static message lookup, by locale and message key
+    private static final int MAX_LOCALES = 256;
+    private static final int MAX_LABELS = 16384;
+    private static final ConcurrentMap<Locale, ConcurrentMap<String, String>> labelsByLocale = new ConcurrentHashMap<Locale, ConcurrentMap<String, String>>();
+
+    private final String titleKey;
+    private final String descriptionKey;
+
+    /**
+     * Construct the labels of a data dictionary item
+     * 
+     * @param model ModelDefinition
+     * @param type String
+     * @param item QName
+     */
+    /*package*/ M2Label(ModelDefinition model, String type, QName item)
+    {
+        this.titleKey = getKey(model, type, item, "title");
+        this.descriptionKey = getKey(model, type, item, "description");
+    }
+
+    /*package*/ String getTitle(MessageLookup messageLookup)
+    {
+        return resolve(I18NUtil.getLocale(), messageLookup, titleKey);
+    }
+
+    /*package*/ String getTitle(Locale locale, MessageLookup messageLookup)
+    {
+        return resolve(locale, messageLookup, titleKey);
+    }
+
+    /*package*/ String getDescription(MessageLookup messageLookup)
+    {
+        return resolve(I18NUtil.getLocale(), messageLookup, descriptionKey);
+    }
+
+    /*package*/ String getDescription(Locale locale, MessageLookup messageLookup)
+    {
+        return resolve(locale, messageLookup, descriptionKey);
+    }
+
+    /**
+     * Get message key of label for data dictionary item
+     * 
+     * @param model ModelDefinition
+     * @param type String
+     * @param item QName
+     * @param label String
+     * @return String
+     */
+    public static String getKey(ModelDefinition model, String type, QName item, String label)
+    {
+        StringBuilder key = new StringBuilder(64).append(model.getName().toPrefixString());
+        if (type != null)
+        {
+            key.append('.').append(type);
+        }
+        if (item != null)
+        {
+            key.append('.').append(item.toPrefixString());
+        }
+        key.append('.').append(label);
+        return StringUtils.replace(key.toString(), ":", "_");
+    }
 
     /**
      * Get label for data dictionary item given specified locale
@@ -59,18 +136,7 @@ public class M2Label
         {
             return null;
         }
-        String key = model.getName().toPrefixString();
-        if (type != null)
-        {
-            key += "." + type;
-        }
-        if (item != null)
-        {
-            key += "." + item.toPrefixString();
-        }
-        key += "." + label;
-        key = StringUtils.replace(key, ":", "_");
-        return messageLookup.getMessage(key, locale);
+        return resolve(locale, messageLookup, getKey(model, type, item, label));
     }
     
     /**
@@ -87,5 +153,53 @@ public class M2Label
     {
         return getLabel(I18NUtil.getLocale(), model, messageLookup, type, item, label);
     }
-    
+
+    /**
+     * Forget all resolved labels. To be called whenever message bundles are registered,
+     * re-registered or removed.
+     */
+    public static void clearLabels()
+    {
+        labelsByLocale.clear();
+    }
+
+    private static String resolve(Locale locale, MessageLookup messageLookup, String key)
+    {
+        if (messageLookup == null)
+        {
+            return null;
+        }
+        if (locale == null || messageLookup.getClass() != StaticMessageLookup.class)
+        {
+            return messageLookup.getMessage(key, locale);
+        }
+        ConcurrentMap<String, String> labels = labelsByLocale.get(locale);
+        if (labels == null)
+        {
+            if (labelsByLocale.size() >= MAX_LOCALES)
+            {
+                labelsByLocale.clear();
+            }
+            labels = new ConcurrentHashMap<String, String>();
+            ConcurrentMap<String, String> existing = labelsByLocale.putIfAbsent(locale, labels);
+            if (existing != null)
+            {
+                labels = existing;
+            }
+        }
+        String value = labels.get(key);
+        if (value == null)
+        {
+            value = messageLookup.getMessage(key, locale);
+            if (value != null)
+            {
+                if (labels.size() >= MAX_LABELS)
+                {
+                    labels.clear();
+                }
+                labels.put(key, value);
+            }
+        }
+        return value;
+    }
 }
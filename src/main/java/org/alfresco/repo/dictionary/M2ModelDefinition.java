@@ -49,6 +49,7 @@ public class M2ModelDefinition implements ModelDefinition
     private M2Model model;
     private String  analyserResourceBundleName;
     private DictionaryDAO dictionaryDAO;
+    private M2Label label;
     
     
     /*package*/ M2ModelDefinition(M2Model model, NamespacePrefixResolver resolver, DictionaryDAO dictionaryDAO)
@@ -57,6 +58,7 @@ public class M2ModelDefinition implements ModelDefinition
         this.model = model;
         this.analyserResourceBundleName = model.getAnalyserResourceBundleName();
         this.dictionaryDAO = dictionaryDAO;
+        this.label = new M2Label(this, null, null);
     }
 
     
@@ -74,7 +76,7 @@ public class M2ModelDefinition implements ModelDefinition
      */
     public String getDescription(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(this, messageLookup, null, null, "description"); 
+        String value = label.getDescription(messageLookup); 
         if (value == null)
         {
             value = model.getDescription();
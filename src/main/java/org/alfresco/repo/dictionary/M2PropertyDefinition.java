@@ -36,6 +36,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
 
+import org.alfresco.repo.dictionary.constraint.CompiledConstraints;
 import org.alfresco.repo.i18n.StaticMessageLookup;
 import org.alfresco.service.cmr.dictionary.ClassDefinition;
 import org.alfresco.service.cmr.dictionary.ConstraintDefinition;
@@ -56,7 +57,7 @@ import org.springframework.util.StringUtils;
  * 
  * @author David Caruana
  */
-/*package*/ class M2PropertyDefinition implements PropertyDefinition
+/*package*/ class M2PropertyDefinition implements PropertyDefinition, CompiledConstraints.Holder
 {
     private ClassDefinition classDef;
     private M2Property m2Property;
@@ -65,7 +66,9 @@ import org.springframework.util.StringUtils;
     private DataTypeDefinition dataType;
     private String  analyserResourceBundleName;
     private List<ConstraintDefinition> constraintDefs = Collections.emptyList();
+    private transient volatile CompiledConstraints compiledConstraints;
     private transient MessageLookup staticMessageLookup = new StaticMessageLookup();
+    private M2Label label;
     
     /*package*/ M2PropertyDefinition(
             ClassDefinition classDef,
@@ -77,6 +80,7 @@ import org.springframework.util.StringUtils;
 
         // Resolve Names
         this.name = QName.createQName(m2Property.getName(), prefixResolver);
+        this.label = new M2Label(classDef.getModel(), "property", name);
         this.propertyTypeName = QName.createQName(m2Property.getType(), prefixResolver);
         this.analyserResourceBundleName = m2Property.getAnalyserResourceBundleName();
     }
@@ -91,6 +95,7 @@ import org.springframework.util.StringUtils;
     {
         this.classDef = classDef;
         this.name = propertyDef.getName();
+        this.label = new M2Label(classDef.getModel(), "property", name);
         this.dataType = propertyDef.getDataType();
         this.propertyTypeName = this.dataType.getName();
         this.m2Property = createOverriddenProperty(propertyDef, override, prefixResolver, modelConstraints);
@@ -128,6 +133,7 @@ import org.springframework.util.StringUtils;
                 this,
                 prefixResolver,
                 modelConstraints);
+        compiledConstraints = null;
     }
     
     private static List<ConstraintDefinition> buildConstraints(
@@ -294,7 +300,7 @@ import org.springframework.util.StringUtils;
     
     public String getTitle(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(classDef.getModel(), messageLookup, "property", name, "title"); 
+        String value = label.getTitle(messageLookup); 
         if (value == null)
         {
             value = m2Property.getTitle();
@@ -304,7 +310,7 @@ import org.springframework.util.StringUtils;
     
     public String getTitle(MessageLookup messageLookup, Locale locale)
     {
-        String value = M2Label.getLabel(locale, classDef.getModel(), messageLookup, "property", name, "title"); 
+        String value = label.getTitle(locale, messageLookup); 
         if (value == null)
         {
             value = m2Property.getTitle();
@@ -319,7 +325,7 @@ import org.springframework.util.StringUtils;
 
     public String getDescription(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(classDef.getModel(), messageLookup, "property", name, "description"); 
+        String value = label.getDescription(messageLookup); 
         if (value == null)
         {
             value = m2Property.getDescription();
@@ -329,7 +335,7 @@ import org.springframework.util.StringUtils;
     
     public String getDescription(MessageLookup messageLookup, Locale locale)
     {
-        String value = M2Label.getLabel(locale, classDef.getModel(), messageLookup, "property", name, "description"); 
+        String value = label.getDescription(locale, messageLookup); 
         if (value == null)
         {
             value = m2Property.getDescription();
@@ -494,6 +500,21 @@ import org.springframework.util.StringUtils;
     {
         return constraintDefs;
     }
+
+    /* (non-Javadoc)
+     * @see org.alfresco.repo.dictionary.constraint.CompiledConstraints.Holder#getCompiledConstraints()
+     */
+    public CompiledConstraints getCompiledConstraints()
+    {
+        // compiled on first use, once the constraints themselves are initialized
+        CompiledConstraints compiled = compiledConstraints;
+        if (compiled == null)
+        {
+            compiled = CompiledConstraints.compile(getDataType(), getConstraints());
+            compiledConstraints = compiled;
+        }
+        return compiled;
+    }
     
     /* package */ M2ModelDiff diffProperty(PropertyDefinition propDef)
     {
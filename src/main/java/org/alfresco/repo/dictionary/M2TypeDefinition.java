@@ -44,15 +44,18 @@ import org.alfresco.service.namespace.QName;
 /*package*/ class M2TypeDefinition extends M2ClassDefinition
     implements TypeDefinition
 {
+    private final M2Label typeLabel;
+
     /*package*/ M2TypeDefinition(ModelDefinition model, M2Type m2Type, NamespacePrefixResolver resolver, Map<QName, PropertyDefinition> modelProperties, Map<QName, AssociationDefinition> modelAssociations)
     {
         super(model, m2Type, resolver, modelProperties, modelAssociations); 
+        this.typeLabel = new M2Label(model, "type", name);
     }
     
     @Override
     public String getDescription(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(model, messageLookup, "type", name, "description");
+        String value = typeLabel.getDescription(messageLookup);
         
         // if we don't have a description call the super class
         if (value == null)
@@ -66,7 +69,7 @@ import org.alfresco.service.namespace.QName;
     @Override
     public String getTitle(MessageLookup messageLookup)
     {
-        String value = M2Label.getLabel(model, messageLookup, "type", name, "title");
+        String value = typeLabel.getTitle(messageLookup);
         
         // if we don't have a title call the super class
         if (value == null)
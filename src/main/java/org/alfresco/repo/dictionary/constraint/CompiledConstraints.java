@@ -0,0 +1,510 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.dictionary.constraint;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.alfresco.service.cmr.dictionary.Constraint;
+import org.alfresco.service.cmr.dictionary.ConstraintDefinition;
+import org.alfresco.service.cmr.dictionary.ConstraintException;
+import org.alfresco.service.cmr.dictionary.DataTypeDefinition;
+import org.alfresco.service.cmr.dictionary.DictionaryService;
+import org.alfresco.service.cmr.dictionary.PropertyDefinition;
+import org.alfresco.service.cmr.repository.datatype.DefaultTypeConverter;
+import org.alfresco.service.cmr.repository.datatype.TypeConversionException;
+import org.alfresco.service.namespace.QName;
+
+/**
+ * The constraints of a property compiled into specialised checks.
+ * <p>
+ * Evaluating is equivalent to evaluating each constraint in turn, but multi-valued
+ * properties are not copied, each value is converted to a String at most once for
+ * all the checks and the built-in constraints are checked directly:
+ * <ul>
+ * <li>{@link ListOfValuesConstraint} against precomputed exact and case-folded sets
+ * and, for integral data types, a sorted table of the allowed numbers;</li>
+ * <li>{@link NumericRangeConstraint} on the primitive value of numbers;</li>
+ * <li>{@link StringLengthConstraint} on the converted String;</li>
+ * <li>{@link RegexConstraint} with its precompiled pattern.</li>
+ * </ul>
+ * When a check fails, the value is evaluated by the constraint itself so the
+ * exception is exactly the one it would throw. Other constraints, including
+ * subclasses of the built-in ones, are evaluated as they are.
+ * 
+ * @see #compile(PropertyDefinition)
+ */
+public final class CompiledConstraints
+{
+    private static final CompiledConstraints NONE = new CompiledConstraints(new Check[0]);
+
+    private final Check[] checks;
+
+    private CompiledConstraints(Check[] checks)
+    {
+        this.checks = checks;
+    }
+
+    /**
+     * Implemented by property definitions that hold their own compiled constraints, so that
+     * they are compiled once and go away with the definition.
+     */
+    public interface Holder
+    {
+        /**
+         * @return the compiled constraints of the property
+         */
+        CompiledConstraints getCompiledConstraints();
+    }
+
+    /**
+     * Get the compiled constraints of a property. Definitions that are a {@link Holder}
+     * compile them once, others are compiled on every call.
+     * 
+     * @param propertyDef the property definition
+     * @return the compiled constraints
+     */
+    public static CompiledConstraints compile(PropertyDefinition propertyDef)
+    {
+        if (propertyDef instanceof Holder)
+        {
+            return ((Holder) propertyDef).getCompiledConstraints();
+        }
+        return compile(propertyDef.getDataType(), propertyDef.getConstraints());
+    }
+
+    /**
+     * Compile a list of constraints for values of a data type.
+     * 
+     * @param dataType the data type of the values, may be <tt>null</tt>
+     * @param constraintDefs the constraints, in evaluation order
+     * @return the compiled constraints
+     */
+    public static CompiledConstraints compile(DataTypeDefinition dataType, List<ConstraintDefinition> constraintDefs)
+    {
+        if (constraintDefs == null || constraintDefs.isEmpty())
+        {
+            return NONE;
+        }
+        QName dataTypeName = (dataType == null) ? null : dataType.getName();
+        boolean integral = DataTypeDefinition.INT.equals(dataTypeName) || DataTypeDefinition.LONG.equals(dataTypeName);
+
+        Check[] checks = new Check[constraintDefs.size()];
+        int count = 0;
+        for (ConstraintDefinition constraintDef : constraintDefs)
+        {
+            Constraint constraint = constraintDef.getConstraint();
+            Class<?> constraintClass = constraint.getClass();
+            if (constraintClass == NoOpConstraint.class)
+            {
+                continue;
+            }
+            else if (constraintClass == ListOfValuesConstraint.class)
+            {
+                checks[count++] = new ListOfValuesCheck((ListOfValuesConstraint) constraint, integral);
+            }
+            else if (constraintClass == NumericRangeConstraint.class)
+            {
+                checks[count++] = new NumericRangeCheck((NumericRangeConstraint) constraint);
+            }
+            else if (constraintClass == StringLengthConstraint.class)
+            {
+                checks[count++] = new StringLengthCheck((StringLengthConstraint) constraint);
+            }
+            else if (constraintClass == RegexConstraint.class)
+            {
+                checks[count++] = new RegexCheck((RegexConstraint) constraint);
+            }
+            else
+            {
+                checks[count++] = new OpaqueCheck(constraint);
+            }
+        }
+        return (count == 0) ? NONE : new CompiledConstraints(Arrays.copyOf(checks, count));
+    }
+
+    /**
+     * Validate the properties of a node. Residual properties are ignored.
+     * 
+     * @param properties the property values
+     * @param dictionaryService used to find the property definitions
+     * @return the first constraint violation of each invalid property; empty if all are valid
+     */
+    public static Map<QName, ConstraintException> evaluate(Map<QName, ? extends Serializable> properties, DictionaryService dictionaryService)
+    {
+        Map<QName, ConstraintException> violations = null;
+        for (Map.Entry<QName, ? extends Serializable> entry : properties.entrySet())
+        {
+            Serializable value = entry.getValue();
+            if (value == null)
+            {
+                continue;
+            }
+            PropertyDefinition propertyDef = dictionaryService.getProperty(entry.getKey());
+            if (propertyDef == null)
+            {
+                continue;
+            }
+            try
+            {
+                compile(propertyDef).evaluate(value);
+            }
+            catch (ConstraintException e)
+            {
+                if (violations == null)
+                {
+                    violations = new HashMap<QName, ConstraintException>();
+                }
+                violations.put(entry.getKey(), e);
+            }
+        }
+        return (violations == null) ? new HashMap<QName, ConstraintException>(1) : violations;
+    }
+
+    /**
+     * @return <tt>true</tt> if there is nothing to check
+     */
+    public boolean isEmpty()
+    {
+        return checks.length == 0;
+    }
+
+    /**
+     * Evaluate all the constraints against a value.
+     * 
+     * @param value the single or multi-valued property value
+     * @throws ConstraintException the first violation found
+     */
+    public void evaluate(Object value)
+    {
+        if (value == null || checks.length == 0)
+        {
+            // null values are never evaluated
+            return;
+        }
+        Values values = new Values(value);
+        for (Check check : checks)
+        {
+            check.evaluate(values);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CompiledConstraints" + Arrays.toString(checks);
+    }
+
+    /**
+     * The non-null values being evaluated and their conversions, done on first use.
+     */
+    private static final class Values
+    {
+        private static final String NOT_CONVERTIBLE = new String("NOT_CONVERTIBLE");
+
+        private final Object value;
+        private final Object[] elements;
+        private String[] strings;
+
+        private Values(Object value)
+        {
+            this.value = value;
+            if (value instanceof Collection)
+            {
+                Collection<?> collection = (Collection<?>) value;
+                Object[] all = collection.toArray();
+                int count = 0;
+                for (Object element : all)
+                {
+                    if (element != null)
+                    {
+                        all[count++] = element;
+                    }
+                }
+                this.elements = (count == all.length) ? all : Arrays.copyOf(all, count);
+            }
+            else
+            {
+                this.elements = new Object[] { value };
+            }
+        }
+
+        /**
+         * @return the String form of a value, or <tt>null</tt> if it does not convert
+         */
+        private String getString(int index)
+        {
+            Object element = elements[index];
+            if (element instanceof String)
+            {
+                return (String) element;
+            }
+            if (strings == null)
+            {
+                strings = new String[elements.length];
+            }
+            String string = strings[index];
+            if (string == null)
+            {
+                try
+                {
+                    string = DefaultTypeConverter.INSTANCE.convert(String.class, element);
+                }
+                catch (TypeConversionException e)
+                {
+                    string = null;
+                }
+                strings[index] = (string == null) ? NOT_CONVERTIBLE : string;
+            }
+            return (string == NOT_CONVERTIBLE) ? null : string;
+        }
+    }
+
+    /**
+     * Checks a constraint value by value, falling back to the constraint itself for the
+     * values that are not accepted.
+     */
+    private abstract static class Check
+    {
+        protected final Constraint constraint;
+
+        private Check(Constraint constraint)
+        {
+            this.constraint = constraint;
+        }
+
+        void evaluate(Values values)
+        {
+            Object[] elements = values.elements;
+            for (int i = 0; i < elements.length; i++)
+            {
+                if (!accepts(values, i))
+                {
+                    // let the constraint report the violation (or accept what we could not check)
+                    constraint.evaluate(elements[i]);
+                }
+            }
+        }
+
+        /**
+         * @return <tt>true</tt> if the value is definitely valid
+         */
+        abstract boolean accepts(Values values, int index);
+
+        @Override
+        public String toString()
+        {
+            return String.valueOf(constraint);
+        }
+    }
+
+    /**
+     * Constraints that may override collection handling are given the whole value.
+     */
+    private static final class OpaqueCheck extends Check
+    {
+        private OpaqueCheck(Constraint constraint)
+        {
+            super(constraint);
+        }
+
+        @Override
+        void evaluate(Values values)
+        {
+            constraint.evaluate(values.value);
+        }
+
+        @Override
+        boolean accepts(Values values, int index)
+        {
+            return false;
+        }
+    }
+
+    private static final class ListOfValuesCheck extends Check
+    {
+        private final boolean integral;
+        private volatile AllowedValues allowed;
+
+        private ListOfValuesCheck(ListOfValuesConstraint constraint, boolean integral)
+        {
+            super(constraint);
+            this.integral = integral;
+        }
+
+        @Override
+        boolean accepts(Values values, int index)
+        {
+            ListOfValuesConstraint listConstraint = (ListOfValuesConstraint) constraint;
+            AllowedValues allowed = this.allowed;
+            if (allowed == null
+                    || allowed.source != listConstraint.getRawAllowedValues()
+                    || allowed.caseSensitive != listConstraint.isCaseSensitive())
+            {
+                // first use, or the constraint has been changed
+                allowed = new AllowedValues(listConstraint.getRawAllowedValues(), listConstraint.isCaseSensitive(), integral);
+                this.allowed = allowed;
+            }
+
+            Object element = values.elements[index];
+            if (allowed.numbers != null
+                    && (element instanceof Long || element instanceof Integer || element instanceof Short || element instanceof Byte))
+            {
+                // the String form of an integer is canonical, so only canonical allowed values can match
+                return Arrays.binarySearch(allowed.numbers, ((Number) element).longValue()) >= 0;
+            }
+
+            String string = values.getString(index);
+            if (string == null)
+            {
+                return false;
+            }
+            if (allowed.exact.contains(string))
+            {
+                return true;
+            }
+            return !allowed.caseSensitive && allowed.upper.contains(string.toUpperCase());
+        }
+    }
+
+    /**
+     * Snapshot of the allowed values of a list constraint.
+     */
+    private static final class AllowedValues
+    {
+        private final List<String> source;
+        private final boolean caseSensitive;
+        private final Set<String> exact;
+        private final Set<String> upper;
+        private final long[] numbers;
+
+        private AllowedValues(List<String> source, boolean caseSensitive, boolean integral)
+        {
+            this.source = source;
+            this.caseSensitive = caseSensitive;
+            this.exact = new HashSet<String>(source);
+            this.upper = new HashSet<String>(source.size() * 2);
+            long[] numbers = integral ? new long[source.size()] : null;
+            int count = 0;
+            for (String allowedValue : source)
+            {
+                upper.add(allowedValue.toUpperCase());
+                if (integral)
+                {
+                    try
+                    {
+                        long number = Long.parseLong(allowedValue);
+                        if (Long.toString(number).equals(allowedValue))
+                        {
+                            numbers[count++] = number;
+                        }
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        // cannot be the String form of an integer
+                    }
+                }
+            }
+            if (integral)
+            {
+                numbers = Arrays.copyOf(numbers, count);
+                Arrays.sort(numbers);
+            }
+            this.numbers = numbers;
+        }
+    }
+
+    private static final class NumericRangeCheck extends Check
+    {
+        private NumericRangeCheck(NumericRangeConstraint constraint)
+        {
+            super(constraint);
+        }
+
+        @Override
+        boolean accepts(Values values, int index)
+        {
+            Object element = values.elements[index];
+            if (!(element instanceof Number))
+            {
+                return false;
+            }
+            double value = ((Number) element).doubleValue();
+            NumericRangeConstraint rangeConstraint = (NumericRangeConstraint) constraint;
+            // NaN fails both comparisons
+            return value >= rangeConstraint.getMinValue() && value <= rangeConstraint.getMaxValue() && !Double.isInfinite(value);
+        }
+    }
+
+    private static final class StringLengthCheck extends Check
+    {
+        private StringLengthCheck(StringLengthConstraint constraint)
+        {
+            super(constraint);
+        }
+
+        @Override
+        boolean accepts(Values values, int index)
+        {
+            String string = values.getString(index);
+            if (string == null)
+            {
+                return false;
+            }
+            StringLengthConstraint lengthConstraint = (StringLengthConstraint) constraint;
+            int length = string.length();
+            return length >= lengthConstraint.getMinLength() && length <= lengthConstraint.getMaxLength();
+        }
+    }
+
+    private static final class RegexCheck extends Check
+    {
+        private RegexCheck(RegexConstraint constraint)
+        {
+            super(constraint);
+        }
+
+        @Override
+        boolean accepts(Values values, int index)
+        {
+            RegexConstraint regexConstraint = (RegexConstraint) constraint;
+            Pattern pattern = regexConstraint.getPattern();
+            String string = values.getString(index);
+            if (pattern == null || string == null)
+            {
+                return false;
+            }
+            return pattern.matcher(string).matches() == regexConstraint.getRequiresMatch();
+        }
+    }
+}
@@ -292,7 +292,8 @@ public class ListOfValuesConstraint extends AbstractConstraint
         }
         else
         {
-            if (!allowedValuesUpperSet.contains(valueStr.toUpperCase()))
+            // values usually match an allowed value exactly, which saves upper-casing them
+            if (!allowedValuesSet.contains(valueStr) && !allowedValuesUpperSet.contains(valueStr.toUpperCase()))
             {
                 throw new ConstraintException(ERR_INVALID_VALUE, value);
             }
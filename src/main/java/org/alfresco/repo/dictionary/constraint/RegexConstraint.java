@@ -95,6 +95,14 @@ public class RegexConstraint extends AbstractConstraint
         this.expression = expression;
     }
 
+    /**
+     * @return the compiled expression, or <tt>null</tt> if not initialized
+     */
+    /*package*/ Pattern getPattern()
+    {
+        return patternMatcher;
+    }
+
     /**
      * @return Returns <tt>true</tt> if the value must match the regular expression
      *      or <tt>false</tt> if the value must not match the regular expression
@@ -0,0 +1,85 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.index.shard;
+
+/**
+ * Common support for {@link ShardRouter} implementations.
+ */
+public abstract class AbstractShardRouter implements ShardRouter
+{
+    private final ShardMethodEnum shardMethod;
+    private final int numberOfShards;
+
+    protected AbstractShardRouter(ShardMethodEnum shardMethod, int numberOfShards)
+    {
+        if (numberOfShards < 1)
+        {
+            throw new IllegalArgumentException("The number of shards must be positive: " + numberOfShards);
+        }
+        this.shardMethod = shardMethod;
+        this.numberOfShards = numberOfShards;
+    }
+
+    @Override
+    public ShardMethodEnum getShardMethod()
+    {
+        return shardMethod;
+    }
+
+    @Override
+    public int getNumberOfShards()
+    {
+        return numberOfShards;
+    }
+
+    @Override
+    public void getShards(long[] keys, int[] shards)
+    {
+        if (shards.length < keys.length)
+        {
+            throw new IllegalArgumentException("Expected room for " + keys.length + " shards but got " + shards.length);
+        }
+        for (int i = 0; i < keys.length; i++)
+        {
+            shards[i] = getShard(keys[i]);
+        }
+    }
+
+    /**
+     * Reduce a hash to a shard instance, as <code>Math.abs(hash) % numberOfShards</code>
+     * but never negative.
+     */
+    protected final int bucket(int hash)
+    {
+        return Math.abs(hash % numberOfShards);
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + " [shardMethod=" + shardMethod + ", numberOfShards=" + numberOfShards + "]";
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.index.shard;
+
+import java.util.Arrays;
+
+/**
+ * {@link ShardMethodEnum#DB_ID_RANGE} routing: each shard instance indexes a
+ * contiguous range of node DB ids. The ranges are held in a table sorted by start
+ * and searched by bisection.
+ */
+public class DBIDRangeShardRouter extends AbstractShardRouter
+{
+    // ranges ordered by start: [starts[i], ends[i]) is indexed by instances[i]
+    private final long[] starts;
+    private final long[] ends;
+    private final int[] instances;
+    // position of each instance in the table
+    private final int[] positions;
+
+    /**
+     * @param starts the first DB id of each shard instance, indexed by instance
+     * @param ends the DB id after the last one of each shard instance, indexed by instance
+     */
+    public DBIDRangeShardRouter(long[] starts, long[] ends)
+    {
+        super(ShardMethodEnum.DB_ID_RANGE, starts.length);
+        if (ends.length != starts.length)
+        {
+            throw new IllegalArgumentException("Expected " + starts.length + " range ends but got " + ends.length);
+        }
+
+        int count = starts.length;
+        long[] sortable = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            if (ends[i] <= starts[i])
+            {
+                throw new IllegalArgumentException("Empty DB id range for shard " + i + ": " + starts[i] + "-" + ends[i]);
+            }
+            sortable[i] = starts[i];
+        }
+        Arrays.sort(sortable);
+
+        this.starts = new long[count];
+        this.ends = new long[count];
+        this.instances = new int[count];
+        this.positions = new int[count];
+        boolean[] used = new boolean[count];
+        for (int i = 0; i < count; i++)
+        {
+            // take each instance once, so equal starts are reported as overlaps below
+            int instance = 0;
+            while (used[instance] || starts[instance] != sortable[i])
+            {
+                instance++;
+            }
+            used[instance] = true;
+            this.starts[i] = starts[instance];
+            this.ends[i] = ends[instance];
+            this.instances[i] = instance;
+            this.positions[instance] = i;
+            if (i > 0 && this.starts[i] < this.ends[i - 1])
+            {
+                throw new IllegalArgumentException("DB id ranges of shards " + this.instances[i - 1] + " and " + instance + " overlap");
+            }
+        }
+    }
+
+    /**
+     * Parse ranges of the form <code>start-end</code>, as configured by <code>shard.range</code>.
+     * 
+     * @param ranges the range of each shard instance, indexed by instance
+     */
+    public static DBIDRangeShardRouter parse(String[] ranges)
+    {
+        long[] starts = new long[ranges.length];
+        long[] ends = new long[ranges.length];
+        for (int i = 0; i < ranges.length; i++)
+        {
+            String range = ranges[i] == null ? "" : ranges[i].trim();
+            int dash = range.indexOf('-', 1);
+            if (dash < 0)
+            {
+                throw new IllegalArgumentException("Invalid DB id range for shard " + i + ": '" + ranges[i] + "'");
+            }
+            try
+            {
+                starts[i] = Long.parseLong(range.substring(0, dash).trim());
+                ends[i] = Long.parseLong(range.substring(dash + 1).trim());
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException("Invalid DB id range for shard " + i + ": '" + ranges[i] + "'", e);
+            }
+        }
+        return new DBIDRangeShardRouter(starts, ends);
+    }
+
+    /**
+     * @param dbId the node DB id
+     * @return the shard instance whose range contains the id, or {@link ShardRouter#NO_SHARD}
+     */
+    @Override
+    public int getShard(long dbId)
+    {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= dbId)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        // high is the last range starting at or before the id
+        if (high >= 0 && dbId < ends[high])
+        {
+            return instances[high];
+        }
+        return NO_SHARD;
+    }
+
+    @Override
+    public void getShards(long[] dbIds, int[] shards)
+    {
+        if (shards.length < dbIds.length)
+        {
+            throw new IllegalArgumentException("Expected room for " + dbIds.length + " shards but got " + shards.length);
+        }
+        // ids usually arrive in ascending runs - reuse the previous range while it matches
+        int last = -1;
+        for (int i = 0; i < dbIds.length; i++)
+        {
+            long dbId = dbIds[i];
+            if (last >= 0 && dbId >= starts[last] && dbId < ends[last])
+            {
+                shards[i] = instances[last];
+                continue;
+            }
+            int shard = getShard(dbId);
+            shards[i] = shard;
+            last = (shard == NO_SHARD) ? -1 : positions[shard];
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("DBIDRangeShardRouter [");
+        for (int i = 0; i < starts.length; i++)
+        {
+            if (i > 0)
+            {
+                builder.append(", ");
+            }
+            builder.append(instances[i]).append('=').append(starts[i]).append('-').append(ends[i]);
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.index.shard;
+
+/**
+ * {@link ShardMethodEnum#DATE} routing: dates are bucketed by UTC month, consecutive
+ * months are grouped (<code>shard.date.grouping</code>) and the groups are assigned
+ * to shards round robin.
+ * <p>
+ * The year and month are derived arithmetically from the epoch millis, without a Calendar.
+ */
+public class DateMonthShardRouter extends AbstractShardRouter
+{
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final int grouping;
+
+    public DateMonthShardRouter(int numberOfShards)
+    {
+        this(numberOfShards, 1);
+    }
+
+    /**
+     * @param numberOfShards the number of shards
+     * @param grouping the number of consecutive months stored in the same shard
+     */
+    public DateMonthShardRouter(int numberOfShards, int grouping)
+    {
+        super(ShardMethodEnum.DATE, numberOfShards);
+        if (grouping < 1)
+        {
+            throw new IllegalArgumentException("The date grouping must be positive: " + grouping);
+        }
+        this.grouping = grouping;
+    }
+
+    public int getGrouping()
+    {
+        return grouping;
+    }
+
+    /**
+     * @param time the date in milliseconds since the epoch
+     */
+    @Override
+    public int getShard(long time)
+    {
+        long months = getMonths(time);
+        return (int) Math.floorMod(Math.floorDiv(months, grouping), (long) getNumberOfShards());
+    }
+
+    /**
+     * Get the number of months since year zero, i.e. <code>year * 12 + month</code>
+     * where month is zero based, of a UTC time.
+     */
+    static long getMonths(long time)
+    {
+        // civil-from-days on the proleptic Gregorian calendar, years starting in March
+        long z = Math.floorDiv(time, MILLIS_PER_DAY) + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long month = shiftedMonth < 10 ? shiftedMonth + 2 : shiftedMonth - 10;
+        long year = yearOfEra + era * 400 + (month < 2 ? 1 : 0);
+        return year * 12 + month;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DateMonthShardRouter [numberOfShards=" + getNumberOfShards() + ", grouping=" + grouping + "]";
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.index.shard;
+
+/**
+ * Allocation free 32 bit MurmurHash3 (x86 variant) of the UTF-8 encoding of
+ * character data, as used by the index server to place documents. Bytes are fed
+ * to the hash as they are encoded so no intermediate String or byte[] is created.
+ */
+final class Murmur3
+{
+    /**
+     * Seed used by the index server for DB_ID, ACL_ID and PROPERTY routing.
+     */
+    static final int SEED = 77;
+
+    private static final int C1 = 0xcc9e2d51;
+    private static final int C2 = 0x1b873593;
+
+    private static final String LONG_MIN_VALUE = Long.toString(Long.MIN_VALUE);
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    static
+    {
+        long power = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++)
+        {
+            POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+    }
+
+    private Murmur3()
+    {
+    }
+
+    /**
+     * Hash the decimal representation of a long, i.e. the same as hashing
+     * <code>Long.toString(value)</code>.
+     */
+    static int hashDecimal(long value, int seed)
+    {
+        if (value == Long.MIN_VALUE)
+        {
+            return hash(LONG_MIN_VALUE, seed);
+        }
+
+        int h = seed;
+        int k = 0;
+        int shift = 0;
+        int length = 0;
+
+        if (value < 0)
+        {
+            k = '-';
+            shift = 8;
+            length = 1;
+            value = -value;
+        }
+
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits])
+        {
+            digits++;
+        }
+        for (int i = digits - 1; i >= 0; i--)
+        {
+            long power = POWERS_OF_TEN[i];
+            int digit = (int) (value / power);
+            value -= digit * power;
+
+            k |= ('0' + digit) << shift;
+            shift += 8;
+            if (shift == 32)
+            {
+                h = mixH(h, k);
+                k = 0;
+                shift = 0;
+            }
+        }
+        length += digits;
+
+        return finish(h, k, shift, length);
+    }
+
+    /**
+     * Hash the UTF-8 encoding of a character sequence. Surrogate pairs are encoded
+     * as four byte sequences; unpaired surrogates as three bytes, like the index server.
+     */
+    static int hash(CharSequence data, int seed)
+    {
+        int h = seed;
+        int k = 0;
+        int shift = 0;
+        int length = 0;
+
+        int end = data.length();
+        int pos = 0;
+        while (pos < end)
+        {
+            int code = data.charAt(pos++);
+            int encoded;
+            int count;
+            if (code < 0x80)
+            {
+                encoded = code;
+                count = 1;
+            }
+            else if (code < 0x800)
+            {
+                encoded = (0xC0 | (code >> 6))
+                        | ((0x80 | (code & 0x3F)) << 8);
+                count = 2;
+            }
+            else if (code < 0xD800 || code > 0xDBFF || pos >= end)
+            {
+                encoded = (0xE0 | (code >> 12))
+                        | ((0x80 | ((code >> 6) & 0x3F)) << 8)
+                        | ((0x80 | (code & 0x3F)) << 16);
+                count = 3;
+            }
+            else
+            {
+                int utf32 = data.charAt(pos++);
+                utf32 = ((code - 0xD7C0) << 10) + (utf32 & 0x3FF);
+                encoded = (0xF0 | (utf32 >> 18))
+                        | ((0x80 | ((utf32 >> 12) & 0x3F)) << 8)
+                        | ((0x80 | ((utf32 >> 6) & 0x3F)) << 16)
+                        | ((0x80 | (utf32 & 0x3F)) << 24);
+                count = 4;
+            }
+
+            for (int i = 0; i < count; i++)
+            {
+                k |= ((encoded >>> (i << 3)) & 0xFF) << shift;
+                shift += 8;
+                if (shift == 32)
+                {
+                    h = mixH(h, k);
+                    k = 0;
+                    shift = 0;
+                }
+            }
+            length += count;
+        }
+
+        return finish(h, k, shift, length);
+    }
+
+    private static int mixK(int k)
+    {
+        k *= C1;
+        k = Integer.rotateLeft(k, 15);
+        return k * C2;
+    }
+
+    private static int mixH(int h, int k)
+    {
+        h ^= mixK(k);
+        h = Integer.rotateLeft(h, 13);
+        return h * 5 + 0xe6546b64;
+    }
+
+    private static int finish(int h, int k, int shift, int length)
+    {
+        if (shift > 0)
+        {
+            h ^= mixK(k);
+        }
+        h ^= length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
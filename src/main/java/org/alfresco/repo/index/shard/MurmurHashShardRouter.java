@@ -0,0 +1,55 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.index.shard;
+
+/**
+ * {@link ShardMethodEnum#DB_ID} and {@link ShardMethodEnum#ACL_ID} routing: the
+ * MurmurHash3 of the decimal id, as computed by the index server, modulo the number of shards.
+ */
+public class MurmurHashShardRouter extends AbstractShardRouter
+{
+    /**
+     * @param shardMethod {@link ShardMethodEnum#DB_ID} or {@link ShardMethodEnum#ACL_ID}
+     * @param numberOfShards the number of shards
+     */
+    public MurmurHashShardRouter(ShardMethodEnum shardMethod, int numberOfShards)
+    {
+        super(shardMethod, numberOfShards);
+        if (shardMethod != ShardMethodEnum.DB_ID && shardMethod != ShardMethodEnum.ACL_ID)
+        {
+            throw new IllegalArgumentException("Murmur hash routing is not used for " + shardMethod);
+        }
+    }
+
+    /**
+     * @param id the node DB id or ACL id
+     */
+    @Override
+    public int getShard(long id)
+    {
+        return bucket(Murmur3.hashDecimal(id, Murmur3.SEED));
+    }
+}
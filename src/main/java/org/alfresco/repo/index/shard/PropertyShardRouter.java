@@ -0,0 +1,69 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.index.shard;
+
+/**
+ * {@link ShardMethodEnum#PROPERTY} routing: the MurmurHash3 of the property value,
+ * as computed by the index server, modulo the number of shards.
+ * <p>
+ * The long key of {@link #getShard(long)} is a hash precomputed with {@link #hash(CharSequence)},
+ * so callers routing many nodes with the same value only hash it once. Any
+ * <code>shard.regex</code> extraction must be applied by the caller.
+ */
+public class PropertyShardRouter extends AbstractShardRouter
+{
+    public PropertyShardRouter(int numberOfShards)
+    {
+        super(ShardMethodEnum.PROPERTY, numberOfShards);
+    }
+
+    /**
+     * @param value the property value
+     * @return the routing key for the value
+     */
+    public static long hash(CharSequence value)
+    {
+        return Murmur3.hash(value, Murmur3.SEED);
+    }
+
+    /**
+     * @param value the property value
+     * @return the shard instance for the value
+     */
+    public int getShard(CharSequence value)
+    {
+        return bucket(Murmur3.hash(value, Murmur3.SEED));
+    }
+
+    /**
+     * @param valueHash a hash from {@link #hash(CharSequence)}
+     */
+    @Override
+    public int getShard(long valueHash)
+    {
+        return bucket((int) valueHash);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.index.shard;
+
+/**
+ * Maps a routing key to the instance of the shard that indexes it.
+ * <p>
+ * The meaning of the key depends on the {@link ShardMethodEnum}: a node DB id,
+ * an ACL id, a date in milliseconds since the epoch or the hash of a property
+ * value. Routing takes primitive keys and does not allocate, so it can be used
+ * per node on the indexing and query paths.
+ * 
+ * @see ShardRouters
+ */
+public interface ShardRouter
+{
+    /**
+     * Value returned when no shard instance covers a key.
+     */
+    public static final int NO_SHARD = -1;
+
+    /**
+     * @return the shard method implemented by this router
+     */
+    ShardMethodEnum getShardMethod();
+
+    /**
+     * @return the number of shard instances keys are routed to
+     */
+    int getNumberOfShards();
+
+    /**
+     * Get the shard instance for a routing key.
+     * 
+     * @param key the routing key
+     * @return the shard instance, between 0 and {@link #getNumberOfShards()} - 1, or {@link #NO_SHARD}
+     */
+    int getShard(long key);
+
+    /**
+     * Route a batch of keys.
+     * 
+     * @param keys the routing keys
+     * @param shards receives the shard instance of each key; must be at least as long as <code>keys</code>
+     */
+    void getShards(long[] keys, int[] shards);
+}
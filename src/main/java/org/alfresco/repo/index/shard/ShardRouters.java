@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.index.shard;
+
+import java.util.Map;
+
+/**
+ * Creates the {@link ShardRouter} for a {@link Floc}.
+ * <p>
+ * Only methods that are a function of a single key are supported. DB_ID_RANGE ranges
+ * are configured per shard instance, so its router is built with
+ * {@link DBIDRangeShardRouter#parse(String[])}. EXPLICIT_ID and LRIS placement depends on
+ * the node and on live shard state and cannot be routed here.
+ */
+public final class ShardRouters
+{
+    /**
+     * Floc property holding the number of months grouped in one DATE shard.
+     */
+    public static final String PROP_DATE_GROUPING = "shard.date.grouping";
+
+    private ShardRouters()
+    {
+    }
+
+    /**
+     * @param floc the floc
+     * @return the router for the floc's shard method and number of shards
+     * @throws IllegalArgumentException if the shard method cannot be routed by key
+     */
+    public static ShardRouter getRouter(Floc floc)
+    {
+        ShardMethodEnum shardMethod = floc.getShardMethod();
+        int numberOfShards = floc.getNumberOfShards();
+        if (shardMethod == null)
+        {
+            throw new IllegalArgumentException("No shard method for " + floc);
+        }
+
+        switch (shardMethod)
+        {
+        case MOD_ACL_ID:
+            return new ACLIDModShardRouter(numberOfShards);
+        case ACL_ID:
+        case DB_ID:
+            return new MurmurHashShardRouter(shardMethod, numberOfShards);
+        case DATE:
+            return new DateMonthShardRouter(numberOfShards, getInt(floc.getPropertyBag(), PROP_DATE_GROUPING, 1));
+        case PROPERTY:
+            return new PropertyShardRouter(numberOfShards);
+        default:
+            throw new IllegalArgumentException("Shard method " + shardMethod + " cannot be routed by key");
+        }
+    }
+
+    private static int getInt(Map<String, String> properties, String name, int defaultValue)
+    {
+        String value = (properties == null) ? null : properties.get(name);
+        if (value == null || value.trim().isEmpty())
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Invalid " + name + ": '" + value + "'", e);
+        }
+    }
+}
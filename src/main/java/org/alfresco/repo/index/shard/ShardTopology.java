@@ -0,0 +1,414 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.index.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alfresco.service.cmr.repository.StoreRef;
+
+/**
+ * In memory view of the index shard topology, fed by {@link ShardState} updates.
+ * <p>
+ * For each {@link ShardInstance} it keeps the last reported state together with
+ * the recent query latency and the number of queries in flight. The shards to
+ * query for a {@link Floc} are resolved to one replica each:
+ * <ul>
+ * <li>replicas that have not reported within the heartbeat age, or whose last indexed
+ * transaction lags the most up to date replica of the floc by more than the maximum
+ * lag, are skipped while a fresh replica is available;</li>
+ * <li>among the fresh replicas two are sampled at random and the less loaded one
+ * (latency weighted by queries in flight) is chosen - power of two choices.</li>
+ * </ul>
+ * Callers report query outcomes with {@link #queryStarted(ShardInstance)} and
+ * {@link #queryCompleted(ShardInstance, long)}.
+ */
+public class ShardTopology
+{
+    private static final long DEFAULT_MAX_HEARTBEAT_AGE = 2 * 60 * 1000L;
+    private static final long DEFAULT_MAX_TRANSACTION_LAG = 1000L;
+    private static final double DEFAULT_LATENCY_DECAY = 0.2;
+
+    private final ConcurrentMap<ShardInstance, Replica> replicas = new ConcurrentHashMap<ShardInstance, Replica>();
+    private final ConcurrentMap<Floc, ConcurrentMap<Shard, ShardReplicas>> replicasByFloc = new ConcurrentHashMap<Floc, ConcurrentMap<Shard, ShardReplicas>>();
+
+    private long maxHeartbeatAge = DEFAULT_MAX_HEARTBEAT_AGE;
+    private long maxTransactionLag = DEFAULT_MAX_TRANSACTION_LAG;
+    private double latencyDecay = DEFAULT_LATENCY_DECAY;
+
+    public ShardTopology()
+    {
+    }
+
+    /**
+     * @param maxHeartbeatAge replicas that have not reported for longer (ms) are not queried
+     */
+    public void setMaxHeartbeatAge(long maxHeartbeatAge)
+    {
+        this.maxHeartbeatAge = maxHeartbeatAge;
+    }
+
+    /**
+     * @param maxTransactionLag replicas more transactions behind the floc are not queried
+     */
+    public void setMaxTransactionLag(long maxTransactionLag)
+    {
+        this.maxTransactionLag = maxTransactionLag;
+    }
+
+    /**
+     * @param latencyDecay weight of the newest sample in the latency moving average, between 0 and 1
+     */
+    public void setLatencyDecay(double latencyDecay)
+    {
+        if (latencyDecay <= 0 || latencyDecay > 1)
+        {
+            throw new IllegalArgumentException("The latency decay must be in (0, 1]: " + latencyDecay);
+        }
+        this.latencyDecay = latencyDecay;
+    }
+
+    /**
+     * Register or refresh a shard instance.
+     * 
+     * @param state the state reported by the shard instance
+     */
+    public void update(ShardState state)
+    {
+        ShardInstance instance = state.getShardInstance();
+        Shard shard = (instance == null) ? null : instance.getShard();
+        if (shard == null || shard.getFloc() == null)
+        {
+            throw new IllegalArgumentException("Shard state without shard instance, shard or floc: " + state);
+        }
+
+        Replica replica = replicas.get(instance);
+        if (replica == null)
+        {
+            Replica created = new Replica(instance, state);
+            replica = replicas.putIfAbsent(instance, created);
+            if (replica == null)
+            {
+                getShardReplicas(shard, true).add(created);
+                return;
+            }
+        }
+        replica.state = state;
+    }
+
+    /**
+     * Forget a shard instance.
+     */
+    public void remove(ShardInstance instance)
+    {
+        Replica replica = replicas.remove(instance);
+        if (replica != null)
+        {
+            ShardReplicas shardReplicas = getShardReplicas(instance.getShard(), false);
+            if (shardReplicas != null)
+            {
+                shardReplicas.remove(replica);
+            }
+        }
+    }
+
+    /**
+     * @return the flocs known to the registry that index the store
+     */
+    public List<Floc> getFlocs(StoreRef storeRef)
+    {
+        List<Floc> flocs = new ArrayList<Floc>();
+        for (Floc floc : replicasByFloc.keySet())
+        {
+            if (floc.getStoreRefs() != null && floc.getStoreRefs().contains(storeRef))
+            {
+                flocs.add(floc);
+            }
+        }
+        return flocs;
+    }
+
+    /**
+     * @return the last reported states of the replicas of a shard
+     */
+    public List<ShardState> getReplicas(Shard shard)
+    {
+        List<ShardState> states = new ArrayList<ShardState>();
+        ShardReplicas shardReplicas = getShardReplicas(shard, false);
+        if (shardReplicas != null)
+        {
+            for (Replica replica : shardReplicas.get())
+            {
+                states.add(replica.state);
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Choose the replica to query for each shard of a floc.
+     * 
+     * @param floc the floc
+     * @param storeRef the store being queried
+     * @return the chosen instance by shard, ordered by shard instance. Shards without any
+     *         live replica are missing; nothing is returned if the floc does not index the store.
+     */
+    public Map<Shard, ShardInstance> getShardsToQuery(Floc floc, StoreRef storeRef)
+    {
+        Map<Shard, ShardInstance> chosen = new LinkedHashMap<Shard, ShardInstance>();
+        ConcurrentMap<Shard, ShardReplicas> shards = replicasByFloc.get(floc);
+        if (shards == null || floc.getStoreRefs() == null || !floc.getStoreRefs().contains(storeRef))
+        {
+            return chosen;
+        }
+
+        long now = currentTimeMillis();
+        long flocTxId = 0;
+        List<Shard> ordered = new ArrayList<Shard>(shards.keySet());
+        ordered.sort((a, b) -> Integer.compare(a.getInstance(), b.getInstance()));
+        for (Shard shard : ordered)
+        {
+            for (Replica replica : shards.get(shard).get())
+            {
+                if (isAlive(replica, now))
+                {
+                    flocTxId = Math.max(flocTxId, replica.state.getLastIndexedTxId());
+                }
+            }
+        }
+
+        for (Shard shard : ordered)
+        {
+            Replica replica = choose(shards.get(shard).get(), now, flocTxId);
+            if (replica != null)
+            {
+                chosen.put(shard, replica.instance);
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Record that a query has been sent to a shard instance.
+     */
+    public void queryStarted(ShardInstance instance)
+    {
+        Replica replica = replicas.get(instance);
+        if (replica != null)
+        {
+            replica.inFlight.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record the outcome of a query started with {@link #queryStarted(ShardInstance)}.
+     * 
+     * @param latency the query time in milliseconds
+     */
+    public void queryCompleted(ShardInstance instance, long latency)
+    {
+        Replica replica = replicas.get(instance);
+        if (replica != null)
+        {
+            replica.inFlight.decrementAndGet();
+            replica.recordLatency(latency, latencyDecay);
+        }
+    }
+
+    /**
+     * @return the moving average query latency of a shard instance, or -1 if unknown
+     */
+    public double getLatency(ShardInstance instance)
+    {
+        Replica replica = replicas.get(instance);
+        return (replica == null) ? -1 : replica.latency;
+    }
+
+    private Replica choose(Replica[] candidates, long now, long flocTxId)
+    {
+        // fresh replicas first, shifted to the front
+        Replica[] eligible = new Replica[candidates.length];
+        int fresh = 0;
+        Replica leastLagging = null;
+        for (Replica replica : candidates)
+        {
+            if (!isAlive(replica, now))
+            {
+                continue;
+            }
+            if (flocTxId - replica.state.getLastIndexedTxId() <= maxTransactionLag)
+            {
+                eligible[fresh++] = replica;
+            }
+            else if (leastLagging == null || replica.state.getLastIndexedTxId() > leastLagging.state.getLastIndexedTxId())
+            {
+                leastLagging = replica;
+            }
+        }
+
+        if (fresh == 0)
+        {
+            // every live replica is stale - better late than missing
+            return leastLagging;
+        }
+        if (fresh == 1)
+        {
+            return eligible[0];
+        }
+
+        int first = nextInt(fresh);
+        int second = nextInt(fresh - 1);
+        if (second >= first)
+        {
+            second++;
+        }
+        Replica a = eligible[first];
+        Replica b = eligible[second];
+        return (b.getLoad() < a.getLoad()) ? b : a;
+    }
+
+    private boolean isAlive(Replica replica, long now)
+    {
+        return now - replica.state.getLastUpdated() <= maxHeartbeatAge;
+    }
+
+    private ShardReplicas getShardReplicas(Shard shard, boolean create)
+    {
+        Floc floc = shard.getFloc();
+        ConcurrentMap<Shard, ShardReplicas> shards = replicasByFloc.get(floc);
+        if (shards == null)
+        {
+            if (!create)
+            {
+                return null;
+            }
+            ConcurrentMap<Shard, ShardReplicas> created = new ConcurrentHashMap<Shard, ShardReplicas>();
+            shards = replicasByFloc.putIfAbsent(floc, created);
+            if (shards == null)
+            {
+                shards = created;
+            }
+        }
+        ShardReplicas shardReplicas = shards.get(shard);
+        if (shardReplicas == null && create)
+        {
+            ShardReplicas created = new ShardReplicas();
+            shardReplicas = shards.putIfAbsent(shard, created);
+            if (shardReplicas == null)
+            {
+                shardReplicas = created;
+            }
+        }
+        return shardReplicas;
+    }
+
+    /**
+     * @return the current time in milliseconds
+     */
+    protected long currentTimeMillis()
+    {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * @return a random int between 0 (inclusive) and bound (exclusive)
+     */
+    protected int nextInt(int bound)
+    {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+
+    /**
+     * The replicas of a shard, as a copy on write array so choosing does not lock.
+     */
+    private static class ShardReplicas
+    {
+        private volatile Replica[] replicas = new Replica[0];
+
+        private Replica[] get()
+        {
+            return replicas;
+        }
+
+        private synchronized void add(Replica replica)
+        {
+            Replica[] updated = new Replica[replicas.length + 1];
+            System.arraycopy(replicas, 0, updated, 0, replicas.length);
+            updated[replicas.length] = replica;
+            replicas = updated;
+        }
+
+        private synchronized void remove(Replica replica)
+        {
+            Collection<Replica> kept = new ArrayList<Replica>(replicas.length);
+            for (Replica existing : replicas)
+            {
+                if (existing != replica)
+                {
+                    kept.add(existing);
+                }
+            }
+            replicas = kept.toArray(new Replica[kept.size()]);
+        }
+    }
+
+    /**
+     * Live state of a shard instance.
+     */
+    private static class Replica
+    {
+        private final ShardInstance instance;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile ShardState state;
+        // unknown until the first query completes
+        private volatile double latency = -1;
+
+        private Replica(ShardInstance instance, ShardState state)
+        {
+            this.instance = instance;
+            this.state = state;
+        }
+
+        private synchronized void recordLatency(long sample, double decay)
+        {
+            latency = (latency < 0) ? sample : latency + decay * (sample - latency);
+        }
+
+        private double getLoad()
+        {
+            // untried replicas look cheap so they are probed
+            double current = (latency < 0) ? 0 : latency;
+            return (current + 1) * (inFlight.get() + 1);
+        }
+    }
+}
@@ -25,9 +25,18 @@
  */
 package org.alfresco.repo.search;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 
@@ -721,7 +730,123 @@ public enum MLAnalysisMode
 
     public abstract boolean includesExactCountryMatch();
 
+    /** The maximum number of locale sets cached before the cache is reset */
+    private static final int MAX_CACHED_LOCALE_SETS = 1024;
+
+    private static final ConcurrentHashMap<LocalesKey, Set<Locale>> CACHED_LOCALES = new ConcurrentHashMap<LocalesKey, Set<Locale>>(64);
+
+    /**
+     * Get the locales to use for the given analysis mode and locale.
+     * 
+     * @param mlAnalaysisMode the analysis mode
+     * @param locale the locale
+     * @param withWildcards <tt>true</tt> to use wildcard locales rather than expanding to the available locales
+     * @return an unmodifiable set of locales - the same set is shared by calls with the same arguments
+     */
     public static Set<Locale> getLocales(MLAnalysisMode mlAnalaysisMode, Locale locale, boolean withWildcards)
+    {
+        LocalesKey key = new LocalesKey(mlAnalaysisMode, locale, withWildcards);
+        Set<Locale> locales = CACHED_LOCALES.get(key);
+        if (locales == null)
+        {
+            locales = Collections.unmodifiableSet(buildLocales(mlAnalaysisMode, locale, withWildcards));
+            if (CACHED_LOCALES.size() >= MAX_CACHED_LOCALE_SETS)
+            {
+                CACHED_LOCALES.clear();
+            }
+            CACHED_LOCALES.put(key, locales);
+        }
+        return locales;
+    }
+
+    /**
+     * Key for the cached locale sets
+     */
+    private static final class LocalesKey
+    {
+        private final MLAnalysisMode mode;
+        private final Locale locale;
+        private final boolean withWildcards;
+
+        private LocalesKey(MLAnalysisMode mode, Locale locale, boolean withWildcards)
+        {
+            this.mode = mode;
+            this.locale = locale;
+            this.withWildcards = withWildcards;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+            {
+                return true;
+            }
+            if (!(obj instanceof LocalesKey))
+            {
+                return false;
+            }
+            LocalesKey other = (LocalesKey) obj;
+            return mode == other.mode && withWildcards == other.withWildcards && locale.equals(other.locale);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(mode, locale, withWildcards);
+        }
+    }
+
+    /**
+     * The available locales indexed by language, country and both
+     */
+    private static final class AvailableLocales
+    {
+        private static final List<Locale> ALL = Collections.unmodifiableList(Arrays.asList(Locale.getAvailableLocales()));
+        private static final Map<String, List<Locale>> BY_LANGUAGE = new HashMap<String, List<Locale>>();
+        private static final Map<String, List<Locale>> BY_COUNTRY = new HashMap<String, List<Locale>>();
+        private static final Map<String, List<Locale>> BY_LANGUAGE_AND_COUNTRY = new HashMap<String, List<Locale>>();
+
+        static
+        {
+            for (Locale available : ALL)
+            {
+                index(BY_LANGUAGE, available.getLanguage(), available);
+                index(BY_COUNTRY, available.getCountry(), available);
+                index(BY_LANGUAGE_AND_COUNTRY, available.getLanguage() + '_' + available.getCountry(), available);
+            }
+        }
+
+        private static void index(Map<String, List<Locale>> index, String key, Locale locale)
+        {
+            List<Locale> locales = index.get(key);
+            if (locales == null)
+            {
+                locales = new ArrayList<Locale>(4);
+                index.put(key, locales);
+            }
+            locales.add(locale);
+        }
+
+        /**
+         * @return the available locales with the language and country, where an empty string matches any
+         */
+        private static Collection<Locale> matching(String language, String country)
+        {
+            List<Locale> matches;
+            if (language.length() == 0)
+            {
+                matches = country.length() == 0 ? ALL : BY_COUNTRY.get(country);
+            }
+            else
+            {
+                matches = country.length() == 0 ? BY_LANGUAGE.get(language) : BY_LANGUAGE_AND_COUNTRY.get(language + '_' + country);
+            }
+            return matches == null ? Collections.<Locale>emptyList() : matches;
+        }
+    }
+
+    private static Set<Locale> buildLocales(MLAnalysisMode mlAnalaysisMode, Locale locale, boolean withWildcards)
     {
         HashSet<Locale> locales = new HashSet<Locale>();
 
@@ -782,10 +907,7 @@ public enum MLAnalysisMode
                         }
                         else
                         {
-                            for (Locale toAdd : Locale.getAvailableLocales())
-                            {
-                                locales.add(toAdd);
-                            }
+                            locales.addAll(AvailableLocales.ALL);
                         }
                     }
                     else
@@ -798,13 +920,7 @@ public enum MLAnalysisMode
                         }
                         else
                         {
-                            for (Locale toAdd : Locale.getAvailableLocales())
-                            {
-                                if (locale.getLanguage().equals("") || locale.getLanguage().equals(toAdd.getLanguage()))
-                                {
-                                    locales.add(toAdd);
-                                }
-                            }
+                            locales.addAll(AvailableLocales.matching(locale.getLanguage(), ""));
                         }
                     }
                 }
@@ -818,15 +934,7 @@ public enum MLAnalysisMode
                     else
                     {
                         // All that match language and country
-                        for (Locale toAdd : Locale.getAvailableLocales())
-                        {
-                            if ((locale.getLanguage().equals("") || locale.getLanguage().equals(toAdd.getLanguage()))
-                                    && (locale.getCountry().equals("") || locale.getCountry()
-                                            .equals(toAdd.getCountry())))
-                            {
-                                locales.add(toAdd);
-                            }
-                        }
+                        locales.addAll(AvailableLocales.matching(locale.getLanguage(), locale.getCountry()));
                     }
                 }
             }
@@ -842,13 +950,7 @@ public enum MLAnalysisMode
             else
             {
                 // All that match language
-                for (Locale toAdd : Locale.getAvailableLocales())
-                {
-                    if (locale.getLanguage().equals("") || locale.getLanguage().equals(toAdd.getLanguage()))
-                    {
-                        locales.add(toAdd);
-                    }
-                }
+                locales.addAll(AvailableLocales.matching(locale.getLanguage(), ""));
             }
         }
 
@@ -881,14 +983,7 @@ public enum MLAnalysisMode
             else
             {
                 // All that match language
-                for (Locale toAdd : Locale.getAvailableLocales())
-                {
-                    if ((locale.getLanguage().equals("") || locale.getLanguage().equals(toAdd.getLanguage()))
-                            && (locale.getCountry().equals("") || locale.getCountry().equals(toAdd.getCountry())))
-                    {
-                        locales.add(toAdd);
-                    }
-                }
+                locales.addAll(AvailableLocales.matching(locale.getLanguage(), locale.getCountry()));
             }
         }
 
@@ -911,13 +1006,7 @@ public enum MLAnalysisMode
             {
                 if (locale.getCountry().equals(""))
                 {
-                    for (Locale toAdd : Locale.getAvailableLocales())
-                    {
-                        if (locale.getLanguage().equals("") || locale.getLanguage().equals(toAdd.getLanguage()))
-                        {
-                            locales.add(toAdd);
-                        }
-                    }
+                    locales.addAll(AvailableLocales.matching(locale.getLanguage(), ""));
                 }
                 else
                 {
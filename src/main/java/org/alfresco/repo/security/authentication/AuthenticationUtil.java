@@ -25,7 +25,8 @@
  */
 package org.alfresco.repo.security.authentication;
 
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.EmptyStackException;
 
 import net.sf.acegisecurity.Authentication;
 import net.sf.acegisecurity.GrantedAuthority;
@@ -73,6 +74,10 @@ public class AuthenticationUtil implements InitializingBean
     private static String defaultGuestUserName = PermissionService.GUEST_AUTHORITY; 
     private static boolean mtEnabled = false;
     
+    /** The system user never changes, so its details are shared by all system authentications */
+    private static final UserDetails SYSTEM_USER_DETAILS = new User(SYSTEM_USER_NAME, "", true, true, true, true,
+            new GrantedAuthority[] { new GrantedAuthorityImpl("ROLE_SYSTEM") });
+    
     /* (non-Javadoc)
      * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
      */
@@ -152,9 +157,7 @@ public class AuthenticationUtil implements InitializingBean
         UserDetails ud = null;
         if (userName.equals(SYSTEM_USER_NAME))
         {
-            GrantedAuthority[] gas = new GrantedAuthority[1];
-            gas[0] = new GrantedAuthorityImpl("ROLE_SYSTEM");
-            ud = new User(SYSTEM_USER_NAME, "", true, true, true, true, gas);
+            ud = SYSTEM_USER_DETAILS;
         }
         else if (userName.equalsIgnoreCase(getGuestUserName()))
         {
@@ -572,10 +575,19 @@ public class AuthenticationUtil implements InitializingBean
         Authentication originalFullAuthentication = AuthenticationUtil.getFullAuthentication();
         Authentication originalRunAsAuthentication = AuthenticationUtil.getRunAsAuthentication();
         
+        // Already running as the system user (nested runAsSystem) so there is no need to switch or log the context
+        boolean alreadyRunAs = (originalFullAuthentication != null) && (originalRunAsAuthentication != null) && 
+                SYSTEM_USER_NAME.equals(uid) && SYSTEM_USER_NAME.equals(getUserName(originalRunAsAuthentication));
+        
         final R result;
         try
         {
-            if (originalFullAuthentication == null)
+            if (alreadyRunAs)
+            {
+                result = runAsWork.doWork();
+                return result;
+            }
+            else if (originalFullAuthentication == null)
             {
                 AuthenticationUtil.setFullyAuthenticatedUser(uid);
             }
@@ -632,7 +644,10 @@ public class AuthenticationUtil implements InitializingBean
                 AuthenticationUtil.setFullAuthentication(originalFullAuthentication);
                 AuthenticationUtil.setRunAsAuthentication(originalRunAsAuthentication);
                 
-                logNDC(getUserName(originalFullAuthentication));
+                if (!alreadyRunAs)
+                {
+                    logNDC(getUserName(originalFullAuthentication));
+                }
             }
         }
     }
@@ -642,29 +657,84 @@ public class AuthenticationUtil implements InitializingBean
         return runAs(runAsWork, getSystemUserName());
     }
     
-    static class ThreadLocalStack extends ThreadLocal<Stack<Authentication>>
+    /**
+     * Stack of the authentication contexts saved by {@link #pushAuthentication()}.  Only ever used by its
+     * own thread so, unlike {@link java.util.Stack}, it is not synchronized and it holds the full authentication,
+     * run as authentication and tenant domain of each saved context side by side.
+     */
+    static final class AuthenticationStack
     {
-        /* (non-Javadoc)
-         * @see java.lang.ThreadLocal#initialValue()
+        private Authentication[] fullAuthentications = new Authentication[4];
+        private Authentication[] runAsAuthentications = new Authentication[4];
+        private String[] tenantDomains = new String[4];
+        private int size;
+        
+        void push(Authentication fullAuthentication, Authentication runAsAuthentication, String tenantDomain)
+        {
+            if (size == fullAuthentications.length)
+            {
+                int capacity = size * 2;
+                fullAuthentications = Arrays.copyOf(fullAuthentications, capacity);
+                runAsAuthentications = Arrays.copyOf(runAsAuthentications, capacity);
+                tenantDomains = Arrays.copyOf(tenantDomains, capacity);
+            }
+            fullAuthentications[size] = fullAuthentication;
+            runAsAuthentications[size] = runAsAuthentication;
+            tenantDomains[size] = tenantDomain;
+            size++;
+        }
+        
+        /**
+         * Remove the top context, which can then be read using the <tt>popped</tt> methods
          */
-        @Override
-        protected Stack<Authentication> initialValue()
+        void pop()
+        {
+            if (size == 0)
+            {
+                throw new EmptyStackException();
+            }
+            size--;
+        }
+        
+        Authentication poppedFullAuthentication()
+        {
+            return fullAuthentications[size];
+        }
+        
+        Authentication poppedRunAsAuthentication()
         {
-            return new Stack<Authentication>();
+            return runAsAuthentications[size];
+        }
+        
+        String poppedTenantDomain()
+        {
+            return tenantDomains[size];
+        }
+        
+        /**
+         * Release the references held for the popped context
+         */
+        void clearPopped()
+        {
+            fullAuthentications[size] = null;
+            runAsAuthentications[size] = null;
+            tenantDomains[size] = null;
+        }
+        
+        int size()
+        {
+            return size;
         }
     }
     
-    private static ThreadLocal<Stack<Authentication>> threadLocalFullAuthenticationStack = new ThreadLocalStack();
-    private static ThreadLocal<Stack<Authentication>> threadLocalRunAsAuthenticationStack = new ThreadLocalStack();
-    
-    private static ThreadLocal<Stack<String>> threadLocalTenantDomainStack = new ThreadLocal<Stack<String>>()
-                                                                                    {
-                                                                                        @Override
-                                                                                        protected Stack<String> initialValue()
-                                                                                        {
-                                                                                            return new Stack<String>();
-                                                                                        }
-                                                                                    };
+    private static ThreadLocal<AuthenticationStack> threadLocalAuthenticationStack = new ThreadLocal<AuthenticationStack>()
+    {
+        @Override
+        protected AuthenticationStack initialValue()
+        {
+            return new AuthenticationStack();
+        }
+    };
     
     /**
      * Push the current authentication context onto a threadlocal stack.
@@ -673,10 +743,7 @@ public class AuthenticationUtil implements InitializingBean
     {
         Authentication originalFullAuthentication = AuthenticationUtil.getFullAuthentication();
         Authentication originalRunAsAuthentication = AuthenticationUtil.getRunAsAuthentication();
-        threadLocalFullAuthenticationStack.get().push(originalFullAuthentication);
-        threadLocalRunAsAuthenticationStack.get().push(originalRunAsAuthentication);
-        
-        threadLocalTenantDomainStack.get().push(TenantContextHolder.getTenantDomain());
+        threadLocalAuthenticationStack.get().push(originalFullAuthentication, originalRunAsAuthentication, TenantContextHolder.getTenantDomain());
         if (logger.isTraceEnabled())
         {
             logger.trace("Pushed authentication in thread: " + Thread.currentThread().getName());
@@ -688,8 +755,12 @@ public class AuthenticationUtil implements InitializingBean
      */
     public static void popAuthentication()
     {
-        Authentication originalFullAuthentication = threadLocalFullAuthenticationStack.get().pop();
-        Authentication originalRunAsAuthentication = threadLocalRunAsAuthenticationStack.get().pop();
+        AuthenticationStack stack = threadLocalAuthenticationStack.get();
+        stack.pop();
+        Authentication originalFullAuthentication = stack.poppedFullAuthentication();
+        Authentication originalRunAsAuthentication = stack.poppedRunAsAuthentication();
+        String originalTenantDomain = stack.poppedTenantDomain();
+        stack.clearPopped();
         
         if (originalFullAuthentication == null)
         {
@@ -701,7 +772,6 @@ public class AuthenticationUtil implements InitializingBean
             AuthenticationUtil.setRunAsAuthentication(originalRunAsAuthentication);
         }
         
-        String originalTenantDomain = threadLocalTenantDomainStack.get().pop();
         TenantContextHolder.setTenantDomain(originalTenantDomain);
         if (logger.isTraceEnabled())
         {
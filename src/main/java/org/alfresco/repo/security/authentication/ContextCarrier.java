@@ -0,0 +1,303 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.authentication;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import net.sf.acegisecurity.Authentication;
+import net.sf.acegisecurity.context.ContextHolder;
+
+import org.alfresco.api.AlfrescoPublicApi;
+import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
+import org.alfresco.repo.tenant.TenantContextHolder;
+
+/**
+ * Carries the security and tenant context of one thread to work run on other threads, such as
+ * virtual threads or the stages of a <code>CompletableFuture</code>.
+ * <p>
+ * The context is {@link #capture() captured} on the submitting thread and is only ever in place on the
+ * running thread for the duration of the work: the running thread's own context is put back afterwards,
+ * so nothing leaks into the next task run by a pooled thread.
+ * <pre>
+ *   ContextCarrier context = ContextCarrier.capture();
+ *   CompletableFuture.supplyAsync(context.wrapSupplier(() -&gt; nodeService.getProperty(nodeRef, ContentModel.PROP_NAME)), executor);
+ * </pre>
+ * The authentication, tenant domain and current ticket are carried by default.  Other thread-bound state
+ * can be carried by {@link #registerContextStore(ContextStore) registering} a {@link ContextStore}.
+ */
+@AlfrescoPublicApi
+public final class ContextCarrier
+{
+    /** The full and run as authentications */
+    private static final ContextStore<Authentication[]> SECURITY_CONTEXT_STORE = new ContextStore<Authentication[]>()
+    {
+        @Override
+        public Authentication[] capture()
+        {
+            Authentication fullAuthentication = AuthenticationUtil.getFullAuthentication();
+            if (fullAuthentication == null)
+            {
+                return null;
+            }
+            return new Authentication[] { fullAuthentication, AuthenticationUtil.getRunAsAuthentication() };
+        }
+
+        @Override
+        public void restore(Authentication[] state)
+        {
+            if (state == null)
+            {
+                ContextHolder.setContext(null);
+                AuthenticationUtil.logNDC(null);
+            }
+            else
+            {
+                AuthenticationUtil.setFullAuthentication(state[0]);
+                if (state[1] != null)
+                {
+                    AuthenticationUtil.setRunAsAuthentication(state[1]);
+                }
+                AuthenticationUtil.logNDC(AuthenticationUtil.getFullyAuthenticatedUser());
+            }
+        }
+    };
+
+    private static final ContextStore<String> TENANT_CONTEXT_STORE = new ContextStore<String>()
+    {
+        @Override
+        public String capture()
+        {
+            return TenantContextHolder.getTenantDomain();
+        }
+
+        @Override
+        public void restore(String state)
+        {
+            TenantContextHolder.setTenantDomain(state);
+        }
+    };
+
+    private static final ContextStore<String> TICKET_CONTEXT_STORE = new ContextStore<String>()
+    {
+        @Override
+        public String capture()
+        {
+            return InMemoryTicketComponentImpl.getCurrentTicketString();
+        }
+
+        @Override
+        public void restore(String state)
+        {
+            InMemoryTicketComponentImpl.setCurrentTicketString(state);
+        }
+    };
+
+    private static final List<ContextStore<?>> contextStores = new CopyOnWriteArrayList<ContextStore<?>>(
+            new ContextStore<?>[] { SECURITY_CONTEXT_STORE, TENANT_CONTEXT_STORE, TICKET_CONTEXT_STORE });
+
+    private final ContextStore<?>[] stores;
+    private final Object[] states;
+
+    private ContextCarrier(ContextStore<?>[] stores, Object[] states)
+    {
+        this.stores = stores;
+        this.states = states;
+    }
+
+    /**
+     * Carry additional thread-bound state, from the next {@link #capture()} on
+     * 
+     * @param contextStore the store of the state
+     */
+    public static void registerContextStore(ContextStore<?> contextStore)
+    {
+        contextStores.add(contextStore);
+    }
+
+    /**
+     * Stop carrying thread-bound state, from the next {@link #capture()} on
+     * 
+     * @param contextStore a store previously registered
+     */
+    public static void unregisterContextStore(ContextStore<?> contextStore)
+    {
+        contextStores.remove(contextStore);
+    }
+
+    /**
+     * Capture the context of the current thread
+     * 
+     * @return the captured context
+     */
+    public static ContextCarrier capture()
+    {
+        ContextStore<?>[] stores = contextStores.toArray(new ContextStore<?>[0]);
+        return new ContextCarrier(stores, captureStates(stores));
+    }
+
+    /**
+     * Wrap an executor so that each task runs in the context of the thread that submitted it
+     * 
+     * @param executor the executor to run tasks
+     * @return an executor that carries the submitter's context to its tasks
+     */
+    public static Executor propagating(final Executor executor)
+    {
+        return new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                executor.execute(capture().wrapRunnable(command));
+            }
+        };
+    }
+
+    /**
+     * Run work in the captured context on the current thread.  The current thread's context is put back afterwards.
+     * 
+     * @param work the work to do
+     * @return the work's return value
+     */
+    public <R> R run(RunAsWork<R> work)
+    {
+        Object[] previousStates = captureStates(stores);
+        restoreStates(stores, states);
+        try
+        {
+            return work.doWork();
+        }
+        catch (RuntimeException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException("Error during run in context.", e);
+        }
+        finally
+        {
+            restoreStates(stores, previousStates);
+        }
+    }
+
+    /**
+     * @return a runnable that runs the given one in the captured context
+     */
+    public Runnable wrapRunnable(final Runnable runnable)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ContextCarrier.this.run(new RunAsWork<Void>()
+                {
+                    @Override
+                    public Void doWork() throws Exception
+                    {
+                        runnable.run();
+                        return null;
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * @return a supplier that gets from the given one in the captured context
+     */
+    public <T> Supplier<T> wrapSupplier(final Supplier<T> supplier)
+    {
+        return new Supplier<T>()
+        {
+            @Override
+            public T get()
+            {
+                return ContextCarrier.this.run(new RunAsWork<T>()
+                {
+                    @Override
+                    public T doWork() throws Exception
+                    {
+                        return supplier.get();
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * @return a callable that calls the given one in the captured context, throwing its exceptions unchanged
+     */
+    public <V> Callable<V> wrapCallable(final Callable<V> callable)
+    {
+        return new Callable<V>()
+        {
+            @Override
+            public V call() throws Exception
+            {
+                Object[] previousStates = captureStates(stores);
+                restoreStates(stores, states);
+                try
+                {
+                    return callable.call();
+                }
+                finally
+                {
+                    restoreStates(stores, previousStates);
+                }
+            }
+        };
+    }
+
+    private static Object[] captureStates(ContextStore<?>[] stores)
+    {
+        Object[] states = new Object[stores.length];
+        for (int i = 0; i < stores.length; i++)
+        {
+            states[i] = stores[i].capture();
+        }
+        return states;
+    }
+
+    private static void restoreStates(ContextStore<?>[] stores, Object[] states)
+    {
+        for (int i = 0; i < stores.length; i++)
+        {
+            restoreState(stores[i], states[i]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void restoreState(ContextStore<T> store, Object state)
+    {
+        store.restore((T) state);
+    }
+}
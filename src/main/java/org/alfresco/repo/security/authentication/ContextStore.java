@@ -0,0 +1,54 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.authentication;
+
+import org.alfresco.api.AlfrescoPublicApi;
+
+/**
+ * A piece of thread-bound state that is carried from one thread to another by a {@link ContextCarrier}.
+ * <p>
+ * Implementations take a copy of the current thread's state and put a copy back, so that it can be
+ * captured on one thread (e.g. the one submitting work) and restored on another (e.g. a pooled or virtual
+ * thread running the work).
+ * 
+ * @param <T> the type of the captured state
+ * @see ContextCarrier#registerContextStore(ContextStore)
+ */
+@AlfrescoPublicApi
+public interface ContextStore<T>
+{
+    /**
+     * @return the state of the current thread, <tt>null</tt> if there is none
+     */
+    T capture();
+
+    /**
+     * Replace the state of the current thread
+     * 
+     * @param state a state returned by {@link #capture()}, <tt>null</tt> to clear the state of the current thread
+     */
+    void restore(T state);
+}
@@ -25,12 +25,15 @@
  */
 package org.alfresco.repo.security.authentication;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 
 import org.alfresco.repo.cache.SimpleCache;
@@ -65,6 +68,8 @@ public class InMemoryTicketComponentImpl implements TicketComponent
     private SimpleCache<String, String> usernameToTicketIdCache;
     private ExpiryMode expiryMode = ExpiryMode.AFTER_INACTIVITY;
     private boolean useSingleTicketPerUser = true;
+    private double expiryRefreshFraction;
+    private final AtomicLong avoidedTicketWrites = new AtomicLong();
 
     /**
      * IOC constructor
@@ -106,6 +111,35 @@ public class InMemoryTicketComponentImpl implements TicketComponent
         return useSingleTicketPerUser;
     }
 
+    /**
+     * Use coarse-grained sliding expiry for {@link ExpiryMode#AFTER_INACTIVITY} tickets: the expiry date of a
+     * ticket is only pushed back (and the ticket written back to the cache) once the given fraction of the
+     * valid duration has passed since it was last set.  For example <tt>0.75</tt> with a valid duration of
+     * one hour writes the ticket at most once every 45 minutes, however often it is used.
+     * <p>
+     * A ticket is never renewed before the standard behaviour would renew it, so a fraction below that point
+     * has no effect.  The default, <tt>0</tt>, keeps the standard behaviour.
+     * 
+     * @param expiryRefreshFraction fraction of the valid duration, at least 0 and less than 1
+     */
+    public void setExpiryRefreshFraction(double expiryRefreshFraction)
+    {
+        if (expiryRefreshFraction < 0.0 || expiryRefreshFraction >= 1.0)
+        {
+            throw new IllegalArgumentException("The expiry refresh fraction must be at least 0 and less than 1: " + expiryRefreshFraction);
+        }
+        this.expiryRefreshFraction = expiryRefreshFraction;
+    }
+
+    /**
+     * @return the number of times a ticket was not written back to the cache, that would have been without
+     *         {@link #setExpiryRefreshFraction(double) coarse-grained sliding expiry}
+     */
+    public long getAvoidedTicketWrites()
+    {
+        return avoidedTicketWrites.get();
+    }
+
     /**
      * Are tickets single use
      */
@@ -141,7 +175,7 @@ public class InMemoryTicketComponentImpl implements TicketComponent
      */
     public void setValidDuration(String validDuration)
     {
-        this.validDuration = new Duration(validDuration);
+        this.validDuration = Duration.valueOf(validDuration);
     }
 
     /**
@@ -210,7 +244,7 @@ public class InMemoryTicketComponentImpl implements TicketComponent
             Date expiryDate = null;
             if (ticketsExpire)
             {
-                expiryDate = Duration.add(new Date(), validDuration);
+                expiryDate = new Date(Duration.add(System.currentTimeMillis(), validDuration));
             }
             ticket = new Ticket(ticketsExpire ? expiryMode : ExpiryMode.DO_NOT_EXPIRE, expiryDate, userName, validDuration);
             putIntoCache(ticket);
@@ -233,7 +267,7 @@ public class InMemoryTicketComponentImpl implements TicketComponent
             Ticket ticketFromCache = ticketsCache.get(userTicketIdFromCache);
             if(ticketFromCache != null)
             {
-                Ticket newTicket = ticketFromCache.getNewEntry();
+                Ticket newTicket = getNewEntry(ticketFromCache);
                 if(newTicket != null)
                 {
                     if (newTicket != ticketFromCache)
@@ -265,7 +299,7 @@ public class InMemoryTicketComponentImpl implements TicketComponent
             }
             throw new AuthenticationException(msg);
         }
-        Ticket newTicket = ticket.getNewEntry();
+        Ticket newTicket = getNewEntry(ticket);
         if (newTicket == null)
         {
             final String msg = "Ticket expired for " + ticketString;
@@ -293,6 +327,37 @@ public class InMemoryTicketComponentImpl implements TicketComponent
         return newTicket.getUserName();
     }
 
+    /**
+     * Get the ticket to use in place of the given one, applying coarse-grained sliding expiry if it is enabled
+     * 
+     * @param ticket Ticket
+     * @return - the same ticket, a renewed ticket or <tt>null</tt> if the ticket has expired
+     */
+    private Ticket getNewEntry(Ticket ticket)
+    {
+        if (expiryRefreshFraction <= 0.0 || ticket.getExpires() != ExpiryMode.AFTER_INACTIVITY)
+        {
+            return ticket.getNewEntry();
+        }
+        long now = System.currentTimeMillis();
+        if (ticket.hasExpired(now))
+        {
+            return null;
+        }
+        if (!ticket.isDueForRenewal(now))
+        {
+            return ticket;
+        }
+        long validDurationMillis = ticket.getValidDurationMillis();
+        long sinceRefresh = validDurationMillis - (ticket.getExpiryTime() - now);
+        if (sinceRefresh >= (long) (validDurationMillis * expiryRefreshFraction))
+        {
+            return ticket.renew(now);
+        }
+        avoidedTicketWrites.incrementAndGet();
+        return ticket;
+    }
+
     /**
      * Helper method to find a ticket
      * 
@@ -489,6 +554,13 @@ public class InMemoryTicketComponentImpl implements TicketComponent
         
         private final Duration testDuration;
 
+        // expiry date, valid and test durations in milliseconds - derived, so not serialized
+        private transient long expiryTime;
+
+        private transient long validDurationMillis;
+
+        private transient long testDurationMillis;
+
         Ticket(ExpiryMode expires, Date expiryDate, String userName, Duration validDuration)
         {
             checkValidTicketParameters(expires, expiryDate, userName, validDuration);
@@ -497,6 +569,7 @@ public class InMemoryTicketComponentImpl implements TicketComponent
             this.userName = userName;
             this.validDuration = validDuration;
             this.testDuration = validDuration.divide(2);
+            this.expiryTime = toExpiryTime(expiryDate);
             final String guid = UUIDGenerator.getInstance().generateRandomBasedUUID().toString();
 
             this.ticketId = computeTicketId(expires, expiryDate, userName, guid);
@@ -554,6 +627,7 @@ public class InMemoryTicketComponentImpl implements TicketComponent
             this.validDuration = validDuration;
             Duration tenPercent = validDuration.divide(10);
             this.testDuration = validDuration.subtract(tenPercent);
+            this.expiryTime = toExpiryTime(expiryDate);
             this.ticketId = ticketId;
 
             if (logger.isTraceEnabled())
@@ -563,6 +637,17 @@ public class InMemoryTicketComponentImpl implements TicketComponent
             }
         }
 
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+        {
+            in.defaultReadObject();
+            expiryTime = toExpiryTime(expiryDate);
+        }
+
+        private static long toExpiryTime(Date expiryDate)
+        {
+            return expiryDate == null ? Long.MAX_VALUE : expiryDate.getTime();
+        }
+
         private static void checkValidTicketParameters(ExpiryMode expires, Date expiryDate, String userName, Duration validDuration)
         {
             ParameterCheck.mandatory("expires mode", expires);
@@ -581,7 +666,47 @@ public class InMemoryTicketComponentImpl implements TicketComponent
 
         boolean hasExpired(Date now)
         {
-            return ((expiryDate != null) && (expiryDate.compareTo(now) < 0));
+            return hasExpired(now.getTime());
+        }
+
+        boolean hasExpired(long now)
+        {
+            return expiryTime < now;
+        }
+
+        long getExpiryTime()
+        {
+            return expiryTime;
+        }
+
+        /**
+         * @return the valid duration in milliseconds, ending at this ticket's expiry date
+         */
+        long getValidDurationMillis()
+        {
+            if (validDurationMillis == 0L)
+            {
+                validDurationMillis = expiryTime - Duration.subtract(expiryTime, validDuration);
+            }
+            return validDurationMillis;
+        }
+
+        /**
+         * @return <tt>true</tt> if less than the test duration remains before the ticket expires i.e. the ticket
+         *         is renewed by the standard sliding expiry
+         */
+        boolean isDueForRenewal(long now)
+        {
+            if (testDurationMillis == 0L)
+            {
+                testDurationMillis = expiryTime - Duration.subtract(expiryTime, testDuration);
+            }
+            return expiryTime - now < testDurationMillis;
+        }
+
+        Ticket renew(long now)
+        {
+            return new Ticket(expires, new Date(Duration.add(now, validDuration)), userName, validDuration, ticketId);
         }
 
         Ticket getNewEntry()
@@ -589,7 +714,7 @@ public class InMemoryTicketComponentImpl implements TicketComponent
             switch (expires)
             {
             case AFTER_FIXED_TIME:
-                if (hasExpired(new Date()))
+                if (hasExpired(System.currentTimeMillis()))
                 {
                     return null;
                 }
@@ -599,21 +724,20 @@ public class InMemoryTicketComponentImpl implements TicketComponent
                 }
 
             case AFTER_INACTIVITY:
-                Date now = new Date();
+                long now = System.currentTimeMillis();
                 if (hasExpired(now))
                 {
                     return null;
                 }
                 else
                 {
-                    Duration remaining = new Duration(now, expiryDate);
-                    if(remaining.compareTo(testDuration) < 0)
+                    if (isDueForRenewal(now))
                     {
                         if (logger.isTraceEnabled())
                         {
                             logger.trace("AFTER_INACTIVITY case, Creating new ticket based on the current one that expires at: " + expiryDate);
                         }
-                        return new Ticket(expires, Duration.add(now, validDuration), userName, validDuration, ticketId);
+                        return renew(now);
                     }
                     else
                     {
@@ -728,6 +852,29 @@ public class InMemoryTicketComponentImpl implements TicketComponent
         clearCurrentSecurityContext();
     }
 
+    /**
+     * @return the current ticket of this thread, as last set by validation or creation
+     */
+    static String getCurrentTicketString()
+    {
+        return currentTicket.get();
+    }
+
+    /**
+     * Set the current ticket of this thread, e.g. to carry it over from another thread
+     */
+    static void setCurrentTicketString(String ticketString)
+    {
+        if (ticketString == null)
+        {
+            currentTicket.remove();
+        }
+        else
+        {
+            currentTicket.set(ticketString);
+        }
+    }
+
     public static void clearCurrentSecurityContext()
     {
         String prevTicket = currentTicket.get();
@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.service.cmr.repository;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.alfresco.api.AlfrescoPublicApi;
+import org.alfresco.model.ContentModel;
+import org.alfresco.service.cmr.security.AccessStatus;
+import org.alfresco.service.cmr.security.PermissionService;
+
+/**
+ * Resolves the human readable form of many {@link Path paths} at once, as given by
+ * {@link Path#toDisplayPath(NodeService, PermissionService)}.
+ * <p>
+ * The ancestors of all the paths are collected and de-duplicated before any lookups are made, and the
+ * name (or lack of <b>Read</b> permission) of each ancestor is remembered for the lifetime of the resolver.
+ * Paths that share ancestors - e.g. search results within the same site - therefore cost one permission
+ * check and one name lookup per distinct ancestor node.
+ * <p>
+ * Instances are not thread safe and do not notice changes to names or permissions once a node has been
+ * resolved, so a resolver should be used for a single request (or a single page of results) only.
+ * 
+ * @see Path#toDisplayPath(NodeService, PermissionService)
+ */
+@AlfrescoPublicApi
+public class DisplayPathResolver
+{
+    private final NodeService nodeService;
+    private final PermissionService permissionService;
+
+    /** Display names by node; a <tt>null</tt> value means the name may not be read */
+    private final Map<NodeRef, String> displayNames = new HashMap<NodeRef, String>(64);
+
+    /**
+     * @param nodeService           the service used to read node names
+     * @param permissionService     the service used to check <b>Read</b> permission on the ancestor nodes
+     */
+    public DisplayPathResolver(NodeService nodeService, PermissionService permissionService)
+    {
+        this.nodeService = nodeService;
+        this.permissionService = permissionService;
+    }
+
+    /**
+     * Return the human readable form of a path
+     * 
+     * @param path      the path
+     * @return          human readable form of the path excluding the final element
+     */
+    public String toDisplayPath(Path path)
+    {
+        Set<NodeRef> unresolved = new LinkedHashSet<NodeRef>();
+        collectUnresolved(path, unresolved);
+        resolve(unresolved);
+        return buildDisplayPath(path);
+    }
+
+    /**
+     * Return the human readable form of each of the given paths, resolving each distinct ancestor only once
+     * 
+     * @param paths     the paths
+     * @return          human readable form of each path excluding its final element, in the order of the paths given
+     */
+    public List<String> toDisplayPaths(Collection<Path> paths)
+    {
+        Set<NodeRef> unresolved = new LinkedHashSet<NodeRef>();
+        for (Path path : paths)
+        {
+            collectUnresolved(path, unresolved);
+        }
+        resolve(unresolved);
+
+        List<String> displayPaths = new ArrayList<String>(paths.size());
+        for (Path path : paths)
+        {
+            displayPaths.add(buildDisplayPath(path));
+        }
+        return displayPaths;
+    }
+
+    /**
+     * Resolve the display names of nodes that have not been seen before by this resolver. The names of nodes
+     * that may not be read must be stored as <tt>null</tt>.
+     * <p>
+     * The default implementation checks permission and reads the name of each node in turn. Override to
+     * make use of any bulk loading the underlying services provide.
+     * 
+     * @param nodeRefs      the distinct nodes to resolve, in the order they were first encountered
+     * @param displayNames  the map to store the resolved names in
+     */
+    protected void resolveDisplayNames(Set<NodeRef> nodeRefs, Map<NodeRef, String> displayNames)
+    {
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            String displayName = null;
+            if (permissionService.hasPermission(nodeRef, PermissionService.READ) == AccessStatus.ALLOWED)
+            {
+                Serializable nameProp = nodeService.getProperty(nodeRef, ContentModel.PROP_NAME);
+                displayName = nameProp.toString();
+            }
+            displayNames.put(nodeRef, displayName);
+        }
+    }
+
+    private void resolve(Set<NodeRef> unresolved)
+    {
+        if (!unresolved.isEmpty())
+        {
+            resolveDisplayNames(unresolved, displayNames);
+        }
+    }
+
+    private void collectUnresolved(Path path, Set<NodeRef> unresolved)
+    {
+        int last = path.size() - 1;
+        int i = 0;
+        for (Path.Element element : path)
+        {
+            if (i++ == last)
+            {
+                break;
+            }
+            if (element instanceof Path.ChildAssocElement)
+            {
+                ChildAssociationRef elementRef = ((Path.ChildAssocElement) element).getRef();
+                if (elementRef.getParentRef() != null && !displayNames.containsKey(elementRef.getChildRef()))
+                {
+                    unresolved.add(elementRef.getChildRef());
+                }
+            }
+        }
+    }
+
+    private String buildDisplayPath(Path path)
+    {
+        StringBuilder buf = new StringBuilder(64);
+        int last = path.size() - 1;
+        int i = 0;
+        for (Path.Element element : path)
+        {
+            if (i++ == last)
+            {
+                break;
+            }
+            String elementString = null;
+            if (element instanceof Path.ChildAssocElement)
+            {
+                ChildAssociationRef elementRef = ((Path.ChildAssocElement) element).getRef();
+                if (elementRef.getParentRef() != null)
+                {
+                    elementString = displayNames.get(elementRef.getChildRef());
+                    if (elementString == null)
+                    {
+                        // revert to using QName if we are not allowed access to the name
+                        elementString = elementRef.getQName().getLocalName();
+                    }
+                }
+            }
+            else
+            {
+                elementString = element.getElementString();
+            }
+
+            if (elementString != null)
+            {
+                buf.append("/");
+                buf.append(elementString);
+            }
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.service.cmr.repository;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.alfresco.api.AlfrescoPublicApi;
+import org.alfresco.service.namespace.QName;
+
+/**
+ * Compact binary encoding of {@link NodeRef}, {@link ChildAssociationRef} and {@link AssociationRef} for
+ * cache replication and bulk export, as an alternative to their string forms.
+ * <p>
+ * Node ids in the usual lower-case UUID form are packed into two longs; other ids are written as strings.
+ * Store references and QNames are written in full the first time they occur in a stream and as a small
+ * dictionary id after that, so a stream of references should be written by a single {@link Writer} and read
+ * back by a single {@link Reader}, in the same order.
+ * 
+ * <pre>
+ *   EntityRefCodec.Writer writer = new EntityRefCodec.Writer(dataOutput);
+ *   for (ChildAssociationRef assocRef : assocRefs)
+ *   {
+ *       writer.writeChildAssociationRef(assocRef);
+ *   }
+ * </pre>
+ */
+@AlfrescoPublicApi
+public final class EntityRefCodec
+{
+    private static final int NODE_NULL = 0;
+    private static final int NODE_UUID = 1;
+    private static final int NODE_STRING = 2;
+
+    /** Dictionary entries: 0 is null, 1 is a new entry that follows in full, otherwise the entry id + 2 */
+    private static final int ENTRY_NULL = 0;
+    private static final int ENTRY_NEW = 1;
+    private static final int ENTRY_ID_OFFSET = 2;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private EntityRefCodec()
+    {
+    }
+
+    /**
+     * Writes references to a {@link DataOutput}. Not thread safe.
+     */
+    public static final class Writer
+    {
+        private final DataOutput out;
+        private final Map<StoreRef, Integer> storeRefIds = new HashMap<StoreRef, Integer>();
+        private final Map<QName, Integer> qnameIds = new HashMap<QName, Integer>();
+
+        public Writer(DataOutput out)
+        {
+            this.out = out;
+        }
+
+        /**
+         * @param nodeRef the node reference, may be <tt>null</tt>
+         */
+        public void writeNodeRef(NodeRef nodeRef) throws IOException
+        {
+            if (nodeRef == null)
+            {
+                out.writeByte(NODE_NULL);
+                return;
+            }
+            String id = nodeRef.getId();
+            if (isUuid(id))
+            {
+                out.writeByte(NODE_UUID);
+                out.writeLong(parseHex(id, 0, 8) << 32 | parseHex(id, 9, 13) << 16 | parseHex(id, 14, 18));
+                out.writeLong(parseHex(id, 19, 23) << 48 | parseHex(id, 24, 36));
+            }
+            else
+            {
+                out.writeByte(NODE_STRING);
+                out.writeUTF(id);
+            }
+            writeStoreRef(nodeRef.getStoreRef());
+        }
+
+        /**
+         * @param assocRef the child association reference, never <tt>null</tt>
+         */
+        public void writeChildAssociationRef(ChildAssociationRef assocRef) throws IOException
+        {
+            writeQName(assocRef.getTypeQName());
+            writeNodeRef(assocRef.getParentRef());
+            writeQName(assocRef.getQName());
+            writeNodeRef(assocRef.getChildRef());
+            out.writeBoolean(assocRef.isPrimary());
+            writeVarInt(out, assocRef.getNthSibling() + 1);
+        }
+
+        /**
+         * @param assocRef the association reference, never <tt>null</tt>
+         */
+        public void writeAssociationRef(AssociationRef assocRef) throws IOException
+        {
+            Long id = assocRef.getId();
+            if (id == null)
+            {
+                out.writeBoolean(false);
+            }
+            else
+            {
+                out.writeBoolean(true);
+                out.writeLong(id);
+            }
+            writeNodeRef(assocRef.getSourceRef());
+            writeQName(assocRef.getTypeQName());
+            writeNodeRef(assocRef.getTargetRef());
+        }
+
+        private void writeStoreRef(StoreRef storeRef) throws IOException
+        {
+            Integer id = storeRefIds.get(storeRef);
+            if (id != null)
+            {
+                writeVarInt(out, id + ENTRY_ID_OFFSET);
+                return;
+            }
+            storeRefIds.put(storeRef, storeRefIds.size());
+            writeVarInt(out, ENTRY_NEW);
+            out.writeUTF(storeRef.getProtocol());
+            out.writeUTF(storeRef.getIdentifier());
+        }
+
+        private void writeQName(QName qname) throws IOException
+        {
+            if (qname == null)
+            {
+                writeVarInt(out, ENTRY_NULL);
+                return;
+            }
+            Integer id = qnameIds.get(qname);
+            if (id != null)
+            {
+                writeVarInt(out, id + ENTRY_ID_OFFSET);
+                return;
+            }
+            qnameIds.put(qname, qnameIds.size());
+            writeVarInt(out, ENTRY_NEW);
+            out.writeUTF(qname.getNamespaceURI());
+            out.writeUTF(qname.getLocalName());
+        }
+    }
+
+    /**
+     * Reads references written by a {@link Writer} from a {@link DataInput}. Not thread safe.
+     */
+    public static final class Reader
+    {
+        private final DataInput in;
+        private final List<StoreRef> storeRefs = new ArrayList<StoreRef>();
+        private final List<QName> qnames = new ArrayList<QName>();
+
+        public Reader(DataInput in)
+        {
+            this.in = in;
+        }
+
+        /**
+         * @return the node reference, may be <tt>null</tt>
+         */
+        public NodeRef readNodeRef() throws IOException
+        {
+            int type = in.readByte();
+            String id;
+            switch (type)
+            {
+            case NODE_NULL:
+                return null;
+            case NODE_UUID:
+                id = formatUuid(in.readLong(), in.readLong());
+                break;
+            case NODE_STRING:
+                id = in.readUTF();
+                break;
+            default:
+                throw new IOException("Unexpected node reference type: " + type);
+            }
+            return new NodeRef(readStoreRef(), id);
+        }
+
+        public ChildAssociationRef readChildAssociationRef() throws IOException
+        {
+            QName assocTypeQName = readQName();
+            NodeRef parentRef = readNodeRef();
+            QName childQName = readQName();
+            NodeRef childRef = readNodeRef();
+            boolean isPrimary = in.readBoolean();
+            int nthSibling = readVarInt(in) - 1;
+            return new ChildAssociationRef(assocTypeQName, parentRef, childQName, childRef, isPrimary, nthSibling);
+        }
+
+        public AssociationRef readAssociationRef() throws IOException
+        {
+            Long id = in.readBoolean() ? Long.valueOf(in.readLong()) : null;
+            NodeRef sourceRef = readNodeRef();
+            QName assocTypeQName = readQName();
+            NodeRef targetRef = readNodeRef();
+            return new AssociationRef(id, sourceRef, assocTypeQName, targetRef);
+        }
+
+        private StoreRef readStoreRef() throws IOException
+        {
+            int entry = readVarInt(in);
+            if (entry == ENTRY_NEW)
+            {
+                StoreRef storeRef = StoreRef.valueOf(in.readUTF(), in.readUTF());
+                storeRefs.add(storeRef);
+                return storeRef;
+            }
+            return getEntry(storeRefs, entry);
+        }
+
+        private QName readQName() throws IOException
+        {
+            int entry = readVarInt(in);
+            if (entry == ENTRY_NULL)
+            {
+                return null;
+            }
+            if (entry == ENTRY_NEW)
+            {
+                QName qname = QName.createQName(in.readUTF(), in.readUTF());
+                qnames.add(qname);
+                return qname;
+            }
+            return getEntry(qnames, entry);
+        }
+
+        private static <T> T getEntry(List<T> entries, int entry) throws IOException
+        {
+            int id = entry - ENTRY_ID_OFFSET;
+            if (id < 0 || id >= entries.size())
+            {
+                throw new IOException("Unknown dictionary entry: " + entry);
+            }
+            return entries.get(id);
+        }
+    }
+
+    /**
+     * @return <tt>true</tt> if the id is a UUID in lower-case, hyphenated form, which can be restored exactly
+     */
+    static boolean isUuid(String id)
+    {
+        if (id.length() != 36)
+        {
+            return false;
+        }
+        for (int i = 0; i < 36; i++)
+        {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23)
+            {
+                if (c != '-')
+                {
+                    return false;
+                }
+            }
+            else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f')))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(String s, int start, int end)
+    {
+        long value = 0;
+        for (int i = start; i < end; i++)
+        {
+            char c = s.charAt(i);
+            value = (value << 4) | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return value;
+    }
+
+    static String formatUuid(long mostSigBits, long leastSigBits)
+    {
+        char[] chars = new char[36];
+        formatHex(chars, 0, mostSigBits >>> 32, 8);
+        chars[8] = '-';
+        formatHex(chars, 9, mostSigBits >>> 16, 4);
+        chars[13] = '-';
+        formatHex(chars, 14, mostSigBits, 4);
+        chars[18] = '-';
+        formatHex(chars, 19, leastSigBits >>> 48, 4);
+        chars[23] = '-';
+        formatHex(chars, 24, leastSigBits, 12);
+        return new String(chars);
+    }
+
+    private static void formatHex(char[] chars, int offset, long value, int digits)
+    {
+        for (int i = offset + digits - 1; i >= offset; i--)
+        {
+            chars[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            int b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+}
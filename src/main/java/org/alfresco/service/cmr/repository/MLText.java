@@ -25,10 +25,22 @@
  */
 package org.alfresco.service.cmr.repository;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.springframework.extensions.surf.util.I18NUtil;
 
@@ -41,6 +53,10 @@ import org.springframework.extensions.surf.util.I18NUtil;
  * class.
  * <p>
  * This is a simple extension of a <code>HashMap</code> with a few convenience methods.
+ * Up to {@link #MAX_COMPACT_SIZE four} values are held in small parallel arrays rather
+ * than in the hash table, which is only used by texts with more locales.  Iteration over
+ * a compact text is in the order the locales were added.  The serialized form is that
+ * of the <code>HashMap</code>.
  * 
  * @see <a href=http://www.loc.gov/standards/iso639-2/php/English_list.php>ISO639-2</a>
  * 
@@ -51,9 +67,29 @@ public class MLText extends HashMap<Locale, String>
 {
     private static final long serialVersionUID = -3696135175650511841L;
 
+    /** The most values held in the compact arrays */
+    static final int MAX_COMPACT_SIZE = 4;
+
+    private static final Locale[] NO_LOCALES = new Locale[0];
+    private static final String[] NO_VALUES = new String[0];
+
+    /** The locales of a compact text or <tt>null</tt> if the values are in the hash table */
+    private transient Locale[] locales;
+    private transient String[] values;
+    private transient int count;
+
+    /** The last locale requested of {@link #getClosestValue(Locale)} and its match */
+    private transient volatile Locale[] closest;
+
+    private transient Set<Locale> keySetView;
+    private transient Collection<String> valuesView;
+    private transient Set<Map.Entry<Locale, String>> entrySetView;
+
     public MLText()
     {
         super(3, 0.75F);
+        this.locales = NO_LOCALES;
+        this.values = NO_VALUES;
     }
     
     /**
@@ -81,7 +117,9 @@ public class MLText extends HashMap<Locale, String>
     public MLText(Locale locale, String value)
     {
         super(3, 0.75F);
-        super.put(locale, value);
+        this.locales = new Locale[] { locale };
+        this.values = new String[] { value };
+        this.count = 1;
     }
 
     /**
@@ -134,6 +172,11 @@ public class MLText extends HashMap<Locale, String>
         {
             return null;
         }
+        else if (this.size() == 1 && locales != null)
+        {
+            // Any match gives the only value
+            return values[0];
+        }
         // There is some hope of getting a match
         Locale locale = I18NUtil.getLocale();
         return getClosestValue(locale);
@@ -161,12 +204,34 @@ public class MLText extends HashMap<Locale, String>
         {
             return null;
         }
-        // Use the available keys as options
-        Set<Locale> options = keySet();
-        // Get a match
-        Locale match = I18NUtil.getNearestLocale(locale, options);
+        else if (this.size() == 1 && locales != null)
+        {
+            // Whatever the match, it can only be the one value
+            return values[0];
+        }
+        else if (locale != null && containsKey(locale))
+        {
+            return get(locale);
+        }
+        // Use the last match for the same locale if the text still has it
+        Locale[] last = closest;
+        Locale match;
+        if (last != null && Objects.equals(last[0], locale) && containsKey(last[1]))
+        {
+            match = last[1];
+        }
+        else
+        {
+            match = I18NUtil.getNearestLocale(locale, keySet());
+            if (match != null)
+            {
+                closest = new Locale[] { locale, match };
+            }
+        }
         if (match == null)
         {
+            // Use the available keys as options
+            Set<Locale> options = keySet();
             // No close matches for the locale - go for the default locale
             locale = I18NUtil.getLocale();
             match = I18NUtil.getNearestLocale(locale, options);
@@ -197,4 +262,718 @@ public class MLText extends HashMap<Locale, String>
     {
         remove(locale);
     }
-}
\ No newline at end of file
+
+    /*
+     * Map implementation over the compact arrays.  Once the values are in the hash table
+     * i.e. locales is null, everything is passed on to the HashMap.
+     */
+
+    private int indexOf(Object locale)
+    {
+        Locale[] keys = locales;
+        for (int i = 0; i < count; i++)
+        {
+            if (Objects.equals(keys[i], locale))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Add a value for a locale that is not present
+     */
+    private void append(Locale locale, String value)
+    {
+        if (count == MAX_COMPACT_SIZE)
+        {
+            // too many for the arrays - move everything to the hash table
+            for (int i = 0; i < count; i++)
+            {
+                super.put(locales[i], values[i]);
+            }
+            super.put(locale, value);
+            locales = null;
+            values = null;
+            count = 0;
+        }
+        else
+        {
+            if (count == locales.length)
+            {
+                int capacity = Math.min(MAX_COMPACT_SIZE, Math.max(1, count * 2));
+                Locale[] newLocales = new Locale[capacity];
+                String[] newValues = new String[capacity];
+                System.arraycopy(locales, 0, newLocales, 0, count);
+                System.arraycopy(values, 0, newValues, 0, count);
+                locales = newLocales;
+                values = newValues;
+            }
+            locales[count] = locale;
+            values[count] = value;
+            count++;
+        }
+        closest = null;
+    }
+
+    private String removeAt(int index)
+    {
+        String value = values[index];
+        int moved = count - index - 1;
+        if (moved > 0)
+        {
+            System.arraycopy(locales, index + 1, locales, index, moved);
+            System.arraycopy(values, index + 1, values, index, moved);
+        }
+        count--;
+        locales[count] = null;
+        values[count] = null;
+        closest = null;
+        return value;
+    }
+
+    @Override
+    public int size()
+    {
+        return locales == null ? super.size() : count;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    @Override
+    public String get(Object key)
+    {
+        if (locales == null)
+        {
+            return super.get(key);
+        }
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return locales == null ? super.containsKey(key) : indexOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value)
+    {
+        if (locales == null)
+        {
+            return super.containsValue(value);
+        }
+        for (int i = 0; i < count; i++)
+        {
+            if (Objects.equals(values[i], value))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String put(Locale key, String value)
+    {
+        if (locales == null)
+        {
+            closest = null;
+            return super.put(key, value);
+        }
+        int index = indexOf(key);
+        if (index >= 0)
+        {
+            String previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+        append(key, value);
+        return null;
+    }
+
+    @Override
+    public void putAll(Map<? extends Locale, ? extends String> m)
+    {
+        for (Map.Entry<? extends Locale, ? extends String> entry : m.entrySet())
+        {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public String remove(Object key)
+    {
+        if (locales == null)
+        {
+            closest = null;
+            return super.remove(key);
+        }
+        int index = indexOf(key);
+        return index < 0 ? null : removeAt(index);
+    }
+
+    @Override
+    public void clear()
+    {
+        super.clear();
+        locales = NO_LOCALES;
+        values = NO_VALUES;
+        count = 0;
+        closest = null;
+    }
+
+    @Override
+    public String getOrDefault(Object key, String defaultValue)
+    {
+        if (locales == null)
+        {
+            return super.getOrDefault(key, defaultValue);
+        }
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : values[index];
+    }
+
+    @Override
+    public String putIfAbsent(Locale key, String value)
+    {
+        if (locales == null)
+        {
+            closest = null;
+            return super.putIfAbsent(key, value);
+        }
+        int index = indexOf(key);
+        if (index < 0)
+        {
+            append(key, value);
+            return null;
+        }
+        String previous = values[index];
+        if (previous == null)
+        {
+            values[index] = value;
+        }
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value)
+    {
+        if (locales == null)
+        {
+            closest = null;
+            return super.remove(key, value);
+        }
+        int index = indexOf(key);
+        if (index >= 0 && Objects.equals(values[index], value))
+        {
+            removeAt(index);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean replace(Locale key, String oldValue, String newValue)
+    {
+        if (locales == null)
+        {
+            return super.replace(key, oldValue, newValue);
+        }
+        int index = indexOf(key);
+        if (index >= 0 && Objects.equals(values[index], oldValue))
+        {
+            values[index] = newValue;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String replace(Locale key, String value)
+    {
+        if (locales == null)
+        {
+            return super.replace(key, value);
+        }
+        int index = indexOf(key);
+        if (index < 0)
+        {
+            return null;
+        }
+        String previous = values[index];
+        values[index] = value;
+        return previous;
+    }
+
+    @Override
+    public String computeIfAbsent(Locale key, Function<? super Locale, ? extends String> mappingFunction)
+    {
+        if (locales == null)
+        {
+            closest = null;
+            return super.computeIfAbsent(key, mappingFunction);
+        }
+        Objects.requireNonNull(mappingFunction);
+        String previous = get(key);
+        if (previous != null)
+        {
+            return previous;
+        }
+        String value = mappingFunction.apply(key);
+        if (value != null)
+        {
+            put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public String computeIfPresent(Locale key, BiFunction<? super Locale, ? super String, ? extends String> remappingFunction)
+    {
+        if (locales == null)
+        {
+            closest = null;
+            return super.computeIfPresent(key, remappingFunction);
+        }
+        Objects.requireNonNull(remappingFunction);
+        String previous = get(key);
+        if (previous == null)
+        {
+            return null;
+        }
+        String value = remappingFunction.apply(key, previous);
+        if (value == null)
+        {
+            remove(key);
+        }
+        else
+        {
+            put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public String compute(Locale key, BiFunction<? super Locale, ? super String, ? extends String> remappingFunction)
+    {
+        if (locales == null)
+        {
+            closest = null;
+            return super.compute(key, remappingFunction);
+        }
+        Objects.requireNonNull(remappingFunction);
+        String previous = get(key);
+        String value = remappingFunction.apply(key, previous);
+        if (value == null)
+        {
+            remove(key);
+        }
+        else
+        {
+            put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public String merge(Locale key, String value, BiFunction<? super String, ? super String, ? extends String> remappingFunction)
+    {
+        if (locales == null)
+        {
+            closest = null;
+            return super.merge(key, value, remappingFunction);
+        }
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        String previous = get(key);
+        String merged = (previous == null) ? value : remappingFunction.apply(previous, value);
+        if (merged == null)
+        {
+            remove(key);
+        }
+        else
+        {
+            put(key, merged);
+        }
+        return merged;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super Locale, ? super String> action)
+    {
+        if (locales == null)
+        {
+            super.forEach(action);
+            return;
+        }
+        Objects.requireNonNull(action);
+        for (int i = 0; i < count; i++)
+        {
+            action.accept(locales[i], values[i]);
+        }
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super Locale, ? super String, ? extends String> function)
+    {
+        if (locales == null)
+        {
+            super.replaceAll(function);
+            return;
+        }
+        Objects.requireNonNull(function);
+        for (int i = 0; i < count; i++)
+        {
+            values[i] = function.apply(locales[i], values[i]);
+        }
+    }
+
+    /*
+     * The views work in either storage mode, so that a view taken before the text moves between
+     * the arrays and the hash table carries on reading and writing through to the text.
+     */
+
+    @Override
+    public Set<Locale> keySet()
+    {
+        if (keySetView == null)
+        {
+            keySetView = new AbstractSet<Locale>()
+            {
+                @Override
+                public Iterator<Locale> iterator()
+                {
+                    if (locales == null)
+                    {
+                        return MLText.super.keySet().iterator();
+                    }
+                    return new CompactIterator<Locale>()
+                    {
+                        @Override
+                        Locale get(int index)
+                        {
+                            return locales[index];
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return MLText.this.size();
+                }
+
+                @Override
+                public boolean contains(Object o)
+                {
+                    return containsKey(o);
+                }
+
+                @Override
+                public boolean remove(Object o)
+                {
+                    if (!containsKey(o))
+                    {
+                        return false;
+                    }
+                    MLText.this.remove(o);
+                    return true;
+                }
+
+                @Override
+                public void clear()
+                {
+                    MLText.this.clear();
+                }
+            };
+        }
+        return keySetView;
+    }
+
+    @Override
+    public Collection<String> values()
+    {
+        if (valuesView == null)
+        {
+            valuesView = new AbstractCollection<String>()
+            {
+                @Override
+                public Iterator<String> iterator()
+                {
+                    if (locales == null)
+                    {
+                        return MLText.super.values().iterator();
+                    }
+                    return new CompactIterator<String>()
+                    {
+                        @Override
+                        String get(int index)
+                        {
+                            return values[index];
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return MLText.this.size();
+                }
+
+                @Override
+                public boolean contains(Object o)
+                {
+                    return containsValue(o);
+                }
+
+                @Override
+                public void clear()
+                {
+                    MLText.this.clear();
+                }
+            };
+        }
+        return valuesView;
+    }
+
+    @Override
+    public Set<Map.Entry<Locale, String>> entrySet()
+    {
+        if (entrySetView == null)
+        {
+            entrySetView = new AbstractSet<Map.Entry<Locale, String>>()
+            {
+                @Override
+                public Iterator<Map.Entry<Locale, String>> iterator()
+                {
+                    if (locales == null)
+                    {
+                        return MLText.super.entrySet().iterator();
+                    }
+                    return new CompactIterator<Map.Entry<Locale, String>>()
+                    {
+                        @Override
+                        Map.Entry<Locale, String> get(int index)
+                        {
+                            return new CompactEntry(locales[index]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return MLText.this.size();
+                }
+
+                @Override
+                public boolean contains(Object o)
+                {
+                    if (!(o instanceof Map.Entry))
+                    {
+                        return false;
+                    }
+                    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                    Object key = entry.getKey();
+                    return containsKey(key) && Objects.equals(get(key), entry.getValue());
+                }
+
+                @Override
+                public boolean remove(Object o)
+                {
+                    if (!contains(o))
+                    {
+                        return false;
+                    }
+                    MLText.this.remove(((Map.Entry<?, ?>) o).getKey());
+                    return true;
+                }
+
+                @Override
+                public void clear()
+                {
+                    MLText.this.clear();
+                }
+            };
+        }
+        return entrySetView;
+    }
+
+    /**
+     * Iterates over the compact arrays, allowing removal.  Like the iterators of the hash table,
+     * it fails if the text changes storage mode while it is in use.
+     */
+    private abstract class CompactIterator<T> implements Iterator<T>
+    {
+        private int next = 0;
+        private boolean canRemove = false;
+
+        abstract T get(int index);
+
+        public boolean hasNext()
+        {
+            return locales == null || next < count;
+        }
+
+        public T next()
+        {
+            if (locales == null)
+            {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= count)
+            {
+                throw new NoSuchElementException();
+            }
+            canRemove = true;
+            return get(next++);
+        }
+
+        public void remove()
+        {
+            if (!canRemove)
+            {
+                throw new IllegalStateException();
+            }
+            if (locales == null)
+            {
+                throw new ConcurrentModificationException();
+            }
+            canRemove = false;
+            MLText.this.remove(locales[--next]);
+        }
+    }
+
+    /**
+     * An entry that reads and writes through to the text
+     */
+    private final class CompactEntry implements Map.Entry<Locale, String>
+    {
+        private final Locale locale;
+
+        private CompactEntry(Locale locale)
+        {
+            this.locale = locale;
+        }
+
+        public Locale getKey()
+        {
+            return locale;
+        }
+
+        public String getValue()
+        {
+            return get(locale);
+        }
+
+        public String setValue(String value)
+        {
+            return put(locale, value);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Map.Entry))
+            {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return Objects.equals(locale, entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hashCode(locale) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString()
+        {
+            return locale + "=" + getValue();
+        }
+    }
+
+    /**
+     * @return <tt>true</tt> if the values are held in the compact arrays
+     */
+    boolean isCompact()
+    {
+        return locales != null;
+    }
+
+    /**
+     * Move the values from the hash table into the arrays if there are few enough
+     */
+    private void compact()
+    {
+        int size = super.size();
+        if (size > MAX_COMPACT_SIZE)
+        {
+            return;
+        }
+        Locale[] newLocales = new Locale[size];
+        String[] newValues = new String[size];
+        int i = 0;
+        for (Map.Entry<Locale, String> entry : super.entrySet())
+        {
+            newLocales[i] = entry.getKey();
+            newValues[i] = entry.getValue();
+            i++;
+        }
+        super.clear();
+        locales = newLocales;
+        values = newValues;
+        count = size;
+    }
+
+    @Override
+    public Object clone()
+    {
+        // The HashMap clone copies all the entries into the hash table of the copy
+        MLText clone = (MLText) super.clone();
+        clone.locales = null;
+        clone.values = null;
+        clone.count = 0;
+        clone.closest = null;
+        clone.keySetView = null;
+        clone.valuesView = null;
+        clone.entrySetView = null;
+        clone.compact();
+        return clone;
+    }
+
+    /**
+     * Serialize the values as they always were i.e. in the hash table
+     */
+    private Object writeReplace()
+    {
+        if (locales == null)
+        {
+            return this;
+        }
+        MLText replacement = new MLText();
+        replacement.locales = null;
+        replacement.values = null;
+        for (int i = 0; i < count; i++)
+        {
+            replacement.put(locales[i], values[i]);
+        }
+        return replacement;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        // The HashMap has read the values into the hash table
+        compact();
+    }
+}
@@ -65,6 +65,8 @@ public final class NodeRef implements EntityRef, Serializable
     
     private final StoreRef storeRef;
     private final String id;
+    /** The string form, built on first use */
+    private transient String stringValue;
 
     /**
      * @see #NodeRef(StoreRef, String)
@@ -103,6 +105,9 @@ public final class NodeRef implements EntityRef, Serializable
      * </p>
      * <pre><storeref>/<nodeId></pre>
      * 
+     * The store reference is the {@link StoreRef#valueOf(String) canonical} instance, so parsing a reference to a
+     * known store only allocates the node id.
+     * 
      * @param nodeRef the string representation of a node ref
      */
     public NodeRef(String nodeRef)
@@ -112,14 +117,23 @@ public final class NodeRef implements EntityRef, Serializable
         {
             throw new MalformedNodeRefException("Invalid node ref - does not contain forward slash: " + nodeRef);
         }
-        this.storeRef = new StoreRef(nodeRef.substring(0, lastForwardSlash));
+        this.storeRef = StoreRef.valueOf(nodeRef, 0, lastForwardSlash);
         this.id = nodeRef.substring(lastForwardSlash+1);
+        this.stringValue = nodeRef;
     }
 
     @Override
     public String toString()
     {
-        return storeRef.toString() + URI_FILLER + id;
+        String string = stringValue;
+        if (string == null)
+        {
+            String storeString = storeRef.toString();
+            string = new StringBuilder(storeString.length() + 1 + id.length())
+                    .append(storeString).append(URI_FILLER).append(id).toString();
+            stringValue = string;
+        }
+        return string;
     }
 
     /**
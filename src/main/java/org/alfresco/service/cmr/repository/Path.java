@@ -30,9 +30,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 
 import org.alfresco.api.AlfrescoPublicApi;
-import org.alfresco.model.ContentModel;
 import org.alfresco.repo.tenant.TenantService;
-import org.alfresco.service.cmr.security.AccessStatus;
 import org.alfresco.service.cmr.security.PermissionService;
 import org.alfresco.service.namespace.NamespacePrefixResolver;
 import org.alfresco.service.namespace.QName;
@@ -195,50 +193,13 @@ public final class Path implements Iterable<Path.Element>, Serializable
     /**
      * Return the human readable form of the specified node Path. Slow version of the method
      * that extracts the name of each node in the Path from the supplied NodeService.
+     * Use a {@link DisplayPathResolver} to resolve many paths that share ancestors.
      * 
      * @return human readable form of the Path excluding the final element
      */
     public String toDisplayPath(NodeService nodeService, PermissionService permissionService)
     {
-        StringBuilder buf = new StringBuilder(64);
-        
-        for (int i=0; i<elements.size()-1; i++)
-        {
-            String elementString = null;
-            Element element = elements.get(i);
-            if (element instanceof ChildAssocElement)
-            {
-                ChildAssociationRef elementRef = ((ChildAssocElement)element).getRef();
-                if (elementRef.getParentRef() != null)
-                {
-                    Serializable nameProp = null;
-                    if (permissionService.hasPermission(
-                            elementRef.getChildRef(), PermissionService.READ) == AccessStatus.ALLOWED)
-                    {
-                        nameProp = nodeService.getProperty(elementRef.getChildRef(), ContentModel.PROP_NAME);
-                        // use the name property if we are allowed access to it
-                        elementString = nameProp.toString();
-                    }
-                    else
-                    {
-                        // revert to using QName if not
-                        elementString = elementRef.getQName().getLocalName();
-                    }
-                }
-            }
-            else
-            {
-                elementString = element.getElementString();
-            }
-            
-            if (elementString != null)
-            {
-                buf.append("/");
-                buf.append(elementString);
-            }
-        }
-        
-        return buf.toString();
+        return new DisplayPathResolver(nodeService, permissionService).toDisplayPath(this);
     }
     
     /**
@@ -425,7 +386,14 @@ public final class Path implements Iterable<Path.Element>, Serializable
             else
             {
                 // a parent is present
-                sb.append(resolver == null ? ISO9075.getXPathName(ref.getQName()) : ISO9075.getXPathName(ref.getQName(), resolver));
+                if (resolver == null)
+                {
+                    ISO9075.getXPathName(ref.getQName(), sb);
+                }
+                else
+                {
+                    ISO9075.getXPathName(ref.getQName(), resolver, sb);
+                }
             }
             if (ref.getNthSibling() > -1)
             {
@@ -502,7 +470,15 @@ public final class Path implements Iterable<Path.Element>, Serializable
         private String createElementString(NamespacePrefixResolver resolver)
         {
             StringBuilder sb = new StringBuilder(32);
-            sb.append("@").append(resolver == null ? ISO9075.getXPathName(attribute) : ISO9075.getXPathName(attribute, resolver));
+            sb.append("@");
+            if (resolver == null)
+            {
+                ISO9075.getXPathName(attribute, sb);
+            }
+            else
+            {
+                ISO9075.getXPathName(attribute, resolver, sb);
+            }
             
             if (position > -1)
             {
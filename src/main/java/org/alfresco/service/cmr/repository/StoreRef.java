@@ -26,6 +26,7 @@
 package org.alfresco.service.cmr.repository;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 import org.alfresco.api.AlfrescoPublicApi;
 import org.alfresco.error.AlfrescoRuntimeException;
@@ -46,13 +47,20 @@ public final class StoreRef implements EntityRef, Serializable
     public static final String PROTOCOL_TEST = "test";
     public static final String PROTOCOL_DELETED = "deleted";
     
-    public static final StoreRef STORE_REF_WORKSPACE_SPACESSTORE = new StoreRef(PROTOCOL_WORKSPACE, "SpacesStore");
-    public static final StoreRef STORE_REF_ARCHIVE_SPACESSTORE = new StoreRef(PROTOCOL_ARCHIVE, "SpacesStore");
-    
     public static final String URI_FILLER = "://";
 
+    /** The most canonical store references kept; there are normally only a handful of stores per protocol */
+    private static final int MAX_CANONICAL_STORE_REFS = 64;
+    /** Canonical store references, copied on write and searched without allocating */
+    private static volatile StoreRef[] canonicalStoreRefs = new StoreRef[0];
+    
+    public static final StoreRef STORE_REF_WORKSPACE_SPACESSTORE = canonical(new StoreRef(PROTOCOL_WORKSPACE, "SpacesStore"));
+    public static final StoreRef STORE_REF_ARCHIVE_SPACESSTORE = canonical(new StoreRef(PROTOCOL_ARCHIVE, "SpacesStore"));
+
     private final String protocol;
     private final String identifier;
+    /** The string form, built on first use */
+    private transient String stringValue;
 
     /**
      * @param protocol
@@ -85,11 +93,118 @@ public final class StoreRef implements EntityRef, Serializable
         }
         this.protocol = string.substring(0, dividerPatternPosition);
         this.identifier = string.substring(dividerPatternPosition+3);
+        this.stringValue = string;
+    }
+
+    /**
+     * Get the canonical instance of a store reference, so that references to the same store can share it
+     * 
+     * @param protocol      the store protocol
+     * @param identifier    the store identifier
+     * @return              the canonical store reference
+     */
+    public static StoreRef valueOf(String protocol, String identifier)
+    {
+        for (StoreRef storeRef : canonicalStoreRefs)
+        {
+            if (storeRef.protocol.equals(protocol) && storeRef.identifier.equals(identifier))
+            {
+                return storeRef;
+            }
+        }
+        return canonical(new StoreRef(protocol, identifier));
+    }
+
+    /**
+     * Parse the string form of a store reference, returning the canonical instance
+     * 
+     * @param string        the string form e.g. <b>workspace://SpacesStore</b>
+     * @return              the canonical store reference
+     */
+    public static StoreRef valueOf(String string)
+    {
+        return valueOf(string, 0, string.length());
+    }
+
+    /**
+     * Parse the string form of a store reference held in part of a string, e.g. a node reference, returning the
+     * canonical instance.  Nothing is allocated when the store is already known.
+     * 
+     * @param string        the string containing the store reference
+     * @param start         the start of the store reference (inclusive)
+     * @param end           the end of the store reference (exclusive)
+     * @return              the canonical store reference
+     */
+    static StoreRef valueOf(String string, int start, int end)
+    {
+        int length = end - start;
+        for (StoreRef storeRef : canonicalStoreRefs)
+        {
+            String storeString = storeRef.toString();
+            if (storeString.length() == length && string.regionMatches(start, storeString, 0, length))
+            {
+                return storeRef;
+            }
+        }
+        return canonical(new StoreRef(start == 0 && end == string.length() ? string : string.substring(start, end)));
+    }
+
+    /**
+     * Add a store reference to the canonical instances, unless there is already an equal one or there are too many.
+     * Only stores of the workspace and archive protocols are kept, so other stores never fill the table.
+     */
+    private static StoreRef canonical(StoreRef storeRef)
+    {
+        if (canonicalStoreRefs.length >= MAX_CANONICAL_STORE_REFS ||
+                !(PROTOCOL_WORKSPACE.equals(storeRef.protocol) || PROTOCOL_ARCHIVE.equals(storeRef.protocol)))
+        {
+            return storeRef;
+        }
+        synchronized (StoreRef.class)
+        {
+            StoreRef[] storeRefs = canonicalStoreRefs;
+            for (StoreRef existing : storeRefs)
+            {
+                if (existing.equals(storeRef))
+                {
+                    return existing;
+                }
+            }
+            if (storeRefs.length < MAX_CANONICAL_STORE_REFS)
+            {
+                storeRef.toString();
+                StoreRef[] newStoreRefs = Arrays.copyOf(storeRefs, storeRefs.length + 1);
+                newStoreRefs[storeRefs.length] = storeRef;
+                canonicalStoreRefs = newStoreRefs;
+            }
+        }
+        return storeRef;
+    }
+
+    /**
+     * Use the canonical instance of deserialized store references where there is one
+     */
+    private Object readResolve()
+    {
+        for (StoreRef storeRef : canonicalStoreRefs)
+        {
+            if (storeRef.equals(this))
+            {
+                return storeRef;
+            }
+        }
+        return this;
     }
 
     public String toString()
     {
-        return protocol + URI_FILLER + identifier;
+        String string = stringValue;
+        if (string == null)
+        {
+            string = protocol + URI_FILLER + identifier;
+            stringValue = string;
+        }
+        return string;
     }
 
     public boolean equals(Object obj)
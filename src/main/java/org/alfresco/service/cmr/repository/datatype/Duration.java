@@ -33,8 +33,13 @@ import java.math.BigDecimal;
 import java.text.DateFormat;
 import java.text.NumberFormat;
 import java.text.ParsePosition;
+import java.time.Instant;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.alfresco.api.AlfrescoPublicApi;
 import org.alfresco.util.CachingDateFormat;
@@ -64,6 +69,10 @@ import org.alfresco.util.CachingDateFormat;
  * 
  * There are two forms of duration common on database types.
  * The code contains warnings wheer these are relevant.
+ * 
+ * Date arithmetic is done on epoch milliseconds with <tt>java.time</tt>; the date part is
+ * available as a {@link Period} and the time part as a {@link java.time.Duration}.
+ * Parsed values are cached, see {@link #valueOf(String)}.
  *
  * @author andyh
  */
@@ -81,6 +90,12 @@ public class Duration implements Comparable, Serializable
    public static final String XML_SIX_MONTHS = "P6M";
    public static final String XML_YEAR = "P1Y";
 
+   /** The maximum number of parsed durations to cache */
+   private static final int MAX_PARSED_CACHE_SIZE = 256;
+
+   /** Parsed durations - declared before the constants below, which are cached on construction */
+   private static final ConcurrentHashMap<String, Duration> s_parsed = new ConcurrentHashMap<String, Duration>(32);
+
    public static final Duration DAY = new Duration(XML_DAY);
    public static final Duration WEEK = new Duration(XML_WEEK);
    public static final Duration TWO_WEEKS = new Duration(XML_TWO_WEEKS);
@@ -100,6 +115,9 @@ public class Duration implements Comparable, Serializable
    private int m_seconds = 0;
    private int m_nanos = 0;
 
+   private transient Period m_period;
+   private transient java.time.Duration m_timeDuration;
+
    // Date duration arithmetic
    
    /**
@@ -111,16 +129,7 @@ public class Duration implements Comparable, Serializable
     */
    public static Date add(Date date, Duration duration)
    {
-      Calendar c = Calendar.getInstance();
-      c.setTime(date);
-      c.add(Calendar.YEAR, (duration.m_positive ? 1 : -1) * duration.m_years);
-      c.add(Calendar.MONTH, (duration.m_positive ? 1 : -1) * duration.m_months);
-      c.add(Calendar.DATE, (duration.m_positive ? 1 : -1) * duration.m_days);
-      c.add(Calendar.HOUR_OF_DAY, (duration.m_positive ? 1 : -1) * duration.m_hours);
-      c.add(Calendar.MINUTE, (duration.m_positive ? 1 : -1) * duration.m_mins);
-      c.add(Calendar.SECOND, (duration.m_positive ? 1 : -1) * duration.m_seconds);
-      c.add(Calendar.MILLISECOND, (duration.m_positive ? 1 : -1) * duration.m_nanos / 1000000);
-      return c.getTime();
+      return new Date(duration.addTo(date.getTime(), duration.m_positive ? 1 : -1));
    }
 
    /**
@@ -133,7 +142,79 @@ public class Duration implements Comparable, Serializable
    
    public static Date subtract(Date date, Duration duration)
    {
-      return add(date, duration.unaryMinus());
+      return new Date(duration.addTo(date.getTime(), duration.m_positive ? -1 : 1));
+   }
+
+   /**
+    * Add a duration to a time in milliseconds since the epoch, as {@link #add(Date, Duration)}
+    * 
+    * @param epochMillis - the initial time
+    * @param duration - the duration to add on to the time (the duration may be negative)
+    * @return the adjusted time in milliseconds since the epoch
+    */
+   public static long add(long epochMillis, Duration duration)
+   {
+      return duration.addTo(epochMillis, duration.m_positive ? 1 : -1);
+   }
+
+   /**
+    * Subtract a duration from a time in milliseconds since the epoch, as {@link #subtract(Date, Duration)}
+    * 
+    * @param epochMillis - the initial time
+    * @param duration - the duration to subtract
+    * @return the adjusted time in milliseconds since the epoch
+    */
+   public static long subtract(long epochMillis, Duration duration)
+   {
+      return duration.addTo(epochMillis, duration.m_positive ? -1 : 1);
+   }
+
+   /**
+    * Add a duration to an instant, as {@link #add(Date, Duration)}
+    */
+   public static Instant add(Instant instant, Duration duration)
+   {
+      return Instant.ofEpochMilli(duration.addTo(instant.toEpochMilli(), duration.m_positive ? 1 : -1));
+   }
+
+   /**
+    * Subtract a duration from an instant, as {@link #subtract(Date, Duration)}
+    */
+   public static Instant subtract(Instant instant, Duration duration)
+   {
+      return Instant.ofEpochMilli(duration.addTo(instant.toEpochMilli(), duration.m_positive ? -1 : 1));
+   }
+
+   /**
+    * Years, months and days are added to the local date in the default time zone, in that order,
+    * as the calendar fields always were.  The time part is a fixed number of milliseconds.
+    */
+   private long addTo(long epochMillis, int sign)
+   {
+      if ((m_years != 0) || (m_months != 0) || (m_days != 0))
+      {
+         ZonedDateTime dateTime = Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault());
+         dateTime = dateTime.plusYears(sign * m_years).plusMonths(sign * m_months).plusDays(sign * m_days);
+         epochMillis = dateTime.toInstant().toEpochMilli();
+      }
+      return epochMillis + sign * (m_hours * 3600000L + m_mins * 60000L + m_seconds * 1000L + m_nanos / 1000000);
+   }
+
+   /**
+    * Get a duration for the XMLSchema definition.  Parsed durations are immutable
+    * and cached, so this is the cheapest way to get common values such as <tt>P1D</tt>.
+    * 
+    * @param duration the XMLSchema duration
+    * @return the duration
+    */
+   public static Duration valueOf(String duration)
+   {
+      Duration parsed = s_parsed.get(duration);
+      if (parsed == null)
+      {
+         parsed = new Duration(duration);
+      }
+      return parsed;
    }
 
    
@@ -153,7 +234,114 @@ public class Duration implements Comparable, Serializable
 
    public Duration(String duration)
    {
+      Duration parsed = s_parsed.get(duration);
+      if (parsed != null)
+      {
+         m_positive = parsed.m_positive;
+         m_years = parsed.m_years;
+         m_months = parsed.m_months;
+         m_days = parsed.m_days;
+         m_hours = parsed.m_hours;
+         m_mins = parsed.m_mins;
+         m_seconds = parsed.m_seconds;
+         m_nanos = parsed.m_nanos;
+         return;
+      }
+      if (!parseSimple(duration))
+      {
+         parse(duration);
+      }
+      if ((getClass() == Duration.class) && (duration.length() <= 32))
+      {
+         if (s_parsed.size() >= MAX_PARSED_CACHE_SIZE)
+         {
+            s_parsed.clear();
+         }
+         s_parsed.put(duration, this);
+      }
+   }
 
+   /**
+    * Parse the common forms, with whole numbers and every designator in order,
+    * without tokenizing e.g. <tt>P1D</tt>, <tt>-P2Y6M</tt> or <tt>PT1H30M</tt>
+    * 
+    * @return <tt>true</tt> if the duration was parsed or <tt>false</tt> if the full parse is required
+    */
+   private boolean parseSimple(String duration)
+   {
+      int length = duration.length();
+      int i = 0;
+      boolean positive = true;
+      if ((i < length) && (duration.charAt(i) == '-'))
+      {
+         positive = false;
+         i++;
+      }
+      if ((i >= length) || (duration.charAt(i) != 'P'))
+      {
+         return false;
+      }
+      i++;
+      // the designators in the order they may appear
+      int[] values = new int[6];
+      String designators = "YMDHMS";
+      int next = 0;
+      boolean timeMode = false;
+      boolean any = false;
+      while (i < length)
+      {
+         char c = duration.charAt(i);
+         if (c == 'T')
+         {
+            if (timeMode || (i + 1 >= length))
+            {
+               return false;
+            }
+            timeMode = true;
+            next = Math.max(next, 3);
+            i++;
+            continue;
+         }
+         int start = i;
+         int value = 0;
+         while ((i < length) && (i - start < 9) && (c = duration.charAt(i)) >= '0' && (c <= '9'))
+         {
+            value = value * 10 + (c - '0');
+            i++;
+         }
+         if ((i == start) || (i >= length))
+         {
+            return false;
+         }
+         char designator = duration.charAt(i++);
+         int index = designators.indexOf(designator, timeMode ? 3 : 0);
+         if ((index < next) || (!timeMode && (index > 2)))
+         {
+            return false;
+         }
+         values[index] = value;
+         next = index + 1;
+         any = true;
+      }
+      if (!any)
+      {
+         return false;
+      }
+      m_positive = positive;
+      m_years = values[0];
+      m_months = values[1];
+      m_days = values[2];
+      m_hours = values[3];
+      m_mins = values[4];
+      m_seconds = values[5];
+      return true;
+   }
+
+   /**
+    * The full XMLSchema duration parse
+    */
+   private void parse(String duration)
+   {
       if (duration.equals("P"))
       {
          throw new RuntimeException("Invalid period: P");
@@ -639,6 +827,42 @@ public class Duration implements Comparable, Serializable
       return m_nanos;
    }
 
+   /**
+    * Get the year, month and day part of the duration, with the sign of the duration
+    * 
+    * @return the date based part of the duration
+    */
+
+   public Period getPeriod()
+   {
+      Period period = m_period;
+      if (period == null)
+      {
+         int sign = m_positive ? 1 : -1;
+         period = Period.of(sign * m_years, sign * m_months, sign * m_days);
+         m_period = period;
+      }
+      return period;
+   }
+
+   /**
+    * Get the hour, minute and second part of the duration, with the sign of the duration
+    * 
+    * @return the time based part of the duration
+    */
+
+   public java.time.Duration getTimeDuration()
+   {
+      java.time.Duration timeDuration = m_timeDuration;
+      if (timeDuration == null)
+      {
+         int sign = m_positive ? 1 : -1;
+         timeDuration = java.time.Duration.ofSeconds(sign * (m_hours * 3600L + m_mins * 60L + m_seconds), sign * m_nanos);
+         m_timeDuration = timeDuration;
+      }
+      return timeDuration;
+   }
+
    /**
     * Check if is year-month
     */
@@ -703,22 +927,16 @@ public class Duration implements Comparable, Serializable
          return (m_positive ? 1 : -1);
       }
 
-      if (this.getTotalMonths() != d.getTotalMonths())
+      int compare = Long.compare(this.getTotalMonths(), d.getTotalMonths());
+      if (compare == 0)
       {
-         return (m_positive ? 1 : -1) * ((int) (this.getTotalMonths() - d.getTotalMonths()));
-      }
-      else if (this.getTotalSeconds() != d.getTotalSeconds())
-      {
-         return (m_positive ? 1 : -1) * ((int) (this.getTotalSeconds() - d.getTotalSeconds()));
-      }
-      else if (this.getTotalNanos() != d.getTotalNanos())
-      {
-         return (m_positive ? 1 : -1) * ((int) (this.getTotalNanos() - d.getTotalNanos()));
-      }
-      else
-      {
-         return 0;
+         compare = Long.compare(this.getTotalSeconds(), d.getTotalSeconds());
+         if (compare == 0)
+         {
+            compare = Long.compare(this.getTotalNanos(), d.getTotalNanos());
+         }
       }
+      return m_positive ? compare : -compare;
    }
 
    /**
@@ -25,6 +25,8 @@
  */
 package org.alfresco.service.namespace;
 
+import java.util.regex.Pattern;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -36,6 +38,11 @@ import org.alfresco.api.AlfrescoPublicApi;
  * <p>
  * A simple {@link #MATCH_ALL convenience} pattern matcher is also provided that
  * will match any qname.
+ * <p>
+ * The patterns are compiled once, on construction.  Literal patterns, prefix patterns
+ * such as <tt>foo.*</tt> and the match-all pattern <tt>.*</tt> are matched without
+ * using regular expressions at all.  Use {@link #getPattern(String, String)} to get
+ * the cheapest pattern for a given pair of expressions.
  * 
  * @see java.lang.String#matches(java.lang.String)
  * 
@@ -46,6 +53,8 @@ public class RegexQNamePattern implements QNamePattern
 {
     private static final Log logger = LogFactory.getLog(RegexQNamePattern.class);
     
+    private static final String MATCH_ALL_REGEX = ".*";
+    
     /** A helper pattern matcher that will match <i>all</i> qnames */
     public static final QNamePattern MATCH_ALL = new QNamePattern()
         {
@@ -78,6 +87,44 @@ public class RegexQNamePattern implements QNamePattern
     private String localNamePattern;
     private String combinedPattern;
     
+    private final StringMatcher namespaceUriMatcher;
+    private final StringMatcher localNameMatcher;
+    private final StringMatcher combinedMatcher;
+    
+    /**
+     * Get the cheapest pattern that matches qnames against the given regular expressions.
+     * 
+     * @param namespaceUriPattern a regex pattern that will be applied to the namespace URI
+     * @param localNamePattern a regex pattern that will be applied to the local name
+     * @return Returns {@link #MATCH_ALL} if both expressions are <tt>.*</tt>, otherwise a
+     *      compiled regex pattern
+     */
+    public static QNamePattern getPattern(String namespaceUriPattern, String localNamePattern)
+    {
+        if (MATCH_ALL_REGEX.equals(namespaceUriPattern) && MATCH_ALL_REGEX.equals(localNamePattern))
+        {
+            return MATCH_ALL;
+        }
+        return new RegexQNamePattern(namespaceUriPattern, localNamePattern);
+    }
+    
+    /**
+     * Get the cheapest pattern that matches qnames against the given regular expression.
+     * 
+     * @param combinedPattern a regex pattern that will be applied to the full qname
+     *      string representation
+     * @return Returns {@link #MATCH_ALL} if the expression is <tt>.*</tt>, otherwise a
+     *      compiled regex pattern
+     */
+    public static QNamePattern getPattern(String combinedPattern)
+    {
+        if (MATCH_ALL_REGEX.equals(combinedPattern))
+        {
+            return MATCH_ALL;
+        }
+        return new RegexQNamePattern(combinedPattern);
+    }
+    
     /**
      * @param namespaceUriPattern a regex pattern that will be applied to the namespace URI
      * @param localNamePattern a regex pattern that will be applied to the local name
@@ -87,6 +134,9 @@ public class RegexQNamePattern implements QNamePattern
         this.namespaceUriPattern = namespaceUriPattern;
         this.localNamePattern = localNamePattern;
         this.combinedPattern = null;
+        this.namespaceUriMatcher = compile(namespaceUriPattern);
+        this.localNameMatcher = compile(localNamePattern);
+        this.combinedMatcher = null;
     }
     
     /**
@@ -100,6 +150,9 @@ public class RegexQNamePattern implements QNamePattern
         this.combinedPattern = combinedPattern;
         this.namespaceUriPattern = null;
         this.localNamePattern = null;
+        this.namespaceUriMatcher = null;
+        this.localNameMatcher = null;
+        this.combinedMatcher = compile(combinedPattern);
     }
     
     public String toString()
@@ -126,15 +179,14 @@ public class RegexQNamePattern implements QNamePattern
     public boolean isMatch(QName qname)
     {
         boolean match = false;
-        if (combinedPattern != null)
+        if (combinedMatcher != null)
         {
-            String qnameStr = qname.toString();
-            match = qnameStr.matches(combinedPattern);
+            match = combinedMatcher.matches(new QNameChars(qname));
         }
         else
         {
-            match = (qname.getNamespaceURI().matches(namespaceUriPattern) &&
-                     qname.getLocalName().matches(localNamePattern));
+            match = (namespaceUriMatcher.matches(qname.getNamespaceURI()) &&
+                     localNameMatcher.matches(qname.getLocalName()));
         }
         // done
         if (logger.isDebugEnabled())
@@ -146,4 +198,207 @@ public class RegexQNamePattern implements QNamePattern
         }
         return match;
     }
+    
+    /**
+     * Choose the cheapest matcher for a regular expression
+     */
+    static StringMatcher compile(String regex)
+    {
+        String literal = toLiteral(regex, 0, regex.length());
+        if (literal != null)
+        {
+            return new LiteralMatcher(literal);
+        }
+        if (regex.endsWith(MATCH_ALL_REGEX))
+        {
+            String prefix = toLiteral(regex, 0, regex.length() - MATCH_ALL_REGEX.length());
+            if (prefix != null)
+            {
+                return new PrefixMatcher(prefix);
+            }
+        }
+        return new RegexMatcher(Pattern.compile(regex));
+    }
+    
+    /**
+     * Convert the regular expression to the literal string it matches
+     * 
+     * @return Returns the literal or <tt>null</tt> if the expression contains anything but
+     *      plain and escaped punctuation characters
+     */
+    private static String toLiteral(String regex, int start, int end)
+    {
+        StringBuilder sb = null;
+        for (int i = start; i < end; i++)
+        {
+            char c = regex.charAt(i);
+            if (c == '\\')
+            {
+                // only escaped punctuation is a literal e.g. \. but not \d or \Q
+                if (i + 1 >= end || Character.isLetterOrDigit(regex.charAt(i + 1)))
+                {
+                    return null;
+                }
+                if (sb == null)
+                {
+                    sb = new StringBuilder(end - start).append(regex, start, i);
+                }
+                sb.append(regex.charAt(++i));
+            }
+            else if (".*+?^$|()[]{}".indexOf(c) >= 0)
+            {
+                return null;
+            }
+            else if (sb != null)
+            {
+                sb.append(c);
+            }
+        }
+        return sb == null ? regex.substring(start, end) : sb.toString();
+    }
+    
+    /**
+     * Regex <tt>.</tt> does not match line terminators
+     */
+    private static boolean hasLineTerminator(CharSequence value, int start)
+    {
+        for (int i = start, length = value.length(); i < length; i++)
+        {
+            char c = value.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029')
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean startsWith(CharSequence value, String prefix)
+    {
+        int length = prefix.length();
+        if (value.length() < length)
+        {
+            return false;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            if (value.charAt(i) != prefix.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Matches a whole string against a compiled expression
+     */
+    static abstract class StringMatcher
+    {
+        abstract boolean matches(CharSequence value);
+    }
+    
+    static final class LiteralMatcher extends StringMatcher
+    {
+        private final String literal;
+        
+        private LiteralMatcher(String literal)
+        {
+            this.literal = literal;
+        }
+        
+        @Override
+        boolean matches(CharSequence value)
+        {
+            return value.length() == literal.length() && startsWith(value, literal);
+        }
+    }
+    
+    static final class PrefixMatcher extends StringMatcher
+    {
+        private final String prefix;
+        
+        private PrefixMatcher(String prefix)
+        {
+            this.prefix = prefix;
+        }
+        
+        @Override
+        boolean matches(CharSequence value)
+        {
+            return startsWith(value, prefix) && !hasLineTerminator(value, prefix.length());
+        }
+    }
+    
+    static final class RegexMatcher extends StringMatcher
+    {
+        private final Pattern pattern;
+        
+        private RegexMatcher(Pattern pattern)
+        {
+            this.pattern = pattern;
+        }
+        
+        @Override
+        boolean matches(CharSequence value)
+        {
+            return pattern.matcher(value).matches();
+        }
+    }
+    
+    /**
+     * The characters of {@link QName#toString()} without building the string
+     */
+    private static final class QNameChars implements CharSequence
+    {
+        private final String namespaceURI;
+        private final String localName;
+        private final int localNameStart;
+        
+        private QNameChars(QName qname)
+        {
+            this.namespaceURI = qname.getNamespaceURI();
+            this.localName = qname.getLocalName();
+            this.localNameStart = namespaceURI.length() + 2;
+        }
+        
+        public int length()
+        {
+            return localNameStart + localName.length();
+        }
+        
+        public char charAt(int index)
+        {
+            if (index >= localNameStart)
+            {
+                return localName.charAt(index - localNameStart);
+            }
+            else if (index == 0)
+            {
+                return QName.NAMESPACE_BEGIN;
+            }
+            else if (index == localNameStart - 1)
+            {
+                return QName.NAMESPACE_END;
+            }
+            else
+            {
+                return namespaceURI.charAt(index - 1);
+            }
+        }
+        
+        public CharSequence subSequence(int start, int end)
+        {
+            return toString().subSequence(start, end);
+        }
+        
+        @Override
+        public String toString()
+        {
+            return new StringBuilder(length()).append(QName.NAMESPACE_BEGIN)
+                                              .append(namespaceURI)
+                                              .append(QName.NAMESPACE_END)
+                                              .append(localName).toString();
+        }
+    }
 }
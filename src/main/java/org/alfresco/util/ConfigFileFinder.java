@@ -29,9 +29,9 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.logging.Log;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -39,26 +39,133 @@ import java.io.Reader;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.zip.CRC32;
 
 /**
  * Used to find configuration files as resources from the jar file or from some external location. The path supplied
- * to {@link #readFiles(String, Log)} may be a directory name. Normally used by ConfigScheduler.
+ * to {@link #readFiles(String, Log)} may be a directory name. Normally used by ConfigScheduler.<p>
+ *
+ * The size, modification time and checksum of each file read is recorded, so that {@link #hasChanged(String, Log)}
+ * can tell if there is any point reading the files again. If {@link #setWatchDirectories(boolean)} is set, directories
+ * on disk are also monitored with a {@link WatchService}, so that they are only examined after a change is reported.
  *
  * @author adavis
  */
 public abstract class ConfigFileFinder
 {
+    private static final String RESOURCE = "resource";
+    private static final String FILE = "file";
+
+    /**
+     * The size, modification time and checksum of a config file (or jar entry) when it was read.
+     */
+    private static class FileState
+    {
+        private final long size;
+        private final long lastModified;
+        private final long checksum;
+
+        private FileState(long size, long lastModified, long checksum)
+        {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * A config file found in the jar or on disk, but not yet read.
+     */
+    private static class ConfigSource
+    {
+        private final String name;
+        private final String readFrom;
+        private final File file;
+        private final FileState state;
+
+        private ConfigSource(String name, FileState state)
+        {
+            this.name = name;
+            this.readFrom = RESOURCE;
+            this.file = null;
+            this.state = state;
+        }
+
+        private ConfigSource(File file)
+        {
+            this.name = file.getPath();
+            this.readFrom = FILE;
+            this.file = file;
+            // The checksum is only worked out when the file is read, or if the modification time changes.
+            this.state = new FileState(file.length(), file.lastModified(), -1);
+        }
+
+        private boolean isUnchanged(FileState previous) throws IOException
+        {
+            if (state.size != previous.size)
+            {
+                return false;
+            }
+            if (file == null)
+            {
+                return state.checksum == previous.checksum;
+            }
+            // A file that has just been touched does not need to be read again.
+            return state.lastModified == previous.lastModified || checksum(Files.readAllBytes(file.toPath())) == previous.checksum;
+        }
+    }
+
+    /**
+     * The config files found for a path.
+     */
+    private static class Sources
+    {
+        private final List<ConfigSource> sources = new ArrayList<>();
+        private final List<File> directories = new ArrayList<>();
+        private boolean onlyDirectories = true;
+    }
+
+    /**
+     * The config entries for a path in the enclosing jar, which only need to be found again if the jar changes.
+     */
+    private static class JarSources
+    {
+        private final long jarSize;
+        private final long jarLastModified;
+        private final List<ConfigSource> sources;
+
+        private JarSources(long jarSize, long jarLastModified, List<ConfigSource> sources)
+        {
+            this.jarSize = jarSize;
+            this.jarLastModified = jarLastModified;
+            this.sources = sources;
+        }
+    }
+
     private final ObjectMapper jsonObjectMapper;
     private int fileCount;
+    private boolean watchDirectories;
+
+    private final Map<String, Map<String, FileState>> fileStatesByPath = new ConcurrentHashMap<>();
+    private final Map<String, JarSources> jarSourcesByPath = new ConcurrentHashMap<>();
+    private final Map<String, WatchService> watchServicesByPath = new ConcurrentHashMap<>();
 
     public ConfigFileFinder(ObjectMapper jsonObjectMapper)
     {
@@ -75,6 +182,24 @@ public abstract class ConfigFileFinder
         this.fileCount = fileCount;
     }
 
+    public boolean isWatchDirectories()
+    {
+        return watchDirectories;
+    }
+
+    /**
+     * When set, paths that are only made up of directories on disk are monitored with a {@link WatchService}, so
+     * {@link #hasChanged(String, Log)} does not need to look at the files at all unless something has happened.
+     */
+    public void setWatchDirectories(boolean watchDirectories)
+    {
+        this.watchDirectories = watchDirectories;
+        if (!watchDirectories)
+        {
+            stopWatching();
+        }
+    }
+
     public boolean readFiles(String path, Log log)
     {
         AtomicBoolean successReadingConfig = new AtomicBoolean(true);
@@ -82,32 +207,19 @@ public abstract class ConfigFileFinder
         {
             AtomicBoolean somethingRead = new AtomicBoolean(false);
 
-            // Try reading resources in a jar
-            final File jarFile = new File(getClass().getProtectionDomain().getCodeSource().getLocation().toURI());
-            if (jarFile.isFile())
+            // Watch before reading, so that changes made while the files are being read are reported
+            Sources sources = findSources(path, log);
+            if (watch(path, sources, log))
             {
-                readFromJar(jarFile, path, log, successReadingConfig, somethingRead);
+                // Pick up any files added or removed before the directories were being watched
+                sources = findSources(path, log);
             }
-            else
+            Map<String, FileState> fileStates = new HashMap<>();
+            for (ConfigSource source : sources.sources)
             {
-                // Try reading resources from disk
-                Iterator<URL> pathUrls = getClass().getClassLoader().getResources(path).asIterator();
-                while(pathUrls.hasNext())
-                {
-                    URL url = pathUrls.next();
-                    if (url != null)
-                    {
-                        String urlPath = URLDecoder.decode(url.getPath(), "UTF-8");
-                        readFromDisk(urlPath, log, successReadingConfig, somethingRead);
-                    }
-                }
-            }
-
-            if (!somethingRead.get() && new File(path).exists())
-            {
-                // Try reading files from disk
-                readFromDisk(path, log, successReadingConfig, somethingRead);
+                readSource(source, fileStates, log, successReadingConfig, somethingRead);
             }
+            fileStatesByPath.put(path, fileStates);
 
             if (!somethingRead.get())
             {
@@ -118,45 +230,165 @@ public abstract class ConfigFileFinder
         {
             log.error("Error reading from "+path, e);
             successReadingConfig.set(false);
+            fileStatesByPath.remove(path);
         }
         return successReadingConfig.get();
     }
 
-    private void readFromJar(File jarFile, String path, Log log, AtomicBoolean successReadingConfig, AtomicBoolean somethingRead) throws IOException
+    /**
+     * Indicates if any of the files found for the supplied path have been added, removed or modified since the last
+     * call to {@link #readFiles(String, Log)} for the same path.
+     *
+     * @return {@code true} if the files have changed or have not been read before.
+     */
+    public boolean hasChanged(String path, Log log)
     {
-        JarFile jar = new JarFile(jarFile);
+        Map<String, FileState> previousStates = fileStatesByPath.get(path);
+        if (previousStates == null)
+        {
+            return true;
+        }
+
+        WatchService watchService = watchServicesByPath.get(path);
+        if (watchService != null && !hasWatchEvents(watchService))
+        {
+            return false;
+        }
+
         try
         {
-            Enumeration<JarEntry> entries = jar.entries(); // gives ALL entries in jar
-            String prefix = path + "/";
-            List<String> names = new ArrayList<>();
-            while (entries.hasMoreElements())
+            Sources sources = findSources(path, log);
+            if (sources.sources.size() != previousStates.size())
             {
-                final String name = entries.nextElement().getName();
-                if ((name.startsWith(prefix) && name.length() > prefix.length()) ||
-                    (name.equals(path)))
+                log.debug("Number of config files changed in "+path);
+                return true;
+            }
+            Map<String, FileState> touchedStates = null;
+            for (ConfigSource source : sources.sources)
+            {
+                FileState previousState = previousStates.get(source.name);
+                if (previousState == null || !source.isUnchanged(previousState))
                 {
-                    names.add(name);
+                    log.debug("Config changed in "+source.name);
+                    return true;
+                }
+                if (source.state.lastModified != previousState.lastModified)
+                {
+                    // Touched but not modified - remember the new time, so the file is not read on every check
+                    if (touchedStates == null)
+                    {
+                        touchedStates = new HashMap<>(previousStates);
+                    }
+                    touchedStates.put(source.name, new FileState(previousState.size, source.state.lastModified, previousState.checksum));
                 }
             }
-            Collections.sort(names);
-            for (String name : names)
+            if (touchedStates != null)
             {
-                InputStreamReader reader = new InputStreamReader(getResourceAsStream(name));
-                readFromReader(successReadingConfig, somethingRead, reader, "resource", name, null, log);
+                fileStatesByPath.replace(path, previousStates, touchedStates);
             }
+            return false;
+        }
+        catch (IOException | URISyntaxException e)
+        {
+            log.debug("Unable to check for config changes in "+path+" "+e.getMessage());
+            return true;
         }
-        finally
+    }
+
+    /**
+     * Closes any {@link WatchService}s created by this finder.
+     */
+    public void stopWatching()
+    {
+        for (String path : new ArrayList<>(watchServicesByPath.keySet()))
         {
-            jar.close();
+            close(watchServicesByPath.remove(path));
         }
     }
 
-    private void readFromDisk(String path, Log log, AtomicBoolean successReadingConfig, AtomicBoolean somethingRead) throws FileNotFoundException
+    private Sources findSources(String path, Log log) throws IOException, URISyntaxException
+    {
+        Sources sources = new Sources();
+
+        // Try reading resources in a jar
+        final File jarFile = new File(getClass().getProtectionDomain().getCodeSource().getLocation().toURI());
+        if (jarFile.isFile())
+        {
+            findInJar(jarFile, path, sources);
+        }
+        else
+        {
+            // Try reading resources from disk
+            Iterator<URL> pathUrls = getClass().getClassLoader().getResources(path).asIterator();
+            while(pathUrls.hasNext())
+            {
+                URL url = pathUrls.next();
+                if (url != null)
+                {
+                    String urlPath = URLDecoder.decode(url.getPath(), "UTF-8");
+                    findOnDisk(urlPath, log, sources);
+                }
+            }
+        }
+
+        if (sources.sources.isEmpty() && new File(path).exists())
+        {
+            // Try reading files from disk
+            findOnDisk(path, log, sources);
+        }
+        return sources;
+    }
+
+    private void findInJar(File jarFile, String path, Sources sources) throws IOException
+    {
+        sources.onlyDirectories = false;
+
+        // Enumerating ALL entries in the jar is expensive, so only do it again if the jar has changed
+        long jarSize = jarFile.length();
+        long jarLastModified = jarFile.lastModified();
+        JarSources jarSources = jarSourcesByPath.get(path);
+        if (jarSources == null || jarSources.jarSize != jarSize || jarSources.jarLastModified != jarLastModified)
+        {
+            JarFile jar = new JarFile(jarFile);
+            try
+            {
+                Enumeration<JarEntry> entries = jar.entries(); // gives ALL entries in jar
+                String prefix = path + "/";
+                List<JarEntry> matches = new ArrayList<>();
+                while (entries.hasMoreElements())
+                {
+                    final JarEntry entry = entries.nextElement();
+                    final String name = entry.getName();
+                    if ((name.startsWith(prefix) && name.length() > prefix.length()) ||
+                        (name.equals(path)))
+                    {
+                        matches.add(entry);
+                    }
+                }
+                matches.sort((entry1, entry2) -> entry1.getName().compareTo(entry2.getName()));
+                List<ConfigSource> jarConfigSources = new ArrayList<>(matches.size());
+                for (JarEntry entry : matches)
+                {
+                    jarConfigSources.add(new ConfigSource(entry.getName(),
+                            new FileState(entry.getSize(), entry.getTime(), entry.getCrc())));
+                }
+                jarSources = new JarSources(jarSize, jarLastModified, Collections.unmodifiableList(jarConfigSources));
+                jarSourcesByPath.put(path, jarSources);
+            }
+            finally
+            {
+                jar.close();
+            }
+        }
+        sources.sources.addAll(jarSources.sources);
+    }
+
+    private void findOnDisk(String path, Log log, Sources sources) throws FileNotFoundException
     {
         File root = new File(path);
         if (root.isDirectory())
         {
+            sources.directories.add(root);
             File[] files = root.listFiles();
             Arrays.sort(files, (file1, file2) -> file1.getName().compareTo(file2.getName()));
             for (File file : files)
@@ -164,9 +396,7 @@ public abstract class ConfigFileFinder
                 // Only read files in the config directory
                 if (!file.isDirectory())
                 {
-                    FileReader reader = new FileReader(file);
-                    String filePath = file.getPath();
-                    readFromReader(successReadingConfig, somethingRead, reader, "file", filePath, null, log);
+                    sources.sources.add(new ConfigSource(file));
                 }
                 else
                 {
@@ -176,9 +406,111 @@ public abstract class ConfigFileFinder
         }
         else
         {
-            FileReader reader = new FileReader(root);
-            String filePath = root.getPath();
-            readFromReader(successReadingConfig, somethingRead, reader, "file", filePath, null, log);
+            if (!root.isFile())
+            {
+                throw new FileNotFoundException(path);
+            }
+            sources.onlyDirectories = false;
+            sources.sources.add(new ConfigSource(root));
+        }
+    }
+
+    private void readSource(ConfigSource source, Map<String, FileState> fileStates, Log log,
+                            AtomicBoolean successReadingConfig, AtomicBoolean somethingRead) throws IOException
+    {
+        Reader reader;
+        FileState state;
+        if (source.file == null)
+        {
+            reader = new InputStreamReader(getResourceAsStream(source.name));
+            state = source.state;
+        }
+        else
+        {
+            // Read the whole file, so its checksum can be recorded along with its size and modification time
+            byte[] content = Files.readAllBytes(source.file.toPath());
+            reader = new InputStreamReader(new ByteArrayInputStream(content));
+            state = new FileState(content.length, source.state.lastModified, checksum(content));
+        }
+        fileStates.put(source.name, state);
+        readFromReader(successReadingConfig, somethingRead, reader, source.readFrom, source.name, null, log);
+    }
+
+    private static long checksum(byte[] content)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Starts (or continues) watching the directories of a path, if configured to do so and possible.
+     *
+     * @return {@code true} if the path is being watched.
+     */
+    private boolean watch(String path, Sources sources, Log log)
+    {
+        if (!watchDirectories || !sources.onlyDirectories || sources.directories.isEmpty())
+        {
+            close(watchServicesByPath.remove(path));
+            return false;
+        }
+
+        WatchService watchService = watchServicesByPath.get(path);
+        try
+        {
+            if (watchService == null)
+            {
+                watchService = sources.directories.get(0).toPath().getFileSystem().newWatchService();
+                watchServicesByPath.put(path, watchService);
+            }
+            for (File directory : sources.directories)
+            {
+                // Registering a directory again returns the existing key
+                directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+            return true;
+        }
+        catch (IOException | UnsupportedOperationException e)
+        {
+            log.debug("Unable to watch "+path+" for config changes "+e.getMessage());
+            close(watchServicesByPath.remove(path));
+            return false;
+        }
+    }
+
+    private boolean hasWatchEvents(WatchService watchService)
+    {
+        boolean events = false;
+        try
+        {
+            WatchKey key;
+            while ((key = watchService.poll()) != null)
+            {
+                events |= !key.pollEvents().isEmpty();
+                // A key that cannot be reset means the directory has gone
+                events |= !key.reset();
+            }
+        }
+        catch (ClosedWatchServiceException e)
+        {
+            events = true;
+        }
+        return events;
+    }
+
+    private void close(WatchService watchService)
+    {
+        if (watchService != null)
+        {
+            try
+            {
+                watchService.close();
+            }
+            catch (IOException ignore)
+            {
+            }
         }
     }
 
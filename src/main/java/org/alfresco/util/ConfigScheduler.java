@@ -102,6 +102,16 @@ public abstract class ConfigScheduler<Data>
 
     public abstract boolean readConfig() throws IOException;
 
+    /**
+     * Indicates if the config may have changed since it was last read successfully. Scheduled reads on the normal
+     * schedule are skipped if it has not, leaving the current data in place. By default the config is always assumed
+     * to have changed.
+     */
+    public boolean isConfigChanged() throws IOException
+    {
+        return true;
+    }
+
     public abstract Data createData();
 
     public synchronized Data getData()
@@ -215,7 +225,12 @@ public abstract class ConfigScheduler<Data>
         // If shutting down, we return true indicating there were not problems, as that will result in the next
         // scheduled job taking place later where as false would switch to a more frequent retry sequence.
         boolean successReadingConfig = true;
-        if (!shuttingDown())
+        if (scheduledRead && normalCronSchedule && !configChanged())
+        {
+            // The last read was fine and nothing has changed since, so there is nothing to do.
+            log.debug("Scheduled config read skipped as the config is unchanged");
+        }
+        else if (!shuttingDown())
         {
             log.debug((scheduledRead ? "Scheduled" : "Unscheduled") + " config read started");
             Data data = getData();
@@ -238,6 +253,19 @@ public abstract class ConfigScheduler<Data>
         return successReadingConfig;
     }
 
+    private boolean configChanged()
+    {
+        try
+        {
+            return isConfigChanged();
+        }
+        catch (Exception e)
+        {
+            log.debug("Unable to tell if the config has changed. " + e.getMessage());
+            return true;
+        }
+    }
+
     private void changeScheduleOnStateChange(boolean successReadingConfig)
     {
         // Switch schedule sequence if we were on the normal schedule and we now have problems or if
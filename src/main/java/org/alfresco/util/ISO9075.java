@@ -126,60 +126,43 @@ public class ISO9075
         {
             return toEncode;
         }
-        else
+        int first = indexOfFirstToEncode(toEncode, true);
+        if (first < 0)
         {
-            StringBuilder builder = new StringBuilder(toEncode.length());
-            for (int i = 0; i < toEncode.length(); i++)
+            // nothing to encode
+            return toEncode;
+        }
+        StringBuilder builder = new StringBuilder(toEncode.length() + 14);
+        builder.append(toEncode, 0, first);
+        appendEncoded(toEncode, first, builder, true);
+        return builder.toString();
+    }
+    
+    /**
+     * Append the encoding of a SQL identifier, as {@link #encodeSQL(String)}
+     * 
+     * @param toEncode String (<tt>null</tt> appends nothing)
+     * @param builder the builder to append to
+     * @return the builder
+     */
+    public static StringBuilder encodeSQL(String toEncode, StringBuilder builder)
+    {
+        if (toEncode != null)
+        {
+            int first = indexOfFirstToEncode(toEncode, true);
+            if (first < 0)
             {
-                char c = toEncode.charAt(i);
-                // First requires special test
-                if (i == 0)
-                {
-                    if (isSQLNameStart(c))
-                    {
-                        // The first character may be the _ at the start of an
-                        // encoding pattern
-                        if (matchesEncodedPattern(toEncode, i))
-                        {
-                            // Encode the first _
-                            encode('_', builder);
-                        }
-                        else
-                        {
-                            // Just append
-                            builder.append(c);
-                        }
-                    }
-                    else
-                    {
-                        // Encode an invalid start character for an XML element
-                        // name.
-                        encode(c, builder);
-                    }
-                }
-                else if (!isSQLName(c))
-                {
-                    encode(c, builder);
-                }
-                else
-                {
-                    if (matchesEncodedPattern(toEncode, i))
-                    {
-                        // '_' must be encoded
-                        encode('_', builder);
-                    }
-                    else
-                    {
-                        builder.append(c);
-                    }
-                }
+                builder.append(toEncode);
+            }
+            else
+            {
+                builder.append(toEncode, 0, first);
+                appendEncoded(toEncode, first, builder, true);
             }
-            return builder.toString();
         }
-
+        return builder;
     }
     
-    
     /**
      * Encode a string according to ISO 9075
      * 
@@ -192,61 +175,120 @@ public class ISO9075
         {
             return toEncode;
         }
-        else if (XMLChar.isValidName(toEncode) && (toEncode.indexOf("_x") == -1) && (toEncode.indexOf(':') == -1))
+        int first = indexOfFirstToEncode(toEncode, false);
+        if (first < 0)
         {
+            // nothing to encode - the usual case for names
             return toEncode;
         }
-        else
+        StringBuilder builder = new StringBuilder(toEncode.length() + 14);
+        builder.append(toEncode, 0, first);
+        appendEncoded(toEncode, first, builder, false);
+        return builder.toString();
+    }
+
+    /**
+     * Append the ISO 9075 encoding of a string, as {@link #encode(String)}
+     * 
+     * @param toEncode String (<tt>null</tt> appends nothing)
+     * @param builder the builder to append to
+     * @return the builder
+     */
+    public static StringBuilder encode(String toEncode, StringBuilder builder)
+    {
+        if (toEncode != null)
+        {
+            int first = indexOfFirstToEncode(toEncode, false);
+            if (first < 0)
+            {
+                builder.append(toEncode);
+            }
+            else
+            {
+                builder.append(toEncode, 0, first);
+                appendEncoded(toEncode, first, builder, false);
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Find the first character that is not copied as is by the encoding, in a single pass.
+     * 
+     * @return the position of the first character to encode or -1 if the encoding is the string itself
+     */
+    private static int indexOfFirstToEncode(String toEncode, boolean sql)
+    {
+        for (int i = 0, l = toEncode.length(); i < l; i++)
         {
-            StringBuilder builder = new StringBuilder(toEncode.length());
-            for (int i = 0; i < toEncode.length(); i++)
+            char c = toEncode.charAt(i);
+            boolean valid;
+            if (i == 0)
             {
-                char c = toEncode.charAt(i);
-                // First requires special test
-                if (i == 0)
+                valid = sql ? isSQLNameStart(c) : XMLChar.isNCNameStart(c);
+            }
+            else
+            {
+                valid = sql ? isSQLName(c) : XMLChar.isNCName(c);
+            }
+            if (!valid || (c == '_' && matchesEncodedPattern(toEncode, i)))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Append the encoding of the string from the given position
+     */
+    private static void appendEncoded(String toEncode, int from, StringBuilder builder, boolean sql)
+    {
+        for (int i = from; i < toEncode.length(); i++)
+        {
+            char c = toEncode.charAt(i);
+            // First requires special test
+            if (i == 0)
+            {
+                if (sql ? isSQLNameStart(c) : XMLChar.isNCNameStart(c))
                 {
-                    if (XMLChar.isNCNameStart(c))
+                    // The first character may be the _ at the start of an
+                    // encoding pattern
+                    if (matchesEncodedPattern(toEncode, i))
                     {
-                        // The first character may be the _ at the start of an
-                        // encoding pattern
-                        if (matchesEncodedPattern(toEncode, i))
-                        {
-                            // Encode the first _
-                            encode('_', builder);
-                        }
-                        else
-                        {
-                            // Just append
-                            builder.append(c);
-                        }
+                        // Encode the first _
+                        encode('_', builder);
                     }
                     else
                     {
-                        // Encode an invalid start character for an XML element
-                        // name.
-                        encode(c, builder);
+                        // Just append
+                        builder.append(c);
                     }
                 }
-                else if (!XMLChar.isNCName(c))
+                else
                 {
+                    // Encode an invalid start character for an XML element
+                    // name.
                     encode(c, builder);
                 }
+            }
+            else if (!(sql ? isSQLName(c) : XMLChar.isNCName(c)))
+            {
+                encode(c, builder);
+            }
+            else
+            {
+                if (matchesEncodedPattern(toEncode, i))
+                {
+                    // '_' must be encoded
+                    encode('_', builder);
+                }
                 else
                 {
-                    if (matchesEncodedPattern(toEncode, i))
-                    {
-                        // '_' must be encoded
-                        encode('_', builder);
-                    }
-                    else
-                    {
-                        builder.append(c);
-                    }
+                    builder.append(c);
                 }
             }
-            return builder.toString();
         }
-
     }
 
     private static boolean matchesEncodedPattern(String string, int position)
@@ -292,16 +334,32 @@ public class ISO9075
 
     public static String decode(String toDecode)
     {
-        if ((toDecode == null) || (toDecode.length() < 7) || (toDecode.indexOf("_x") < 0))
+        if ((toDecode == null) || (toDecode.length() < 7))
         {
             return toDecode;
         }
-        StringBuffer decoded = new StringBuffer();
-        for (int i = 0, l = toDecode.length(); i < l; i++)
+        int first = toDecode.indexOf("_x");
+        while (first >= 0 && !matchesEncodedPattern(toDecode, first))
+        {
+            first = toDecode.indexOf("_x", first + 1);
+        }
+        if (first < 0)
+        {
+            // nothing to decode
+            return toDecode;
+        }
+        StringBuilder decoded = new StringBuilder(toDecode.length());
+        decoded.append(toDecode, 0, first);
+        for (int i = first, l = toDecode.length(); i < l; i++)
         {
             if (matchesEncodedPattern(toDecode, i))
             {
-                decoded.append(((char) Integer.parseInt(toDecode.substring(i + 2, i + 6), 16)));
+                int value = 0;
+                for (int j = i + 2; j < i + 6; j++)
+                {
+                    value = (value << 4) | Character.digit(toDecode.charAt(j), 16);
+                }
+                decoded.append((char) value);
                 i += 6;// then one added for the loop to mkae the length of 7
             }
             else
@@ -314,42 +372,53 @@ public class ISO9075
 
     private static void encode(char c, StringBuilder builder)
     {
-        char[] buf = new char[] { '_', 'x', '0', '0', '0', '0', '_' };
-        int charPos = 6;
-        do
-        {
-            buf[--charPos] = DIGITS[c & MASK];
-            c >>>= 4;
-        }
-        while (c != 0);
-        builder.append(buf);
+        builder.append('_').append('x')
+               .append(DIGITS[(c >>> 12) & MASK])
+               .append(DIGITS[(c >>> 8) & MASK])
+               .append(DIGITS[(c >>> 4) & MASK])
+               .append(DIGITS[c & MASK])
+               .append('_');
     }
 
     public static String getXPathName(QName qName, NamespacePrefixResolver nspr)
     {
+        return getXPathName(qName, nspr, new StringBuilder(32)).toString();
+    }
 
+    /**
+     * Append the prefixed XPath name of a QName, as {@link #getXPathName(QName, NamespacePrefixResolver)}
+     * 
+     * @return the builder
+     */
+    public static StringBuilder getXPathName(QName qName, NamespacePrefixResolver nspr, StringBuilder builder)
+    {
         Collection<String> prefixes = nspr.getPrefixes(qName.getNamespaceURI());
         if (prefixes.size() == 0)
         {
             throw new NamespaceException("A namespace prefix is not registered for uri " + qName.getNamespaceURI());
         }
         String prefix = prefixes.iterator().next();
-        if (prefix.equals(NamespaceService.DEFAULT_PREFIX))
-        {
-            return ISO9075.encode(qName.getLocalName());
-        }
-        else
+        if (!prefix.equals(NamespaceService.DEFAULT_PREFIX))
         {
-            return prefix + ":" + ISO9075.encode(qName.getLocalName());
+            builder.append(prefix).append(':');
         }
-
+        return ISO9075.encode(qName.getLocalName(), builder);
     }
 
     public static String getXPathName(QName qName)
     {
+        return getXPathName(qName, new StringBuilder(64)).toString();
+    }
 
-        return "{" + qName.getNamespaceURI() + "}" + ISO9075.encode(qName.getLocalName());
-
+    /**
+     * Append the fully qualified XPath name of a QName, as {@link #getXPathName(QName)}
+     * 
+     * @return the builder
+     */
+    public static StringBuilder getXPathName(QName qName, StringBuilder builder)
+    {
+        builder.append('{').append(qName.getNamespaceURI()).append('}');
+        return ISO9075.encode(qName.getLocalName(), builder);
     }
     
     public static QName parseXPathName(String str)
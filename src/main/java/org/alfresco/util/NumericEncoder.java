@@ -25,6 +25,8 @@
  */
 package org.alfresco.util;
 
+import java.nio.ByteBuffer;
+
 /**
  * Support to encode numeric types in the lucene index.
  * 
@@ -150,6 +152,223 @@ public class NumericEncoder
      * @return - the encoded string
      */
     public static String encode(float floatToEncode)
+    {
+        return encodeToHex(sortableBits(floatToEncode));
+    }
+
+    /**
+     * Encode a double into a string that orders correctly according to string
+     * comparison. Note that there is no negative NaN but there are codings that
+     * imply this. So NaN and -Infinity may not compare as expected.
+     * 
+     * @param doubleToEncode double
+     * @return the encoded string
+     */
+    public static String encode(double doubleToEncode)
+    {
+        return encodeToHex(sortableBits(doubleToEncode));
+    }
+
+    /*
+     * Encoding into caller supplied buffers, so that building queries and index fields need not allocate per value
+     */
+
+    /**
+     * Encode an int into a char array, as {@link #encode(int)}
+     * 
+     * @param intToEncode int
+     * @param buf the array to write 8 chars to
+     * @param offset the position to write from
+     * @return the position after the encoded chars
+     */
+    public static int encode(int intToEncode, char[] buf, int offset)
+    {
+        return writeHex(intToEncode ^ INTEGER_SIGN_MASK, buf, offset);
+    }
+
+    /**
+     * Encode a long into a char array, as {@link #encode(long)}
+     * 
+     * @param longToEncode long
+     * @param buf the array to write 16 chars to
+     * @param offset the position to write from
+     * @return the position after the encoded chars
+     */
+    public static int encode(long longToEncode, char[] buf, int offset)
+    {
+        return writeHex(longToEncode ^ LONG_SIGN_MASK, buf, offset);
+    }
+
+    /**
+     * Encode a float into a char array, as {@link #encode(float)}
+     * 
+     * @param floatToEncode float
+     * @param buf the array to write 8 chars to
+     * @param offset the position to write from
+     * @return the position after the encoded chars
+     */
+    public static int encode(float floatToEncode, char[] buf, int offset)
+    {
+        return writeHex(sortableBits(floatToEncode), buf, offset);
+    }
+
+    /**
+     * Encode a double into a char array, as {@link #encode(double)}
+     * 
+     * @param doubleToEncode double
+     * @param buf the array to write 16 chars to
+     * @param offset the position to write from
+     * @return the position after the encoded chars
+     */
+    public static int encode(double doubleToEncode, char[] buf, int offset)
+    {
+        return writeHex(sortableBits(doubleToEncode), buf, offset);
+    }
+
+    /**
+     * Append the encoding of an int, as {@link #encode(int)}
+     * 
+     * @return the builder
+     */
+    public static StringBuilder encode(int intToEncode, StringBuilder sb)
+    {
+        return appendHex(intToEncode ^ INTEGER_SIGN_MASK, sb);
+    }
+
+    /**
+     * Append the encoding of a long, as {@link #encode(long)}
+     * 
+     * @return the builder
+     */
+    public static StringBuilder encode(long longToEncode, StringBuilder sb)
+    {
+        return appendHex(longToEncode ^ LONG_SIGN_MASK, sb);
+    }
+
+    /**
+     * Append the encoding of a float, as {@link #encode(float)}
+     * 
+     * @return the builder
+     */
+    public static StringBuilder encode(float floatToEncode, StringBuilder sb)
+    {
+        return appendHex(sortableBits(floatToEncode), sb);
+    }
+
+    /**
+     * Append the encoding of a double, as {@link #encode(double)}
+     * 
+     * @return the builder
+     */
+    public static StringBuilder encode(double doubleToEncode, StringBuilder sb)
+    {
+        return appendHex(sortableBits(doubleToEncode), sb);
+    }
+
+    /**
+     * Decode a long encoded by {@link #encode(long)} from part of a char sequence
+     * 
+     * @param hex the chars
+     * @param offset the position of the 16 encoded chars
+     * @return the decoded long
+     */
+    public static long decodeLong(CharSequence hex, int offset)
+    {
+        long l = 0;
+        for (int i = offset; i < offset + 16; i++)
+        {
+            l = (l << 4) | hexDigit(hex.charAt(i));
+        }
+        return l ^ LONG_SIGN_MASK;
+    }
+
+    /**
+     * Decode an int encoded by {@link #encode(int)} from part of a char sequence
+     * 
+     * @param hex the chars
+     * @param offset the position of the 8 encoded chars
+     * @return the decoded int
+     */
+    public static int decodeInt(CharSequence hex, int offset)
+    {
+        int l = 0;
+        for (int i = offset; i < offset + 8; i++)
+        {
+            l = (l << 4) | hexDigit(hex.charAt(i));
+        }
+        return l ^ INTEGER_SIGN_MASK;
+    }
+
+    /*
+     * Sortable binary encoding: the same sign-flipped bits as the hex encoding, written big-endian, so that
+     * unsigned byte-by-byte comparison gives numeric order
+     */
+
+    /**
+     * Write the sortable binary encoding of an int (4 bytes), whatever the byte order of the buffer
+     */
+    public static ByteBuffer encodeSortable(int intToEncode, ByteBuffer buffer)
+    {
+        return putBigEndian(intToEncode ^ INTEGER_SIGN_MASK, buffer);
+    }
+
+    /**
+     * Write the sortable binary encoding of a long (8 bytes), whatever the byte order of the buffer
+     */
+    public static ByteBuffer encodeSortable(long longToEncode, ByteBuffer buffer)
+    {
+        return putBigEndian(longToEncode ^ LONG_SIGN_MASK, buffer);
+    }
+
+    /**
+     * Write the sortable binary encoding of a float (4 bytes), whatever the byte order of the buffer
+     */
+    public static ByteBuffer encodeSortable(float floatToEncode, ByteBuffer buffer)
+    {
+        return putBigEndian(sortableBits(floatToEncode), buffer);
+    }
+
+    /**
+     * Write the sortable binary encoding of a double (8 bytes), whatever the byte order of the buffer
+     */
+    public static ByteBuffer encodeSortable(double doubleToEncode, ByteBuffer buffer)
+    {
+        return putBigEndian(sortableBits(doubleToEncode), buffer);
+    }
+
+    public static int decodeSortableInt(ByteBuffer buffer)
+    {
+        return getBigEndianInt(buffer) ^ INTEGER_SIGN_MASK;
+    }
+
+    public static long decodeSortableLong(ByteBuffer buffer)
+    {
+        return getBigEndianLong(buffer) ^ LONG_SIGN_MASK;
+    }
+
+    public static float decodeSortableFloat(ByteBuffer buffer)
+    {
+        int bits = getBigEndianInt(buffer);
+        if ((bits & FLOAT_SIGN_MASK) == 0)
+        {
+            // negative
+            bits ^= FLOAT_EXPONENT_MASK | FLOAT_MANTISSA_MASK;
+        }
+        return Float.intBitsToFloat(bits ^ FLOAT_SIGN_MASK);
+    }
+
+    public static double decodeSortableDouble(ByteBuffer buffer)
+    {
+        long bits = getBigEndianLong(buffer);
+        if ((bits & DOUBLE_SIGN_MASK) == 0)
+        {
+            // negative
+            bits ^= DOUBLE_EXPONENT_MASK | DOUBLE_MANTISSA_MASK;
+        }
+        return Double.longBitsToDouble(bits ^ DOUBLE_SIGN_MASK);
+    }
+
+    private static int sortableBits(float floatToEncode)
     {
         int bits = Float.floatToIntBits(floatToEncode);
         int sign = bits & FLOAT_SIGN_MASK;
@@ -161,19 +380,10 @@ public class NumericEncoder
             mantissa ^= FLOAT_MANTISSA_MASK;
         }
         sign ^= FLOAT_SIGN_MASK;
-        int replacement = sign | exponent | mantissa;
-        return encodeToHex(replacement);
+        return sign | exponent | mantissa;
     }
 
-    /**
-     * Encode a double into a string that orders correctly according to string
-     * comparison. Note that there is no negative NaN but there are codings that
-     * imply this. So NaN and -Infinity may not compare as expected.
-     * 
-     * @param doubleToEncode double
-     * @return the encoded string
-     */
-    public static String encode(double doubleToEncode)
+    private static long sortableBits(double doubleToEncode)
     {
         long bits = Double.doubleToLongBits(doubleToEncode);
         long sign = bits & DOUBLE_SIGN_MASK;
@@ -185,8 +395,83 @@ public class NumericEncoder
             mantissa ^= DOUBLE_MANTISSA_MASK;
         }
         sign ^= DOUBLE_SIGN_MASK;
-        long replacement = sign | exponent | mantissa;
-        return encodeToHex(replacement);
+        return sign | exponent | mantissa;
+    }
+
+    private static int writeHex(int i, char[] buf, int offset)
+    {
+        for (int charPos = offset + 7; charPos >= offset; charPos--)
+        {
+            buf[charPos] = DIGITS[i & MASK];
+            i >>>= 4;
+        }
+        return offset + 8;
+    }
+
+    private static int writeHex(long l, char[] buf, int offset)
+    {
+        for (int charPos = offset + 15; charPos >= offset; charPos--)
+        {
+            buf[charPos] = DIGITS[(int) l & MASK];
+            l >>>= 4;
+        }
+        return offset + 16;
+    }
+
+    private static StringBuilder appendHex(int i, StringBuilder sb)
+    {
+        for (int shift = 28; shift >= 0; shift -= 4)
+        {
+            sb.append(DIGITS[(i >>> shift) & MASK]);
+        }
+        return sb;
+    }
+
+    private static StringBuilder appendHex(long l, StringBuilder sb)
+    {
+        for (int shift = 60; shift >= 0; shift -= 4)
+        {
+            sb.append(DIGITS[(int) (l >>> shift) & MASK]);
+        }
+        return sb;
+    }
+
+    private static int hexDigit(char c)
+    {
+        if (c >= '0' && c <= '9')
+        {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f')
+        {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F')
+        {
+            return c - 'A' + 10;
+        }
+        throw new NumberFormatException("Invalid hex digit: " + c);
+    }
+
+    private static ByteBuffer putBigEndian(int i, ByteBuffer buffer)
+    {
+        return buffer.put((byte) (i >>> 24)).put((byte) (i >>> 16)).put((byte) (i >>> 8)).put((byte) i);
+    }
+
+    private static ByteBuffer putBigEndian(long l, ByteBuffer buffer)
+    {
+        putBigEndian((int) (l >>> 32), buffer);
+        return putBigEndian((int) l, buffer);
+    }
+
+    private static int getBigEndianInt(ByteBuffer buffer)
+    {
+        return (buffer.get() & 0xFF) << 24 | (buffer.get() & 0xFF) << 16 | (buffer.get() & 0xFF) << 8 | (buffer.get() & 0xFF);
+    }
+
+    private static long getBigEndianLong(ByteBuffer buffer)
+    {
+        return ((long) getBigEndianInt(buffer)) << 32 | (getBigEndianInt(buffer) & 0xFFFFFFFFL);
     }
 
     private static String encodeToHex(int i)
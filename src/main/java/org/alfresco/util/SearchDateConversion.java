@@ -28,74 +28,206 @@ package org.alfresco.util;
 import org.alfresco.service.cmr.search.IntervalSet;
 import org.springframework.extensions.surf.util.I18NUtil;
 
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.SignStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAccessor;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Moved from Solr4QueryParser
+ * <p>
+ * Dates are handled with <tt>java.time</tt> in the default time zone using the ISO calendar.
+ * The keywords <tt>min</tt>, <tt>now</tt>, <tt>today</tt> and <tt>max</tt> are checked before any
+ * parsing and ISO 8601 dates from <tt>yyyy</tt> down to <tt>yyyy-MM-dd'T'HH:mm:ss.SSSZ</tt> are
+ * parsed by a single precompiled formatter.  Other values that start with a digit are given to
+ * the lenient {@link CachingDateFormat} parsing.
  */
 public class SearchDateConversion
 {
 
     public static final TimeZone UTC_TIMEZONE = TimeZone.getTimeZone("UTC");
+
+    /** Parses <tt>yyyy[-MM[-dd[THH[:mm[:ss[.SSS]]]]]][offset]</tt> */
+    private static final DateTimeFormatter ISO_PARSER = new DateTimeFormatterBuilder()
+                .appendValue(ChronoField.YEAR, 4)
+                .optionalStart()
+                    .appendLiteral('-').appendValue(ChronoField.MONTH_OF_YEAR, 2)
+                    .optionalStart()
+                        .appendLiteral('-').appendValue(ChronoField.DAY_OF_MONTH, 2)
+                        .optionalStart()
+                            .appendLiteral('T').appendValue(ChronoField.HOUR_OF_DAY, 2)
+                            .optionalStart()
+                                .appendLiteral(':').appendValue(ChronoField.MINUTE_OF_HOUR, 2)
+                                .optionalStart()
+                                    .appendLiteral(':').appendValue(ChronoField.SECOND_OF_MINUTE, 2)
+                                    .optionalStart()
+                                        .appendFraction(ChronoField.MILLI_OF_SECOND, 1, 3, true)
+                                    .optionalEnd()
+                                .optionalEnd()
+                            .optionalEnd()
+                        .optionalEnd()
+                    .optionalEnd()
+                .optionalEnd()
+                .optionalStart().appendOffset("+HH:MM", "Z").optionalEnd()
+                .optionalStart().appendOffset("+HHMM", "Z").optionalEnd()
+                .toFormatter(Locale.ROOT);
+
+    /** Formats <tt>yyyy-MM-dd'T'HH:mm:ss.SSS'Z'</tt> in UTC */
+    private static final DateTimeFormatter SOLR_FORMATTER = new DateTimeFormatterBuilder()
+                .appendValue(ChronoField.YEAR, 4, 10, SignStyle.NORMAL)
+                .appendLiteral('-').appendValue(ChronoField.MONTH_OF_YEAR, 2)
+                .appendLiteral('-').appendValue(ChronoField.DAY_OF_MONTH, 2)
+                .appendLiteral('T').appendValue(ChronoField.HOUR_OF_DAY, 2)
+                .appendLiteral(':').appendValue(ChronoField.MINUTE_OF_HOUR, 2)
+                .appendLiteral(':').appendValue(ChronoField.SECOND_OF_MINUTE, 2)
+                .appendLiteral('.').appendValue(ChronoField.MILLI_OF_SECOND, 3)
+                .appendLiteral('Z')
+                .toFormatter(Locale.ROOT)
+                .withZone(ZoneOffset.UTC);
+
+    /** The <tt>min</tt> and <tt>max</tt> dates by locale and time zone, as worked out by {@link #getCalendarLimits} */
+    private static final int MAX_CALENDAR_LIMITS = 64;
+    private static final Map<String, long[]> calendarLimits = new ConcurrentHashMap<String, long[]>();
     /**
      *
      * @param dateString
      * @return Pair<Date, Integer>
      */
     public static Pair<Date, Integer> parseDateString(String dateString)
+    {
+        // keywords first
+        if (dateString.equalsIgnoreCase("min"))
+        {
+            return new Pair<Date, Integer>(new Date(getCalendarLimits()[0]), Calendar.MILLISECOND);
+        }
+        else if (dateString.equalsIgnoreCase("now"))
+        {
+            return new Pair<Date, Integer>(new Date(), Calendar.MILLISECOND);
+        }
+        else if (dateString.equalsIgnoreCase("today"))
+        {
+            ZoneId zone = getDefaultZone();
+            return new Pair<Date, Integer>(toDate(LocalDate.now(zone).atStartOfDay(), zone), Calendar.DAY_OF_MONTH);
+        }
+        else if (dateString.equalsIgnoreCase("max"))
+        {
+            return new Pair<Date, Integer>(new Date(getCalendarLimits()[1]), Calendar.MILLISECOND);
+        }
+        else if (dateString.length() == 0 || !Character.isDigit(dateString.charAt(0)))
+        {
+            return null; // delegate to SOLR date parsing
+        }
+
+        Pair<Date, Integer> result = parseIsoDateString(dateString);
+        if (result == null)
+        {
+            result = parseLenientDateString(dateString);
+        }
+        return result;
+    }
+
+    /**
+     * Parse an ISO 8601 date with the precompiled formatter
+     * 
+     * @return the date and resolution or <tt>null</tt> if the string is not a valid ISO date
+     */
+    private static Pair<Date, Integer> parseIsoDateString(String dateString)
+    {
+        ParsePosition position = new ParsePosition(0);
+        TemporalAccessor parsed = ISO_PARSER.parseUnresolved(dateString, position);
+        if (parsed == null || position.getErrorIndex() >= 0 || position.getIndex() != dateString.length())
+        {
+            return null;
+        }
+        int resolution = Calendar.YEAR;
+        int month = 1;
+        int day = 1;
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int milli = 0;
+        if (parsed.isSupported(ChronoField.MONTH_OF_YEAR))
+        {
+            month = (int) parsed.getLong(ChronoField.MONTH_OF_YEAR);
+            resolution = Calendar.MONTH;
+        }
+        if (parsed.isSupported(ChronoField.DAY_OF_MONTH))
+        {
+            day = (int) parsed.getLong(ChronoField.DAY_OF_MONTH);
+            resolution = Calendar.DAY_OF_MONTH;
+        }
+        if (parsed.isSupported(ChronoField.HOUR_OF_DAY))
+        {
+            hour = (int) parsed.getLong(ChronoField.HOUR_OF_DAY);
+            resolution = Calendar.HOUR_OF_DAY;
+        }
+        if (parsed.isSupported(ChronoField.MINUTE_OF_HOUR))
+        {
+            minute = (int) parsed.getLong(ChronoField.MINUTE_OF_HOUR);
+            resolution = Calendar.MINUTE;
+        }
+        if (parsed.isSupported(ChronoField.SECOND_OF_MINUTE))
+        {
+            second = (int) parsed.getLong(ChronoField.SECOND_OF_MINUTE);
+            resolution = Calendar.SECOND;
+        }
+        if (parsed.isSupported(ChronoField.MILLI_OF_SECOND))
+        {
+            milli = (int) parsed.getLong(ChronoField.MILLI_OF_SECOND);
+            resolution = Calendar.MILLISECOND;
+        }
+        try
+        {
+            LocalDateTime local = LocalDateTime.of((int) parsed.getLong(ChronoField.YEAR), month, day, hour, minute, second, milli * 1000000);
+            ZoneId zone = parsed.isSupported(ChronoField.OFFSET_SECONDS)
+                        ? ZoneOffset.ofTotalSeconds((int) parsed.getLong(ChronoField.OFFSET_SECONDS))
+                        : getDefaultZone();
+            return new Pair<Date, Integer>(toDate(local, zone), resolution);
+        }
+        catch (DateTimeException e)
+        {
+            // out of range field e.g. month 13
+            return null;
+        }
+    }
+
+    /**
+     * The legacy lenient parsing for anything that is not an ISO date
+     */
+    private static Pair<Date, Integer> parseLenientDateString(String dateString)
     {
         try
         {
-            Pair<Date, Integer> result = CachingDateFormat.lenientParse(dateString, Calendar.YEAR);
-            return result;
-        } catch (java.text.ParseException e)
+            return CachingDateFormat.lenientParse(dateString, Calendar.YEAR);
+        }
+        catch (java.text.ParseException e)
         {
             SimpleDateFormat oldDf = CachingDateFormat.getDateFormat();
             try
             {
                 Date date = oldDf.parse(dateString);
                 return new Pair<Date, Integer>(date, Calendar.SECOND);
-            } catch (java.text.ParseException ee)
+            }
+            catch (java.text.ParseException ee)
             {
-                if (dateString.equalsIgnoreCase("min"))
-                {
-                    Calendar cal = Calendar.getInstance(I18NUtil.getLocale());
-                    cal.set(Calendar.YEAR, cal.getMinimum(Calendar.YEAR));
-                    cal.set(Calendar.DAY_OF_YEAR, cal.getMinimum(Calendar.DAY_OF_YEAR));
-                    cal.set(Calendar.HOUR_OF_DAY, cal.getMinimum(Calendar.HOUR_OF_DAY));
-                    cal.set(Calendar.MINUTE, cal.getMinimum(Calendar.MINUTE));
-                    cal.set(Calendar.SECOND, cal.getMinimum(Calendar.SECOND));
-                    cal.set(Calendar.MILLISECOND, cal.getMinimum(Calendar.MILLISECOND));
-                    return new Pair<Date, Integer>(cal.getTime(), Calendar.MILLISECOND);
-                } else if (dateString.equalsIgnoreCase("now"))
-                {
-                    return new Pair<Date, Integer>(new Date(), Calendar.MILLISECOND);
-                } else if (dateString.equalsIgnoreCase("today"))
-                {
-                    Calendar cal = Calendar.getInstance(I18NUtil.getLocale());
-                    cal.setTime(new Date());
-                    cal.set(Calendar.HOUR_OF_DAY, cal.getMinimum(Calendar.HOUR_OF_DAY));
-                    cal.set(Calendar.MINUTE, cal.getMinimum(Calendar.MINUTE));
-                    cal.set(Calendar.SECOND, cal.getMinimum(Calendar.SECOND));
-                    cal.set(Calendar.MILLISECOND, cal.getMinimum(Calendar.MILLISECOND));
-                    return new Pair<Date, Integer>(cal.getTime(), Calendar.DAY_OF_MONTH);
-                } else if (dateString.equalsIgnoreCase("max"))
-                {
-                    Calendar cal = Calendar.getInstance(I18NUtil.getLocale());
-                    cal.set(Calendar.YEAR, cal.getMaximum(Calendar.YEAR));
-                    cal.set(Calendar.DAY_OF_YEAR, cal.getMaximum(Calendar.DAY_OF_YEAR));
-                    cal.set(Calendar.HOUR_OF_DAY, cal.getMaximum(Calendar.HOUR_OF_DAY));
-                    cal.set(Calendar.MINUTE, cal.getMaximum(Calendar.MINUTE));
-                    cal.set(Calendar.SECOND, cal.getMaximum(Calendar.SECOND));
-                    cal.set(Calendar.MILLISECOND, cal.getMaximum(Calendar.MILLISECOND));
-                    return new Pair<Date, Integer>(cal.getTime(), Calendar.MILLISECOND);
-                } else
-                {
-                    return null; // delegate to SOLR date parsing
-                }
+                return null; // delegate to SOLR date parsing
             }
         }
     }
@@ -105,23 +237,64 @@ public class SearchDateConversion
      * @return String date
      */
     public static String getDateEnd(Pair<Date, Integer> dateAndResolution)
+    {
+        if (isCalendarLimit(dateAndResolution.getFirst()))
+        {
+            return formatWithCalendar(dateAndResolution, true);
+        }
+        ZoneId zone = getDefaultZone();
+        LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(dateAndResolution.getFirst().getTime()), zone);
+        ChronoUnit unit = getUnit(dateAndResolution.getSecond());
+        if (unit != null)
+        {
+            // the last millisecond within the resolution
+            local = truncate(local, unit).plus(1, unit).minus(1, ChronoUnit.MILLIS);
+        }
+        return SOLR_FORMATTER.format(local.atZone(zone));
+    }
+
+    /**
+     * @param dateAndResolution
+     * @return String date
+     */
+    public static String getDateStart(Pair<Date, Integer> dateAndResolution)
+    {
+        if (isCalendarLimit(dateAndResolution.getFirst()))
+        {
+            return formatWithCalendar(dateAndResolution, false);
+        }
+        ZoneId zone = getDefaultZone();
+        LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(dateAndResolution.getFirst().getTime()), zone);
+        ChronoUnit unit = getUnit(dateAndResolution.getSecond());
+        if (unit != null)
+        {
+            local = truncate(local, unit);
+        }
+        return SOLR_FORMATTER.format(local.atZone(zone));
+    }
+
+    /**
+     * Format the start or end of a date within its resolution with the calendar for the current locale, as the
+     * <tt>min</tt> and <tt>max</tt> dates always were
+     */
+    private static String formatWithCalendar(Pair<Date, Integer> dateAndResolution, boolean end)
     {
         Calendar cal = Calendar.getInstance(I18NUtil.getLocale());
         cal.setTime(dateAndResolution.getFirst());
         switch (dateAndResolution.getSecond())
         {
             case Calendar.YEAR:
-                cal.set(Calendar.MONTH, cal.getActualMaximum(Calendar.MONTH));
+                cal.set(Calendar.MONTH, end ? cal.getActualMaximum(Calendar.MONTH) : cal.getActualMinimum(Calendar.MONTH));
             case Calendar.MONTH:
-                cal.set(Calendar.DAY_OF_MONTH, cal.getActualMaximum(Calendar.DAY_OF_MONTH));
+                cal.set(Calendar.DAY_OF_MONTH, end ? cal.getActualMaximum(Calendar.DAY_OF_MONTH) : cal.getActualMinimum(Calendar.DAY_OF_MONTH));
             case Calendar.DAY_OF_MONTH:
-                cal.set(Calendar.HOUR_OF_DAY, cal.getActualMaximum(Calendar.HOUR_OF_DAY));
+                cal.set(Calendar.HOUR_OF_DAY, end ? cal.getActualMaximum(Calendar.HOUR_OF_DAY) : cal.getActualMinimum(Calendar.HOUR_OF_DAY));
             case Calendar.HOUR_OF_DAY:
-                cal.set(Calendar.MINUTE, cal.getActualMaximum(Calendar.MINUTE));
+                cal.set(Calendar.MINUTE, end ? cal.getActualMaximum(Calendar.MINUTE) : cal.getActualMinimum(Calendar.MINUTE));
             case Calendar.MINUTE:
-                cal.set(Calendar.SECOND, cal.getActualMaximum(Calendar.SECOND));
+                cal.set(Calendar.SECOND, end ? cal.getActualMaximum(Calendar.SECOND) : cal.getActualMinimum(Calendar.SECOND));
             case Calendar.SECOND:
-                cal.set(Calendar.MILLISECOND, cal.getActualMaximum(Calendar.MILLISECOND));
+                cal.set(Calendar.MILLISECOND, end ? cal.getActualMaximum(Calendar.MILLISECOND) : cal.getActualMinimum(Calendar.MILLISECOND));
             case Calendar.MILLISECOND:
             default:
         }
@@ -131,33 +304,93 @@ public class SearchDateConversion
     }
 
     /**
-     * @param dateAndResolution
-     * @return String date
+     * @return the unit for a {@link Calendar} resolution or <tt>null</tt> if the date is used as is
      */
-    public static String getDateStart(Pair<Date, Integer> dateAndResolution)
+    private static ChronoUnit getUnit(int resolution)
     {
-        Calendar cal = Calendar.getInstance(I18NUtil.getLocale());
-        cal.setTime(dateAndResolution.getFirst());
-        switch (dateAndResolution.getSecond())
+        switch (resolution)
         {
             case Calendar.YEAR:
-                cal.set(Calendar.MONTH, cal.getActualMinimum(Calendar.MONTH));
+                return ChronoUnit.YEARS;
             case Calendar.MONTH:
-                cal.set(Calendar.DAY_OF_MONTH, cal.getActualMinimum(Calendar.DAY_OF_MONTH));
+                return ChronoUnit.MONTHS;
             case Calendar.DAY_OF_MONTH:
-                cal.set(Calendar.HOUR_OF_DAY, cal.getActualMinimum(Calendar.HOUR_OF_DAY));
+                return ChronoUnit.DAYS;
             case Calendar.HOUR_OF_DAY:
-                cal.set(Calendar.MINUTE, cal.getActualMinimum(Calendar.MINUTE));
+                return ChronoUnit.HOURS;
             case Calendar.MINUTE:
-                cal.set(Calendar.SECOND, cal.getActualMinimum(Calendar.SECOND));
+                return ChronoUnit.MINUTES;
             case Calendar.SECOND:
-                cal.set(Calendar.MILLISECOND, cal.getActualMinimum(Calendar.MILLISECOND));
+                return ChronoUnit.SECONDS;
             case Calendar.MILLISECOND:
             default:
+                return null;
         }
-        SimpleDateFormat formatter = CachingDateFormat.getSolrDatetimeFormat();
-        formatter.setTimeZone(UTC_TIMEZONE);
-        return formatter.format(cal.getTime());
+    }
+
+    private static LocalDateTime truncate(LocalDateTime local, ChronoUnit unit)
+    {
+        switch (unit)
+        {
+            case YEARS:
+                return LocalDateTime.of(LocalDate.of(local.getYear(), 1, 1), LocalTime.MIDNIGHT);
+            case MONTHS:
+                return LocalDateTime.of(LocalDate.of(local.getYear(), local.getMonth(), 1), LocalTime.MIDNIGHT);
+            default:
+                return local.truncatedTo(unit);
+        }
+    }
+
+    private static Date toDate(LocalDateTime local, ZoneId zone)
+    {
+        return new Date(local.atZone(zone).toInstant().toEpochMilli());
+    }
+
+    /**
+     * The <tt>min</tt> and <tt>max</tt> dates are the minimum and maximum of the calendar for the current locale, in
+     * the default time zone.  They are worked out once per locale and time zone, with a calendar, so that they
+     * stay the same as they always were.
+     * 
+     * @return the <tt>min</tt> and <tt>max</tt> dates in milliseconds
+     */
+    private static long[] getCalendarLimits()
+    {
+        Locale locale = I18NUtil.getLocale();
+        TimeZone timeZone = TimeZone.getDefault();
+        String key = locale + "|" + timeZone.getID();
+        long[] limits = calendarLimits.get(key);
+        if (limits == null)
+        {
+            limits = new long[] { getCalendarLimit(locale, false), getCalendarLimit(locale, true) };
+            if (calendarLimits.size() >= MAX_CALENDAR_LIMITS)
+            {
+                calendarLimits.clear();
+            }
+            calendarLimits.put(key, limits);
+        }
+        return limits;
+    }
+
+    private static boolean isCalendarLimit(Date date)
+    {
+        long[] limits = getCalendarLimits();
+        return date.getTime() == limits[0] || date.getTime() == limits[1];
+    }
+
+    private static long getCalendarLimit(Locale locale, boolean max)
+    {
+        Calendar cal = Calendar.getInstance(locale);
+        int[] fields = { Calendar.YEAR, Calendar.DAY_OF_YEAR, Calendar.HOUR_OF_DAY, Calendar.MINUTE, Calendar.SECOND, Calendar.MILLISECOND };
+        for (int field : fields)
+        {
+            cal.set(field, max ? cal.getMaximum(field) : cal.getMinimum(field));
+        }
+        return cal.getTimeInMillis();
+    }
+
+    private static ZoneId getDefaultZone()
+    {
+        return TimeZone.getDefault().toZoneId();
     }
 
     public static IntervalSet parseDateInterval(IntervalSet theSet, boolean isDate)
@@ -28,6 +28,8 @@ package org.alfresco.util;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import org.springframework.util.StringUtils;
 
@@ -39,6 +41,16 @@ import org.springframework.util.StringUtils;
  */
 public class SearchLanguageConversion
 {
+    /** The maximum number of conversions or patterns cached per cache before the cache is reset */
+    private static final int MAX_CACHE_SIZE = 1000;
+
+    /** Longer queries are converted on each call rather than cached */
+    private static final int MAX_CACHED_QUERY_LENGTH = 256;
+
+    private static final ConcurrentHashMap<String, Pattern> sqlLikePatterns = new ConcurrentHashMap<String, Pattern>(64);
+
+    private static final ConcurrentHashMap<String, Pattern> xpathLikePatterns = new ConcurrentHashMap<String, Pattern>(64);
+
     /**
      * SQL like query language summary:
      * <ul>
@@ -131,18 +143,19 @@ public class SearchLanguageConversion
      */
     private static String escape(LanguageDefinition def, String str)
     {
-        StringBuilder sb = new StringBuilder(str.length() * 2);
+        int length = str.length();
+        StringBuilder sb = new StringBuilder(length * 2);
 
-        char[] chars = str.toCharArray();
-        for (int i = 0; i < chars.length; i++)
+        for (int i = 0; i < length; i++)
         {
+            char c = str.charAt(i);
             // first check for reserved chars
-            if (def.isReserved(chars[i]))
+            if (def.isReservedChar(c))
             {
                 // escape it
                 sb.append(def.escapeChar);
             }
-            sb.append(chars[i]);
+            sb.append(c);
         }
         return sb.toString();
     }
@@ -191,6 +204,50 @@ public class SearchLanguageConversion
         return "(?s)" + convert(DEF_SQL_LIKE, DEF_REGEX, sqlLikeClause);
     }
 
+    /**
+     * Compile a <b>sql</b> like function clause into a regular expression {@link Pattern}.
+     * Compiled patterns are cached, so repeated calls with the same clause are cheap.
+     * 
+     * @param sqlLikeClause String
+     * @return Returns a pattern equivalent to the given <b>sql</b> like clause
+     * @see #convertSQLLikeToRegex(String)
+     */
+    public static Pattern compileSQLLikeToRegex(String sqlLikeClause)
+    {
+        return compile(sqlLikePatterns, DEF_SQL_LIKE, sqlLikeClause);
+    }
+
+    /**
+     * Compile an <b>xpath</b> like function clause into a regular expression {@link Pattern}.
+     * Compiled patterns are cached, so repeated calls with the same clause are cheap.
+     * 
+     * @param xpathLikeClause String
+     * @return Returns a pattern equivalent to the given <b>xpath</b> like clause
+     * @see #convertXPathLikeToRegex(String)
+     */
+    public static Pattern compileXPathLikeToRegex(String xpathLikeClause)
+    {
+        return compile(xpathLikePatterns, DEF_XPATH_LIKE, xpathLikeClause);
+    }
+
+    private static Pattern compile(ConcurrentHashMap<String, Pattern> patterns, LanguageDefinition from, String likeClause)
+    {
+        Pattern pattern = patterns.get(likeClause);
+        if (pattern == null)
+        {
+            pattern = Pattern.compile("(?s)" + convert(from, DEF_REGEX, likeClause));
+            if (likeClause.length() <= MAX_CACHED_QUERY_LENGTH)
+            {
+                if (patterns.size() >= MAX_CACHE_SIZE)
+                {
+                    patterns.clear();
+                }
+                patterns.put(likeClause, pattern);
+            }
+        }
+        return pattern;
+    }
+
     /**
      * Convert a <b>CIFS</b> name path into the equivalent <b>Lucene</b> query.
      * 
@@ -203,50 +260,107 @@ public class SearchLanguageConversion
         return convert(DEF_CIFS, DEF_LUCENE, cifsNamePath);
     }
 
+    /**
+     * Convert a query from one language to another.  The translation for each pair of languages
+     * is table driven and the results for short queries are cached.
+     * 
+     * @param from the language of the query
+     * @param to the language to convert to
+     * @param query the query to convert
+     * @return Returns the converted query
+     */
     public static String convert(LanguageDefinition from, LanguageDefinition to, String query)
     {
-        char[] chars = query.toCharArray();
-
-        StringBuilder sb = new StringBuilder(chars.length * 2);
+        return from.getTranslator(to).translate(query);
+    }
 
-        boolean escaping = false;
+    /**
+     * Translates queries from one language to another, caching the translations.
+     */
+    private static final class Translator
+    {
+        private final char escapeChar;
+        private final String multiCharWildcard;
+        private final String singleCharWildcard;
+        /** The first character of each wildcard, or -1 if the wildcard is empty */
+        private final int multiCharStart;
+        private final int singleCharStart;
+        private final LanguageDefinition to;
+        private final ConcurrentHashMap<String, String> translations = new ConcurrentHashMap<String, String>(64);
+
+        private Translator(LanguageDefinition from, LanguageDefinition to)
+        {
+            this.escapeChar = from.escapeChar;
+            this.multiCharWildcard = from.multiCharWildcard;
+            this.singleCharWildcard = from.singleCharWildcard;
+            this.multiCharStart = multiCharWildcard.length() == 0 ? -1 : multiCharWildcard.charAt(0);
+            this.singleCharStart = singleCharWildcard.length() == 0 ? -1 : singleCharWildcard.charAt(0);
+            this.to = to;
+        }
 
-        for (int i = 0; i < chars.length; i++)
+        private String translate(String query)
         {
-            if (escaping) // if we are currently escaping, just escape the current character
+            String translated = translations.get(query);
+            if (translated == null)
             {
-                if(to.isReserved(chars[i]))
+                translated = doTranslate(query);
+                if (query.length() <= MAX_CACHED_QUERY_LENGTH)
                 {
-                    sb.append(to.escapeChar); // the to format escape char
+                    if (translations.size() >= MAX_CACHE_SIZE)
+                    {
+                        translations.clear();
+                    }
+                    translations.put(query, translated);
                 }
-                sb.append(chars[i]); // the current char
-                escaping = false;
             }
-            else if (chars[i] == from.escapeChar) // not escaping and have escape char
-            {
-                escaping = true;
-            }
-            else if (query.startsWith(from.multiCharWildcard, i)) // not escaping but have multi-char wildcard
-            {
-                // translate the wildcard
-                sb.append(to.multiCharWildcard);
-            }
-            else if (query.startsWith(from.singleCharWildcard, i)) // have single-char wildcard
-            {
-                // translate the wildcard
-                sb.append(to.singleCharWildcard);
-            }
-            else if (to.isReserved(chars[i])) // reserved character
-            {
-                sb.append(to.escapeChar).append(chars[i]);
-            }
-            else
-            // just a normal char in both
+            return translated;
+        }
+
+        private String doTranslate(String query)
+        {
+            int length = query.length();
+            StringBuilder sb = new StringBuilder(length * 2);
+
+            boolean escaping = false;
+
+            for (int i = 0; i < length; i++)
             {
-                sb.append(chars[i]);
+                char c = query.charAt(i);
+                if (escaping) // if we are currently escaping, just escape the current character
+                {
+                    if (to.isReservedChar(c))
+                    {
+                        sb.append(to.escapeChar); // the to format escape char
+                    }
+                    sb.append(c); // the current char
+                    escaping = false;
+                }
+                else if (c == escapeChar) // not escaping and have escape char
+                {
+                    escaping = true;
+                }
+                else if (c == multiCharStart && (multiCharWildcard.length() == 1 || query.startsWith(multiCharWildcard, i)))
+                {
+                    // not escaping but have multi-char wildcard - translate the wildcard
+                    sb.append(to.multiCharWildcard);
+                }
+                else if (c == singleCharStart && (singleCharWildcard.length() == 1 || query.startsWith(singleCharWildcard, i)))
+                {
+                    // have single-char wildcard - translate the wildcard
+                    sb.append(to.singleCharWildcard);
+                }
+                else if (to.isReservedChar(c)) // reserved character
+                {
+                    sb.append(to.escapeChar).append(c);
+                }
+                else
+                // just a normal char in both
+                {
+                    sb.append(c);
+                }
             }
+            return sb.toString();
         }
-        return sb.toString();
     }
 
     /**
@@ -260,6 +374,11 @@ public class SearchLanguageConversion
 
         public final String singleCharWildcard;
 
+        /** Bitmap of the reserved chars below 256, built on first use */
+        private volatile long[] reservedBits;
+
+        private final ConcurrentHashMap<LanguageDefinition, Translator> translators = new ConcurrentHashMap<LanguageDefinition, Translator>(8);
+
         public LanguageDefinition(char escapeChar, String multiCharWildcard, String singleCharWildcard)
         {
             this.escapeChar = escapeChar;
@@ -268,6 +387,46 @@ public class SearchLanguageConversion
         }
 
         public abstract boolean isReserved(char ch);
+
+        /**
+         * Table lookup of {@link #isReserved(char)} for the common chars.
+         */
+        final boolean isReservedChar(char ch)
+        {
+            if (ch >= 256)
+            {
+                return isReserved(ch);
+            }
+            long[] bits = reservedBits;
+            if (bits == null)
+            {
+                bits = new long[4];
+                for (char c = 0; c < 256; c++)
+                {
+                    if (isReserved(c))
+                    {
+                        bits[c >> 6] |= 1L << c;
+                    }
+                }
+                reservedBits = bits;
+            }
+            return (bits[ch >> 6] & (1L << ch)) != 0;
+        }
+
+        private Translator getTranslator(LanguageDefinition to)
+        {
+            Translator translator = translators.get(to);
+            if (translator == null)
+            {
+                translator = new Translator(this, to);
+                Translator existing = translators.putIfAbsent(to, translator);
+                if (existing != null)
+                {
+                    translator = existing;
+                }
+            }
+            return translator;
+        }
     }
 
     private static class SimpleLanguageDef extends LanguageDefinition
@@ -25,12 +25,31 @@
  */
 package org.alfresco.opencmis.dictionary;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.alfresco.opencmis.mapping.CMISMapping;
 import org.alfresco.repo.cache.MemoryCache;
 import org.alfresco.repo.cache.SimpleCache;
+import org.alfresco.repo.tenant.TenantService;
+import org.alfresco.repo.tenant.TenantUtil;
+import org.alfresco.service.namespace.QName;
+import org.apache.chemistry.opencmis.commons.enums.CmisVersion;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -107,4 +126,213 @@ public class CMISAbstractDictionaryServiceTest
         assertTrue("init() should have been called.", initCalled);
         assertSame(dictRegistry, registry);
     }
+
+    @Test
+    public void concurrentMissesBuildRegistryOnce() throws Exception
+    {
+        final AtomicInteger builds = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        CMISAbstractDictionaryService service = new CMISAbstractDictionaryService()
+        {
+            @Override
+            protected CMISDictionaryRegistry createDictionaryRegistry(String tenant)
+            {
+                builds.incrementAndGet();
+                try
+                {
+                    // widen the window in which other threads miss on the same key
+                    Thread.sleep(50);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return dictRegistry;
+            }
+
+            @Override
+            protected DictionaryInitializer getCoreDictionaryInitializer()
+            {
+                return null;
+            }
+
+            @Override
+            protected DictionaryInitializer getTenantDictionaryInitializer()
+            {
+                return null;
+            }
+        };
+        CMISMapping cmisMapping = new CMISMapping();
+        cmisMapping.setCmisVersion(CmisVersion.CMIS_1_1);
+        service.setCmisMapping(cmisMapping);
+        service.setSingletonCache(cache);
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<CMISDictionaryRegistry>> results = new ArrayList<Future<CMISDictionaryRegistry>>();
+            for (int i = 0; i < threads; i++)
+            {
+                results.add(executor.submit(new Callable<CMISDictionaryRegistry>()
+                {
+                    @Override
+                    public CMISDictionaryRegistry call() throws Exception
+                    {
+                        start.await();
+                        return service.getRegistry("acme.com");
+                    }
+                }));
+            }
+            start.countDown();
+
+            for (Future<CMISDictionaryRegistry> result : results)
+            {
+                assertSame(dictRegistry, result.get());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertEquals("Concurrent misses should be coalesced into a single build", 1, builds.get());
+        assertSame(dictRegistry, service.getRegistry("acme.com"));
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void parallelWrappersMatchSequentialWrappers()
+    {
+        List<QName> qnames = new ArrayList<QName>();
+        for (int i = 0; i < 1000; i++)
+        {
+            qnames.add(QName.createQName("http://www.alfresco.org/test/cmis", "type" + i));
+        }
+        // every third class is not mapped to CMIS; the tenant shows which dictionary the wrapper was built from
+        Function<QName, String> factory = new Function<QName, String>()
+        {
+            @Override
+            public String apply(QName qname)
+            {
+                int n = Integer.parseInt(qname.getLocalName().substring(4));
+                return (n % 3 == 0) ? null : TenantUtil.getCurrentDomain() + "/" + qname.getLocalName();
+            }
+        };
+
+        dictService.setRegistryBuildParallelism(1);
+        List<String> expected = createWrappers(dictService, "acme.com", qnames, factory);
+        assertEquals(666, expected.size());
+        assertEquals("acme.com/type1", expected.get(0));
+
+        CMISAbstractDictionaryService parallelService = newDictionaryService(null);
+        parallelService.setRegistryBuildParallelism(4);
+        try
+        {
+            assertEquals(expected, createWrappers(parallelService, "acme.com", qnames, factory));
+            // a second build reuses the pool
+            assertEquals(expected, createWrappers(parallelService, "acme.com", qnames, factory));
+        }
+        finally
+        {
+            parallelService.onShutdown(null);
+        }
+    }
+
+    @Test
+    public void parallelWrapperFailureIsRethrown()
+    {
+        List<QName> qnames = new ArrayList<QName>();
+        for (int i = 0; i < 100; i++)
+        {
+            qnames.add(QName.createQName("http://www.alfresco.org/test/cmis", "type" + i));
+        }
+        CMISAbstractDictionaryService parallelService = newDictionaryService(null);
+        parallelService.setRegistryBuildParallelism(4);
+        try
+        {
+            parallelService.createWrappers(qnames, new Function<QName, String>()
+            {
+                @Override
+                public String apply(QName qname)
+                {
+                    if (qname.getLocalName().equals("type57"))
+                    {
+                        throw new IllegalStateException("Broken type: " + qname.getLocalName());
+                    }
+                    return qname.getLocalName();
+                }
+            });
+            fail("Failure of a parallel task should be rethrown");
+        }
+        catch (IllegalStateException e)
+        {
+            assertEquals("Broken type: type57", e.getMessage());
+        }
+        finally
+        {
+            parallelService.onShutdown(null);
+        }
+    }
+
+    @Test
+    public void prewarmBuildsEachTenantRegistryOnce() throws Exception
+    {
+        final List<String> builtTenants = Collections.synchronizedList(new ArrayList<String>());
+        CMISAbstractDictionaryService service = newDictionaryService(builtTenants);
+        CMISMapping cmisMapping = new CMISMapping();
+        cmisMapping.setCmisVersion(CmisVersion.CMIS_1_1);
+        service.setCmisMapping(cmisMapping);
+        service.setSingletonCache(cache);
+
+        Thread thread = service.prewarmRegistries(Arrays.asList("acme.com", TenantService.DEFAULT_DOMAIN, "example.com"));
+        thread.join(10000L);
+
+        assertFalse(thread.isAlive());
+        assertEquals(Arrays.asList(TenantService.DEFAULT_DOMAIN, "acme.com", "example.com"), builtTenants);
+        assertEquals(3, service.getPrewarmRegistryTotal());
+        assertEquals(3, service.getPrewarmedRegistryCount());
+
+        // the registries are cached, so later calls do not build them again
+        assertSame(dictRegistry, service.getRegistry("acme.com"));
+        assertEquals(3, builtTenants.size());
+    }
+
+    private CMISAbstractDictionaryService newDictionaryService(final List<String> builtTenants)
+    {
+        return new CMISAbstractDictionaryService()
+        {
+            @Override
+            protected CMISDictionaryRegistry createDictionaryRegistry(String tenant)
+            {
+                builtTenants.add(TenantUtil.getCurrentDomain());
+                return dictRegistry;
+            }
+
+            @Override
+            protected DictionaryInitializer getCoreDictionaryInitializer()
+            {
+                return null;
+            }
+
+            @Override
+            protected DictionaryInitializer getTenantDictionaryInitializer()
+            {
+                return null;
+            }
+        };
+    }
+
+    private static <T> List<T> createWrappers(final CMISAbstractDictionaryService service, String tenant,
+            final List<QName> qnames, final Function<QName, T> factory)
+    {
+        return TenantUtil.runAsSystemTenant(new TenantUtil.TenantRunAsWork<List<T>>()
+        {
+            @Override
+            public List<T> doWork() throws Exception
+            {
+                return service.createWrappers(qnames, factory);
+            }
+        }, tenant);
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.opencmis.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.dictionary.DictionaryDAO;
+import org.alfresco.service.cmr.dictionary.ClassDefinition;
+import org.alfresco.service.cmr.dictionary.DictionaryService;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+import org.apache.chemistry.opencmis.commons.enums.CmisVersion;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the memoized classification in {@link CMISMapping}.
+ */
+public class CMISMappingTest
+{
+    private static final String TEST_URI = "http://www.alfresco.org/test/cmismapping";
+    private static final QName DOC_TYPE = QName.createQName(TEST_URI, "doc");
+    private static final QName FOLDER_TYPE = QName.createQName(TEST_URI, "folder");
+
+    private CMISMapping cmisMapping;
+    private DictionaryService dictionaryService;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dictionaryService = mock(DictionaryService.class);
+        ClassDefinition classDef = mock(ClassDefinition.class);
+        when(dictionaryService.getClass(DOC_TYPE)).thenReturn(classDef);
+        when(dictionaryService.getClass(FOLDER_TYPE)).thenReturn(classDef);
+        when(dictionaryService.isSubClass(DOC_TYPE, ContentModel.TYPE_CONTENT)).thenReturn(true);
+        when(dictionaryService.isSubClass(DOC_TYPE, ContentModel.TYPE_BASE)).thenReturn(true);
+        when(dictionaryService.isSubClass(FOLDER_TYPE, ContentModel.TYPE_FOLDER)).thenReturn(true);
+        when(dictionaryService.isSubClass(FOLDER_TYPE, ContentModel.TYPE_BASE)).thenReturn(true);
+
+        NamespaceService namespaceService = mock(NamespaceService.class);
+        when(namespaceService.getPrefixes(TEST_URI)).thenReturn(Collections.singletonList("test"));
+
+        cmisMapping = newCMISMapping(namespaceService);
+        cmisMapping.setDictionaryDAO(mock(DictionaryDAO.class));
+        cmisMapping.afterPropertiesSet();
+    }
+
+    private CMISMapping newCMISMapping(NamespaceService namespaceService)
+    {
+        CMISMapping mapping = new CMISMapping();
+        mapping.setCmisVersion(CmisVersion.CMIS_1_1);
+        mapping.setDictionaryService(dictionaryService);
+        mapping.setNamespaceService(namespaceService);
+        return mapping;
+    }
+
+    @Test
+    public void classification()
+    {
+        assertTrue(cmisMapping.isValidCmisDocument(DOC_TYPE));
+        assertFalse(cmisMapping.isValidCmisFolder(DOC_TYPE));
+        assertFalse(cmisMapping.isValidCmisItem(DOC_TYPE));
+        assertTrue(cmisMapping.isValidCmisRelationshipEndPoint(DOC_TYPE));
+        assertEquals("D:test:doc", cmisMapping.getCmisTypeId(DOC_TYPE));
+
+        assertTrue(cmisMapping.isValidCmisFolder(FOLDER_TYPE));
+        assertFalse(cmisMapping.isValidCmisDocument(FOLDER_TYPE));
+        assertEquals("F:test:folder", cmisMapping.getCmisTypeId(FOLDER_TYPE));
+
+        assertFalse(cmisMapping.isValidCmisDocument(null));
+        assertNull(cmisMapping.getCmisTypeId(QName.createQName(TEST_URI, "unknown")));
+    }
+
+    @Test
+    public void classificationIsMemoized()
+    {
+        for (int i = 0; i < 10; i++)
+        {
+            assertTrue(cmisMapping.isValidCmisDocument(DOC_TYPE));
+            assertFalse(cmisMapping.isValidCmisFolder(DOC_TYPE));
+            assertEquals("D:test:doc", cmisMapping.getCmisTypeId(DOC_TYPE));
+        }
+        verify(dictionaryService, times(1)).isSubClass(DOC_TYPE, ContentModel.TYPE_CONTENT);
+    }
+
+    @Test
+    public void dictionaryInitInvalidates()
+    {
+        assertTrue(cmisMapping.isValidCmisDocument(DOC_TYPE));
+
+        when(dictionaryService.isSubClass(DOC_TYPE, ContentModel.TYPE_CONTENT)).thenReturn(false);
+        assertTrue(cmisMapping.isValidCmisDocument(DOC_TYPE));
+
+        cmisMapping.onDictionaryInit();
+        assertFalse(cmisMapping.isValidCmisDocument(DOC_TYPE));
+
+        when(dictionaryService.isSubClass(DOC_TYPE, ContentModel.TYPE_CONTENT)).thenReturn(true);
+        cmisMapping.afterDictionaryDestroy();
+        assertTrue(cmisMapping.isValidCmisDocument(DOC_TYPE));
+    }
+
+    @Test
+    public void noMemoizationWithoutDictionaryDAO() throws Exception
+    {
+        NamespaceService namespaceService = mock(NamespaceService.class);
+        when(namespaceService.getPrefixes(TEST_URI)).thenReturn(Collections.singletonList("test"));
+        CMISMapping mapping = newCMISMapping(namespaceService);
+        mapping.afterPropertiesSet();
+
+        // a class deployed after it was first looked up
+        QName newType = QName.createQName(TEST_URI, "new");
+        assertNull(mapping.getCmisTypeId(newType));
+        when(dictionaryService.getClass(newType)).thenReturn(mock(ClassDefinition.class));
+        when(dictionaryService.isSubClass(newType, ContentModel.TYPE_CONTENT)).thenReturn(true);
+        when(dictionaryService.isSubClass(newType, ContentModel.TYPE_BASE)).thenReturn(true);
+        assertEquals("D:test:new", mapping.getCmisTypeId(newType));
+        assertTrue(mapping.isValidCmisDocument(newType));
+    }
+}
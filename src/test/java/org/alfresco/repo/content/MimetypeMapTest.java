@@ -49,6 +49,7 @@ import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -125,6 +126,9 @@ public class MimetypeMapTest extends TestCase
         assertEquals("application/msword", mimetypeService.getMimetype("doc"));
         // test case insensitivity
         assertEquals("application/msword", mimetypeService.getMimetype("DOC"));
+        assertEquals("application/msword", mimetypeService.getMimetype("dOc"));
+        assertEquals(Collections.singleton("application/msword"), mimetypeService.getMimetypes("Doc"));
+        assertTrue(mimetypeService.getMimetypes("unknownext").isEmpty());
         
         // test fallback for unknown and missing
         assertEquals(MimetypeMap.MIMETYPE_BINARY, mimetypeService.getMimetype(null));
@@ -141,8 +145,10 @@ public class MimetypeMapTest extends TestCase
     {
         assertEquals("application/msword", mimetypeService.guessMimetype("something.doc"));
         assertEquals("application/msword", mimetypeService.guessMimetype("SOMETHING.DOC"));
+        assertEquals("application/msword", mimetypeService.guessMimetype("some.thing.Doc"));
         assertEquals(MimetypeMap.MIMETYPE_BINARY, mimetypeService.guessMimetype("noextension"));
         assertEquals(MimetypeMap.MIMETYPE_BINARY, mimetypeService.guessMimetype("file.unknownext"));
+        assertEquals(MimetypeMap.MIMETYPE_BINARY, mimetypeService.guessMimetype("trailingdot."));
         
         // Without a content reader, the behaviour is the same
         assertEquals("application/msword", mimetypeService.guessMimetype("something.doc", (ContentReader)null));
@@ -223,6 +229,10 @@ public class MimetypeMapTest extends TestCase
     {
         Collection<String> types = mimetypeService.getMimetypes(null);
         assertNotNull(types);
+        // each caller gets its own list
+        int count = types.size();
+        types.clear();
+        assertEquals(count, mimetypeService.getMimetypes(null).size());
         types = mimetypeService.getMimetypes("txt");
         assertNotNull(types);
 
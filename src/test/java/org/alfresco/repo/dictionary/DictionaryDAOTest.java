@@ -29,18 +29,24 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import org.alfresco.repo.dictionary.constraint.CompiledConstraints;
 import org.alfresco.repo.dictionary.constraint.ListOfValuesConstraint;
 import org.alfresco.repo.dictionary.constraint.RegexConstraint;
 import org.alfresco.repo.dictionary.constraint.RegisteredConstraint;
@@ -59,6 +65,7 @@ import org.alfresco.service.cmr.dictionary.DictionaryService;
 import org.alfresco.service.cmr.dictionary.ModelDefinition;
 import org.alfresco.service.cmr.dictionary.PropertyDefinition;
 import org.alfresco.service.cmr.dictionary.TypeDefinition;
+import org.alfresco.service.cmr.i18n.MessageLookup;
 import org.alfresco.service.namespace.NamespaceException;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.util.DynamicallySizedThreadPoolExecutor;
@@ -82,6 +89,7 @@ public class DictionaryDAOTest
     private static final String TEST_MODEL = "org/alfresco/repo/dictionary/dictionarydaotest_model.xml";
     private static final String TEST_NS_CLASH_MODEL = "org/alfresco/repo/dictionary/nstest_model.xml";
     private static final String TEST_BUNDLE = "org/alfresco/repo/dictionary/dictionarydaotest_model";
+    private static final String TEST_LABELS_BUNDLE = "org/alfresco/repo/dictionary/dictionarydaotest_labels";
     private static final String TEST_COMMON_NS_PARENT_MODEL = "org/alfresco/repo/dictionary/commonpropertynsparent_model.xml";
     private static final String TEST_COMMON_NS_CHILD_MODEL = "org/alfresco/repo/dictionary/commonpropertynschild_model.xml";
 
@@ -157,6 +165,89 @@ public class DictionaryDAOTest
         bootstrap.bootstrap();
     }
 
+    @Test
+    public void testBootstrapParallelAndRepeated()
+    {
+        TenantService tenantService = new SingleTServiceImpl();
+        DictionaryDAOImpl parallelDAO = new DictionaryDAOImpl();
+        parallelDAO.setTenantService(tenantService);
+        initDictionaryCaches(parallelDAO, tenantService);
+
+        DictionaryBootstrap bootstrap = new DictionaryBootstrap();
+        List<String> bootstrapModels = new ArrayList<String>();
+        bootstrapModels.add("alfresco/model/dictionaryModel.xml");
+        bootstrapModels.add(TEST_MODEL);
+        bootstrap.setModels(bootstrapModels);
+        bootstrap.setLabels(Collections.singletonList(TEST_BUNDLE));
+        bootstrap.setDictionaryDAO(parallelDAO);
+        bootstrap.setTenantService(tenantService);
+        bootstrap.setParseParallelism(4);
+        bootstrap.bootstrap();
+
+        DictionaryComponent component = new DictionaryComponent();
+        component.setDictionaryDAO(parallelDAO);
+        component.setMessageLookup(new StaticMessageLookup());
+        assertEquals(new HashSet<QName>(service.getAllModels()), new HashSet<QName>(component.getAllModels()));
+        checkProp1Constraints(component);
+
+        // initialising the dictionary again compiles the models as if they had just been parsed
+        bootstrap.onDictionaryInit();
+        checkProp1Constraints(component);
+        checkProp1Constraints(service);
+    }
+
+    @Test
+    public void testBootstrapFromSerializedModel()
+    {
+        DictionaryBootstrap bootstrap = new DictionaryBootstrap();
+        bootstrap.setModels(Collections.singletonList(TEST_MODEL));
+        bootstrap.setDictionaryDAO(dictionaryDAO);
+        bootstrap.setTenantService(new SingleTServiceImpl());
+        bootstrap.setParseParallelism(1);
+        QName model = QName.createQName(TEST_URL, "dictionarydaotest");
+        long checksum = service.getModel(model).getChecksum(ModelDefinition.XMLBindingType.DEFAULT);
+
+        // the first initialisation reads the model, the second compiles a copy of the same serialized model
+        bootstrap.onDictionaryInit();
+        checkProp1Constraints(service);
+        assertEquals(checksum, service.getModel(model).getChecksum(ModelDefinition.XMLBindingType.DEFAULT));
+        bootstrap.onDictionaryInit();
+        checkProp1Constraints(service);
+        assertEquals(checksum, service.getModel(model).getChecksum(ModelDefinition.XMLBindingType.DEFAULT));
+    }
+
+    @Test
+    public void testBootstrapReportsFailedModel()
+    {
+        String badModel = TEST_BUNDLE + ".properties";
+        DictionaryBootstrap bootstrap = new DictionaryBootstrap();
+        bootstrap.setModels(Arrays.asList(TEST_MODEL, badModel, TEST_COMMON_NS_PARENT_MODEL));
+        bootstrap.setDictionaryDAO(dictionaryDAO);
+        bootstrap.setTenantService(new SingleTServiceImpl());
+        bootstrap.setParseParallelism(3);
+        try
+        {
+            bootstrap.onDictionaryInit();
+            fail("Expected the model to fail to import");
+        }
+        catch (DictionaryException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().contains(badModel));
+            assertFalse(e.getMessage(), e.getMessage().contains(TEST_MODEL));
+        }
+    }
+
+    private void checkProp1Constraints(DictionaryService dictionaryService)
+    {
+        PropertyDefinition propDef = dictionaryService.getProperty(QName.createQName(TEST_URL, "prop1"));
+        List<ConstraintDefinition> constraints = propDef.getConstraints();
+        assertEquals(3, constraints.size());
+        assertEquals("dictionarydaotest_base_prop1_anon_0", constraints.get(0).getName().getLocalName());
+        assertEquals("Regex1 title", constraints.get(0).getTitle(dictionaryService));
+        assertEquals("dictionarydaotest_base_prop1_anon_1", constraints.get(1).getName().getLocalName());
+        assertEquals("Prop1 Strlen1 title", constraints.get(1).getTitle(dictionaryService));
+    }
+
     /**
      * ACE-5120: Dictionary should not allow duplication of namespace prefixes
      */
@@ -271,6 +362,44 @@ public class DictionaryDAOTest
         // Localisation of unnamed LoV defined within a specific property are not supported.
     }
 
+    @Test
+    public void testLabelsCached()
+    {
+        final List<String> lookups = new ArrayList<String>();
+        MessageLookup messageLookup = new StaticMessageLookup()
+        {
+            @Override
+            public String getMessage(String messageKey, Locale locale)
+            {
+                lookups.add(messageKey);
+                return super.getMessage(messageKey, locale);
+            }
+        };
+        M2Label.clearLabels();
+        
+        // labels of other lookups are not cached
+        QName type = QName.createQName(TEST_URL, "base");
+        TypeDefinition typeDef = service.getType(type);
+        assertEquals("Base Title", typeDef.getTitle(messageLookup));
+        assertEquals("Base Title", typeDef.getTitle(messageLookup));
+        // the type label is missing, so the class label is looked up as well
+        assertEquals(4, lookups.size());
+        assertEquals("test_dictionarydaotest.type.test_base.title", lookups.get(0));
+        assertEquals("test_dictionarydaotest.class.test_base.title", lookups.get(1));
+        
+        // labels of the static lookup are cached, but missing ones are looked up again
+        MessageLookup staticLookup = new StaticMessageLookup();
+        assertEquals("Base Title", M2Label.getLabel(typeDef.getModel(), staticLookup, "class", type, "title"));
+        assertNull(M2Label.getLabel(typeDef.getModel(), staticLookup, "class", type, "note"));
+        // a bundle registered without the dictionary being told
+        I18NUtil.registerResourceBundle(TEST_LABELS_BUNDLE);
+        assertEquals("Base Note", M2Label.getLabel(typeDef.getModel(), staticLookup, "class", type, "note"));
+        assertEquals("Base Note", M2Label.getLabel(Locale.FRENCH, typeDef.getModel(), staticLookup, "class", type, "note"));
+        
+        M2Label.clearLabels();
+        assertEquals("Base Title", M2Label.getLabel(typeDef.getModel(), staticLookup, "class", type, "title"));
+    }
+
     @Test
     public void testConstraints()
     {   
@@ -337,6 +466,16 @@ public class DictionaryDAOTest
         assertNotNull("Reference constraint has no implementation", constraint);
     }
 
+    @Test
+    public void testCompiledConstraintsHeldByDefinition()
+    {
+        PropertyDefinition propDef = service.getProperty(QName.createQName(TEST_URL, "prop1"));
+        CompiledConstraints compiled = CompiledConstraints.compile(propDef);
+        assertFalse(compiled.isEmpty());
+        assertSame(compiled, CompiledConstraints.compile(propDef));
+        assertSame(compiled, ((CompiledConstraints.Holder) propDef).getCompiledConstraints());
+    }
+
     @Test
     public void testConstraintsOverrideInheritance()
     {
@@ -25,6 +25,9 @@
  */
 package org.alfresco.repo.dictionary.constraint;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -34,8 +37,11 @@ import junit.framework.TestCase;
 
 import org.alfresco.repo.dictionary.DictionaryDAOTest;
 import org.alfresco.service.cmr.dictionary.Constraint;
+import org.alfresco.service.cmr.dictionary.ConstraintDefinition;
 import org.alfresco.service.cmr.dictionary.ConstraintException;
+import org.alfresco.service.cmr.dictionary.DataTypeDefinition;
 import org.alfresco.service.cmr.dictionary.DictionaryException;
+import org.alfresco.service.namespace.QName;
 import org.springframework.extensions.surf.util.I18NUtil;
 
 /**
@@ -320,6 +326,109 @@ public class ConstraintsTest extends TestCase
         evaluate(constraint, "Company Home", false);
     }
     
+    /**
+     * Compiled constraints must accept and reject exactly what the constraints do
+     * when evaluated in turn, and reject with the same exception.
+     */
+    public void testCompiledConstraints() throws Exception
+    {
+        ListOfValuesConstraint listConstraint = new ListOfValuesConstraint();
+        listConstraint.setAllowedValues(Arrays.asList("abc", "DEF", " jkl ", "1", "05", "-7"));
+        listConstraint.setCaseSensitive(false);
+        listConstraint.initialize();
+        StringLengthConstraint lengthConstraint = new StringLengthConstraint();
+        lengthConstraint.setMinLength(1);
+        lengthConstraint.setMaxLength(4);
+        lengthConstraint.initialize();
+        RegexConstraint regexConstraint = new RegexConstraint();
+        regexConstraint.setExpression("[^0-4]*");
+        regexConstraint.setRequiresMatch(true);
+        regexConstraint.initialize();
+        NumericRangeConstraint rangeConstraint = new NumericRangeConstraint();
+        rangeConstraint.setMinValue(-5.0D);
+        rangeConstraint.setMaxValue(+5.0D);
+        rangeConstraint.initialize();
+        DummyConstraint dummyConstraint = new DummyConstraint();
+        dummyConstraint.initialize();
+        
+        List<Constraint> textConstraints = Arrays.<Constraint>asList(
+                listConstraint, lengthConstraint, regexConstraint, new NoOpConstraint());
+        List<Constraint> intConstraints = Arrays.<Constraint>asList(listConstraint, rangeConstraint);
+        List<Object> values = Arrays.<Object>asList(
+                "abc", "ABC", "def", "jkl", " JKL ", "", "abcde", "12", "ghi",
+                1, 5, 7, -7, 1L, 5L, (short) -7, (byte) 1, 1.0D, 5.5D, Double.NaN, "5", "x",
+                DummyEnum.abc, DummyEnum.DEF,
+                Arrays.asList("abc", "DEF"), Arrays.asList("abc", null, "xyz"),
+                Arrays.asList(1, 5, -7), Arrays.asList(1, 2), Collections.emptyList());
+        for (Object value : values)
+        {
+            checkCompiled(textConstraints, DataTypeDefinition.TEXT, value);
+            checkCompiled(intConstraints, DataTypeDefinition.INT, value);
+            checkCompiled(intConstraints, DataTypeDefinition.LONG, value);
+            checkCompiled(Arrays.<Constraint>asList(dummyConstraint, lengthConstraint), DataTypeDefinition.TEXT, value);
+        }
+        
+        // a null always passes
+        compile(textConstraints, DataTypeDefinition.TEXT).evaluate(null);
+        assertTrue("Only no-op constraints should compile to nothing",
+                compile(Arrays.<Constraint>asList(new NoOpConstraint()), DataTypeDefinition.TEXT).isEmpty());
+        
+        // changes to the allowed values are picked up
+        CompiledConstraints compiled = compile(intConstraints, DataTypeDefinition.INT);
+        compiled.evaluate(1);
+        listConstraint.setAllowedValues(Arrays.asList("2", "3"));
+        evaluate(listConstraint, 1, true);
+        try
+        {
+            compiled.evaluate(1);
+            fail("Change to allowed values not picked up");
+        }
+        catch (ConstraintException e)
+        {
+            checkI18NofExceptionMessage(e);
+        }
+    }
+    
+    private CompiledConstraints compile(List<Constraint> constraints, QName dataTypeName)
+    {
+        DataTypeDefinition dataType = mock(DataTypeDefinition.class);
+        when(dataType.getName()).thenReturn(dataTypeName);
+        List<ConstraintDefinition> constraintDefs = new ArrayList<ConstraintDefinition>(constraints.size());
+        for (Constraint constraint : constraints)
+        {
+            ConstraintDefinition constraintDef = mock(ConstraintDefinition.class);
+            when(constraintDef.getConstraint()).thenReturn(constraint);
+            constraintDefs.add(constraintDef);
+        }
+        return CompiledConstraints.compile(dataType, constraintDefs);
+    }
+    
+    private void checkCompiled(List<Constraint> constraints, QName dataTypeName, Object value)
+    {
+        String expected = null;
+        try
+        {
+            for (Constraint constraint : constraints)
+            {
+                constraint.evaluate(value);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            expected = e.getClass().getName() + ": " + e.getMessage();
+        }
+        String actual = null;
+        try
+        {
+            compile(constraints, dataTypeName).evaluate(value);
+        }
+        catch (RuntimeException e)
+        {
+            actual = e.getClass().getName() + ": " + e.getMessage();
+        }
+        assertEquals("Compiled constraints differ for " + value + " of type " + dataTypeName, expected, actual);
+    }
+    
     
     private enum DummyEnum
     {
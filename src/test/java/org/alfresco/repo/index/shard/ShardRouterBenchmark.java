@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.index.shard;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks routing a batch of keys with each key based {@link ShardRouter}.
+ * <p>
+ * Not run with the unit tests, use the <tt>benchmark</tt> profile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(ShardRouterBenchmark.BATCH_SIZE)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardRouterBenchmark
+{
+    static final int BATCH_SIZE = 100000;
+
+    @Param({"ACL_ID", "DB_ID", "DB_ID_RANGE", "DATE", "PROPERTY"})
+    private ShardMethodEnum shardMethod;
+
+    private final long[] keys = new long[BATCH_SIZE];
+    private final int[] shards = new int[BATCH_SIZE];
+    private ShardRouter router;
+
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < BATCH_SIZE; i++)
+        {
+            switch (shardMethod)
+            {
+            case DATE:
+                keys[i] = 1000000000000L + (long) (random.nextDouble() * 700000000000L);
+                break;
+            case PROPERTY:
+                keys[i] = PropertyShardRouter.hash("value-" + random.nextInt(1000));
+                break;
+            default:
+                keys[i] = 1 + random.nextInt(50000000);
+            }
+        }
+        switch (shardMethod)
+        {
+        case ACL_ID:
+            router = new ACLIDModShardRouter(16);
+            break;
+        case DB_ID:
+            router = new MurmurHashShardRouter(ShardMethodEnum.DB_ID, 16);
+            break;
+        case DB_ID_RANGE:
+            router = DBIDRangeShardRouter.parse(new String[] { "0-10000000", "10000000-20000000", "20000000-30000000", "30000000-40000000", "40000000-50000001" });
+            break;
+        case DATE:
+            router = new DateMonthShardRouter(16, 3);
+            break;
+        default:
+            router = new PropertyShardRouter(16);
+        }
+    }
+
+    @Benchmark
+    public int[] getShards()
+    {
+        router.getShards(keys, shards);
+        return shards;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.index.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ShardRouter} implementations.
+ */
+public class ShardRouterTest
+{
+    private static final int BATCH_SIZE = 10000;
+
+    @Test
+    public void murmurHashMatchesReference()
+    {
+        Assert.assertEquals(613153351, Murmur3.hash("hello", 0));
+        Assert.assertEquals(referenceHash("", Murmur3.SEED), Murmur3.hash("", Murmur3.SEED));
+
+        Random random = new Random(42);
+        long[] values = { 0, 1, -1, 9, 10, 999, 1000, 1234567, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1 };
+        for (long value : values)
+        {
+            Assert.assertEquals(Long.toString(value), referenceHash(Long.toString(value), Murmur3.SEED), Murmur3.hashDecimal(value, Murmur3.SEED));
+        }
+        for (int i = 0; i < 10000; i++)
+        {
+            long value = random.nextLong() >> random.nextInt(64);
+            Assert.assertEquals(referenceHash(Long.toString(value), Murmur3.SEED), Murmur3.hashDecimal(value, Murmur3.SEED));
+        }
+
+        String[] strings = { "a", "ab", "abc", "abcd", "abcde", "café", "€100", "😀 smile", "xĀࠀ￿" };
+        for (String string : strings)
+        {
+            Assert.assertEquals(string, referenceHash(string, Murmur3.SEED), Murmur3.hash(string, Murmur3.SEED));
+            Assert.assertEquals(string, referenceHash(string, Murmur3.SEED), Murmur3.hash(new StringBuilder(string), Murmur3.SEED));
+        }
+    }
+
+    @Test
+    public void murmurHashRouting()
+    {
+        ShardRouter router = new MurmurHashShardRouter(ShardMethodEnum.DB_ID, 7);
+        int[] counts = new int[7];
+        for (long dbId = 1; dbId <= 70000; dbId++)
+        {
+            int shard = router.getShard(dbId);
+            Assert.assertEquals(Math.abs(referenceHash(Long.toString(dbId), 77)) % 7, shard);
+            counts[shard]++;
+        }
+        for (int count : counts)
+        {
+            Assert.assertTrue("Unbalanced: " + count, count > 9000 && count < 11000);
+        }
+    }
+
+    @Test
+    public void aclIdModRouting()
+    {
+        ShardRouter router = new ACLIDModShardRouter(4);
+        Assert.assertEquals(0, router.getShard(0));
+        Assert.assertEquals(1, router.getShard(5));
+        Assert.assertEquals(3, router.getShard(11));
+    }
+
+    @Test
+    public void dbIdRangeRouting()
+    {
+        DBIDRangeShardRouter router = DBIDRangeShardRouter.parse(new String[] { "1000-2000", "0-1000", "3000-4000" });
+        Assert.assertEquals(3, router.getNumberOfShards());
+        Assert.assertEquals(1, router.getShard(0));
+        Assert.assertEquals(1, router.getShard(999));
+        Assert.assertEquals(0, router.getShard(1000));
+        Assert.assertEquals(0, router.getShard(1999));
+        Assert.assertEquals(ShardRouter.NO_SHARD, router.getShard(2500));
+        Assert.assertEquals(2, router.getShard(3999));
+        Assert.assertEquals(ShardRouter.NO_SHARD, router.getShard(4000));
+        Assert.assertEquals(ShardRouter.NO_SHARD, router.getShard(-1));
+
+        long[] dbIds = { 1, 2, 1500, 1501, 2500, 3000, 5, 3001 };
+        int[] shards = new int[dbIds.length];
+        router.getShards(dbIds, shards);
+        for (int i = 0; i < dbIds.length; i++)
+        {
+            Assert.assertEquals(router.getShard(dbIds[i]), shards[i]);
+        }
+
+        try
+        {
+            DBIDRangeShardRouter.parse(new String[] { "0-1000", "500-1500" });
+            Assert.fail("Overlapping ranges should be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void dateRouting()
+    {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        Random random = new Random(42);
+        DateMonthShardRouter router = new DateMonthShardRouter(5, 3);
+        for (int i = 0; i < 10000; i++)
+        {
+            long time = (long) (random.nextDouble() * 8000000000000L) - 1000000000000L;
+            calendar.setTimeInMillis(time);
+            long months = calendar.get(Calendar.YEAR) * 12L + calendar.get(Calendar.MONTH);
+            Assert.assertEquals(Long.toString(time), months, DateMonthShardRouter.getMonths(time));
+            Assert.assertEquals((int) ((months / 3) % 5), router.getShard(time));
+        }
+    }
+
+    @Test
+    public void propertyRouting()
+    {
+        PropertyShardRouter router = new PropertyShardRouter(6);
+        for (String value : new String[] { "", "alfresco", "café", "😀" })
+        {
+            int expected = Math.abs(referenceHash(value, 77)) % 6;
+            Assert.assertEquals(expected, router.getShard(value));
+            Assert.assertEquals(expected, router.getShard(PropertyShardRouter.hash(value)));
+        }
+    }
+
+    @Test
+    public void routerForFloc()
+    {
+        Floc floc = new Floc();
+        floc.setNumberOfShards(4);
+
+        floc.setShardMethod(ShardMethodEnum.DB_ID);
+        Assert.assertEquals(ShardMethodEnum.DB_ID, ShardRouters.getRouter(floc).getShardMethod());
+        floc.setShardMethod(ShardMethodEnum.ACL_ID);
+        Assert.assertEquals(ShardMethodEnum.ACL_ID, ShardRouters.getRouter(floc).getShardMethod());
+        floc.setShardMethod(ShardMethodEnum.MOD_ACL_ID);
+        Assert.assertTrue(ShardRouters.getRouter(floc) instanceof ACLIDModShardRouter);
+        floc.setShardMethod(ShardMethodEnum.PROPERTY);
+        Assert.assertTrue(ShardRouters.getRouter(floc) instanceof PropertyShardRouter);
+
+        HashMap<String, String> properties = new HashMap<String, String>();
+        properties.put(ShardRouters.PROP_DATE_GROUPING, "12");
+        floc.setPropertyBag(properties);
+        floc.setShardMethod(ShardMethodEnum.DATE);
+        Assert.assertEquals(12, ((DateMonthShardRouter) ShardRouters.getRouter(floc)).getGrouping());
+
+        floc.setShardMethod(ShardMethodEnum.LAST_REGISTERED_INDEXING_SHARD);
+        try
+        {
+            ShardRouters.getRouter(floc);
+            Assert.fail("LRIS is not routed by key");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void batchRoutingMatchesSingleKeys()
+    {
+        Random random = new Random(42);
+        long[] dbIds = new long[BATCH_SIZE];
+        long[] times = new long[BATCH_SIZE];
+        long[] hashes = new long[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++)
+        {
+            dbIds[i] = 1 + random.nextInt(50000000);
+            times[i] = 1000000000000L + (long) (random.nextDouble() * 700000000000L);
+            hashes[i] = PropertyShardRouter.hash("value-" + random.nextInt(1000));
+        }
+
+        checkBatch(new ACLIDModShardRouter(16), dbIds);
+        checkBatch(new MurmurHashShardRouter(ShardMethodEnum.DB_ID, 16), dbIds);
+        checkBatch(DBIDRangeShardRouter.parse(new String[] { "0-10000000", "10000000-20000000", "20000000-30000000", "30000000-40000000", "40000000-50000001" }), dbIds);
+        checkBatch(new DateMonthShardRouter(16, 3), times);
+        checkBatch(new PropertyShardRouter(16), hashes);
+    }
+
+    private void checkBatch(ShardRouter router, long[] keys)
+    {
+        int[] shards = new int[keys.length];
+        router.getShards(keys, shards);
+        for (int i = 0; i < keys.length; i++)
+        {
+            Assert.assertEquals(router + " key " + keys[i], router.getShard(keys[i]), shards[i]);
+            Assert.assertTrue(shards[i] >= 0 && shards[i] < router.getNumberOfShards());
+        }
+    }
+
+    /**
+     * Textbook MurmurHash3 x86 32 over the UTF-8 bytes of a String.
+     */
+    private static int referenceHash(String value, int seed)
+    {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        int h = seed;
+        int blocks = data.length / 4;
+        for (int i = 0; i < blocks; i++)
+        {
+            int k = (data[i * 4] & 0xFF) | ((data[i * 4 + 1] & 0xFF) << 8) | ((data[i * 4 + 2] & 0xFF) << 16) | (data[i * 4 + 3] << 24);
+            k *= 0xcc9e2d51;
+            k = Integer.rotateLeft(k, 15);
+            k *= 0x1b873593;
+            h ^= k;
+            h = Integer.rotateLeft(h, 13);
+            h = h * 5 + 0xe6546b64;
+        }
+        int k = 0;
+        int tail = blocks * 4;
+        switch (data.length & 3)
+        {
+        case 3:
+            k ^= (data[tail + 2] & 0xFF) << 16;
+        case 2:
+            k ^= (data[tail + 1] & 0xFF) << 8;
+        case 1:
+            k ^= (data[tail] & 0xFF);
+            k *= 0xcc9e2d51;
+            k = Integer.rotateLeft(k, 15);
+            k *= 0x1b873593;
+            h ^= k;
+        }
+        h ^= data.length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
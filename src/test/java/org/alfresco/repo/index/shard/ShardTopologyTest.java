@@ -0,0 +1,394 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.index.shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ShardTopology}, driven by a simulated cluster with a virtual clock.
+ */
+public class ShardTopologyTest
+{
+    private static final Log logger = LogFactory.getLog(ShardTopologyTest.class);
+
+    private static final StoreRef STORE = new StoreRef("workspace", "SpacesStore");
+    private static final StoreRef OTHER_STORE = new StoreRef("archive", "SpacesStore");
+
+    private static final int SHARDS = 4;
+    private static final int REPLICAS = 3;
+
+    private Floc floc;
+    private SimulatedTopology topology;
+
+    @Before
+    public void setUp()
+    {
+        floc = new Floc();
+        floc.setNumberOfShards(SHARDS);
+        floc.setShardMethod(ShardMethodEnum.DB_ID);
+        HashSet<StoreRef> storeRefs = new HashSet<StoreRef>();
+        storeRefs.add(STORE);
+        floc.setStoreRefs(storeRefs);
+
+        topology = new SimulatedTopology(42);
+        topology.setMaxHeartbeatAge(30000);
+        topology.setMaxTransactionLag(100);
+    }
+
+    @Test
+    public void everyShardIsQueried()
+    {
+        for (int shard = 0; shard < SHARDS; shard++)
+        {
+            for (int replica = 0; replica < REPLICAS; replica++)
+            {
+                topology.update(state(shard, replica, 1000));
+            }
+        }
+
+        Map<Shard, ShardInstance> chosen = topology.getShardsToQuery(floc, STORE);
+        Assert.assertEquals(SHARDS, chosen.size());
+        int expected = 0;
+        for (Map.Entry<Shard, ShardInstance> entry : chosen.entrySet())
+        {
+            Assert.assertEquals(expected++, entry.getKey().getInstance());
+            Assert.assertEquals(entry.getKey(), entry.getValue().getShard());
+        }
+
+        Assert.assertTrue(topology.getShardsToQuery(floc, OTHER_STORE).isEmpty());
+        Assert.assertEquals(1, topology.getFlocs(STORE).size());
+        Assert.assertTrue(topology.getFlocs(OTHER_STORE).isEmpty());
+    }
+
+    @Test
+    public void staleReplicasAreSkipped()
+    {
+        topology.update(state(0, 0, 1000));
+        topology.update(state(0, 1, 500));
+        for (int i = 0; i < 100; i++)
+        {
+            Assert.assertEquals(0, topology.getShardsToQuery(floc, STORE).values().iterator().next().getPort());
+        }
+
+        // the up to date replica stops reporting - the lagging one is better than nothing
+        topology.advance(31000);
+        topology.update(state(0, 1, 600));
+        Assert.assertEquals(1, topology.getShardsToQuery(floc, STORE).values().iterator().next().getPort());
+
+        // no live replica at all
+        topology.advance(31000);
+        Assert.assertTrue(topology.getShardsToQuery(floc, STORE).isEmpty());
+    }
+
+    @Test
+    public void removedReplicasAreForgotten()
+    {
+        ShardState state = state(0, 0, 1000);
+        topology.update(state);
+        Assert.assertEquals(1, topology.getReplicas(state.getShardInstance().getShard()).size());
+
+        topology.remove(state.getShardInstance());
+        Assert.assertTrue(topology.getReplicas(state.getShardInstance().getShard()).isEmpty());
+        Assert.assertTrue(topology.getShardsToQuery(floc, STORE).isEmpty());
+    }
+
+    @Test
+    public void latencyIsAveraged()
+    {
+        ShardState state = state(0, 0, 1000);
+        topology.update(state);
+        topology.setLatencyDecay(0.5);
+        Assert.assertEquals(-1, topology.getLatency(state.getShardInstance()), 0);
+
+        topology.queryStarted(state.getShardInstance());
+        topology.queryCompleted(state.getShardInstance(), 100);
+        Assert.assertEquals(100, topology.getLatency(state.getShardInstance()), 0.001);
+        topology.queryStarted(state.getShardInstance());
+        topology.queryCompleted(state.getShardInstance(), 200);
+        Assert.assertEquals(150, topology.getLatency(state.getShardInstance()), 0.001);
+    }
+
+    /**
+     * Simulates a cluster where, in every shard, replica 0 is healthy, replica 1 is five
+     * times slower, replica 2 is healthy but falls behind on indexing part way through, and in
+     * shard 0 replica 3 dies part way through.
+     */
+    @Test
+    public void simulatedCluster()
+    {
+        topology.setMaxHeartbeatAge(3000);
+        Simulation simulation = new Simulation();
+        simulation.addReplica(0, 3, 10);
+        for (int shard = 0; shard < SHARDS; shard++)
+        {
+            simulation.addReplica(shard, 0, 10);
+            simulation.addReplica(shard, 1, 50);
+            simulation.addReplica(shard, 2, 10);
+        }
+
+        simulation.run(60000, 20);
+        int[][] before = simulation.snapshotCounts();
+
+        // replica 2 falls behind everywhere and replica 3 of shard 0 stops reporting
+        simulation.replica(0, 3).dead = true;
+        for (int shard = 0; shard < SHARDS; shard++)
+        {
+            simulation.replica(shard, 2).lagging = true;
+        }
+        simulation.run(60000, 20);
+        int[][] after = simulation.snapshotCounts();
+
+        for (int shard = 0; shard < SHARDS; shard++)
+        {
+            int healthy = before[shard][0];
+            int slow = before[shard][1];
+            Assert.assertTrue("Slow replica of shard " + shard + " got " + slow + " queries vs " + healthy, slow * 2 < healthy);
+
+            // until the lag exceeds the maximum the replica is still fresh
+            int lagging = after[shard][2] - before[shard][2];
+            int total = sum(after[shard]) - sum(before[shard]);
+            Assert.assertTrue("Lagging replica of shard " + shard + " got " + lagging + " of " + total + " queries", lagging * 20 < total);
+        }
+        // until its heartbeat expires the replica is still live
+        int dead = after[0][3] - before[0][3];
+        int total = sum(after[0]) - sum(before[0]);
+        Assert.assertTrue("Dead replica got " + dead + " of " + total + " queries", dead * 10 < total);
+        Assert.assertEquals(0, simulation.missedShards);
+
+        if (logger.isInfoEnabled())
+        {
+            logger.info("Simulated " + simulation.queries + " queries, mean latency " + (simulation.totalLatency / simulation.queries)
+                    + "ms, queries per replica before " + toString(before) + ", after " + toString(after));
+        }
+    }
+
+    private static int sum(int[] counts)
+    {
+        int sum = 0;
+        for (int count : counts)
+        {
+            sum += count;
+        }
+        return sum;
+    }
+
+    private static String toString(int[][] counts)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int[] shard : counts)
+        {
+            builder.append(Arrays.toString(shard));
+        }
+        return builder.toString();
+    }
+
+    private ShardState state(int shard, int replica, long lastIndexedTxId)
+    {
+        return ShardStateBuilder.shardState()
+                .withLastUpdated(topology.currentTimeMillis())
+                .withLastIndexedTxId(lastIndexedTxId)
+                .withShardInstance()
+                    .withBaseUrl("/solr/shard" + shard)
+                    .withHostName("host" + replica)
+                    .withPort(replica)
+                    .withShard()
+                        .withInstance(shard)
+                        .withFloc(floc)
+                    .endShard()
+                .endShardInstance()
+                .build();
+    }
+
+    /**
+     * Topology with a virtual clock and a seeded random source.
+     */
+    private static class SimulatedTopology extends ShardTopology
+    {
+        private final Random random;
+        private long now = 1000000;
+
+        private SimulatedTopology(long seed)
+        {
+            random = new Random(seed);
+        }
+
+        private void advance(long millis)
+        {
+            now += millis;
+        }
+
+        @Override
+        protected long currentTimeMillis()
+        {
+            return now;
+        }
+
+        @Override
+        protected int nextInt(int bound)
+        {
+            return random.nextInt(bound);
+        }
+    }
+
+    private static class SimulatedReplica
+    {
+        private final ShardState state;
+        private final long baseLatency;
+        private boolean lagging;
+        private boolean dead;
+        private int inFlight;
+        private int queries;
+
+        private SimulatedReplica(ShardState state, long baseLatency)
+        {
+            this.state = state;
+            this.baseLatency = baseLatency;
+        }
+    }
+
+    private static class PendingQuery
+    {
+        private final SimulatedReplica replica;
+        private final long completesAt;
+        private final long latency;
+
+        private PendingQuery(SimulatedReplica replica, long completesAt, long latency)
+        {
+            this.replica = replica;
+            this.completesAt = completesAt;
+            this.latency = latency;
+        }
+    }
+
+    /**
+     * Discrete time simulation: every millisecond due queries complete, then every query
+     * interval a query is fanned out. A replica's latency grows with its queries in flight. Indexing
+     * progresses and healthy replicas report their state every second.
+     */
+    private class Simulation
+    {
+        private final Map<ShardInstance, SimulatedReplica> replicas = new HashMap<ShardInstance, SimulatedReplica>();
+        private final List<PendingQuery> pending = new ArrayList<PendingQuery>();
+        private long txId = 1000;
+        private int queries;
+        private long totalLatency;
+        private int missedShards;
+
+        private void addReplica(int shard, int replica, long baseLatency)
+        {
+            ShardState state = state(shard, replica, txId);
+            replicas.put(state.getShardInstance(), new SimulatedReplica(state, baseLatency));
+            topology.update(state);
+        }
+
+        private SimulatedReplica replica(int shard, int replica)
+        {
+            for (SimulatedReplica simulated : replicas.values())
+            {
+                if (simulated.state.getShardInstance().getShard().getInstance() == shard && simulated.state.getShardInstance().getPort() == replica)
+                {
+                    return simulated;
+                }
+            }
+            throw new IllegalArgumentException(shard + "/" + replica);
+        }
+
+        private int[][] snapshotCounts()
+        {
+            int[][] counts = new int[SHARDS][REPLICAS + 1];
+            for (SimulatedReplica replica : replicas.values())
+            {
+                counts[replica.state.getShardInstance().getShard().getInstance()][replica.state.getShardInstance().getPort()] = replica.queries;
+            }
+            return counts;
+        }
+
+        private void run(long duration, int queryInterval)
+        {
+            for (long tick = 0; tick < duration; tick++)
+            {
+                topology.advance(1);
+                long now = topology.currentTimeMillis();
+
+                for (Iterator<PendingQuery> iterator = pending.iterator(); iterator.hasNext();)
+                {
+                    PendingQuery query = iterator.next();
+                    if (query.completesAt <= now)
+                    {
+                        iterator.remove();
+                        query.replica.inFlight--;
+                        topology.queryCompleted(query.replica.state.getShardInstance(), query.latency);
+                    }
+                }
+
+                if (tick % 1000 == 0)
+                {
+                    txId += 50;
+                    for (SimulatedReplica replica : replicas.values())
+                    {
+                        if (!replica.dead)
+                        {
+                            replica.state.setLastUpdated(now);
+                            replica.state.setLastIndexedTxId(replica.lagging ? replica.state.getLastIndexedTxId() : txId);
+                            topology.update(replica.state);
+                        }
+                    }
+                }
+
+                if (tick % queryInterval == 0)
+                {
+                    Map<Shard, ShardInstance> chosen = topology.getShardsToQuery(floc, STORE);
+                    missedShards += SHARDS - chosen.size();
+                    for (ShardInstance instance : chosen.values())
+                    {
+                        SimulatedReplica replica = replicas.get(instance);
+                        long latency = replica.baseLatency * (1 + replica.inFlight);
+                        replica.inFlight++;
+                        replica.queries++;
+                        queries++;
+                        totalLatency += latency;
+                        topology.queryStarted(instance);
+                        pending.add(new PendingQuery(replica, now + latency, latency));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.search;
+
+import java.util.Locale;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * @see org.alfresco.repo.search.MLAnalysisMode
+ */
+public class MLAnalysisModeTest extends TestCase
+{
+    public void testWildcardLocales()
+    {
+        Set<Locale> locales = MLAnalysisMode.getLocales(MLAnalysisMode.LOCALE_AND_ALL_CONTAINED_LOCALES, Locale.ENGLISH, true);
+        assertTrue(locales.contains(Locale.ENGLISH));
+        assertTrue(locales.contains(new Locale("en", "*", "")));
+
+        locales = MLAnalysisMode.getLocales(MLAnalysisMode.LOCALE_ONLY, Locale.UK, true);
+        assertEquals(1, locales.size());
+        assertTrue(locales.contains(Locale.UK));
+    }
+
+    public void testExpandedLocales()
+    {
+        Set<Locale> locales = MLAnalysisMode.getLocales(MLAnalysisMode.ALL_LANGUAGES, Locale.UK, false);
+        assertTrue(locales.contains(Locale.US));
+        assertTrue(locales.contains(Locale.ENGLISH));
+        for (Locale locale : locales)
+        {
+            assertEquals("en", locale.getLanguage());
+        }
+
+        locales = MLAnalysisMode.getLocales(MLAnalysisMode.ALL_COUNTRIES, Locale.UK, false);
+        assertTrue(locales.contains(Locale.UK));
+        for (Locale locale : locales)
+        {
+            assertEquals("en", locale.getLanguage());
+            assertEquals("GB", locale.getCountry());
+        }
+    }
+
+    public void testCachedLocales()
+    {
+        Set<Locale> locales = MLAnalysisMode.getLocales(MLAnalysisMode.ALL_LANGUAGES, Locale.FRENCH, false);
+        assertSame(locales, MLAnalysisMode.getLocales(MLAnalysisMode.ALL_LANGUAGES, new Locale("fr"), false));
+        assertNotSame(locales, MLAnalysisMode.getLocales(MLAnalysisMode.ALL_LANGUAGES, Locale.FRENCH, true));
+        try
+        {
+            locales.add(Locale.GERMAN);
+            fail("The locale sets are shared and must not be modified");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // expected
+        }
+    }
+}
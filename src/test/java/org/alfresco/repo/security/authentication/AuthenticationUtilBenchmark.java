@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.authentication;
+
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks nested <tt>runAs</tt> calls and pushing/popping the authentication of {@link AuthenticationUtil}.
+ * <p>
+ * Not run with the unit tests, use the <tt>benchmark</tt> profile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthenticationUtilBenchmark
+{
+    @Param({"1", "3", "5"})
+    private int depth;
+
+    @Setup
+    public void setUp()
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser("userA");
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        AuthenticationUtil.clearCurrentSecurityContext();
+    }
+
+    @Benchmark
+    public Integer nestedRunAs()
+    {
+        return runAs(depth);
+    }
+
+    @Benchmark
+    public String pushAndPopAuthentication()
+    {
+        for (int i = 0; i < depth; i++)
+        {
+            AuthenticationUtil.pushAuthentication();
+            AuthenticationUtil.setRunAsUserSystem();
+        }
+        for (int i = 0; i < depth; i++)
+        {
+            AuthenticationUtil.popAuthentication();
+        }
+        return AuthenticationUtil.getRunAsUser();
+    }
+
+    private static Integer runAs(final int depth)
+    {
+        if (depth == 0)
+        {
+            return 0;
+        }
+        // alternate between the system user and another user so that every level switches context
+        RunAsWork<Integer> work = new RunAsWork<Integer>()
+        {
+            @Override
+            public Integer doWork() throws Exception
+            {
+                return runAs(depth - 1) + 1;
+            }
+        };
+        return depth % 2 == 0 ? AuthenticationUtil.runAs(work, "userB") : AuthenticationUtil.runAsSystem(work);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.authentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
+import org.alfresco.repo.tenant.TenantContextHolder;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the context switching of {@link AuthenticationUtil}.
+ */
+public class AuthenticationUtilTest
+{
+    @After
+    public void tearDown()
+    {
+        AuthenticationUtil.clearCurrentSecurityContext();
+    }
+
+    @Test
+    public void testNestedRunAsRestoresContext()
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser("userA");
+        String runAsUser = AuthenticationUtil.runAsSystem(new RunAsWork<String>()
+        {
+            @Override
+            public String doWork() throws Exception
+            {
+                return AuthenticationUtil.runAsSystem(new RunAsWork<String>()
+                {
+                    @Override
+                    public String doWork() throws Exception
+                    {
+                        return AuthenticationUtil.runAs(new RunAsWork<String>()
+                        {
+                            @Override
+                            public String doWork() throws Exception
+                            {
+                                assertEquals("userA", AuthenticationUtil.getFullyAuthenticatedUser());
+                                return AuthenticationUtil.getRunAsUser();
+                            }
+                        }, "userB");
+                    }
+                });
+            }
+        });
+        assertEquals("userB", runAsUser);
+        assertEquals("userA", AuthenticationUtil.getFullyAuthenticatedUser());
+        assertEquals("userA", AuthenticationUtil.getRunAsUser());
+    }
+
+    @Test
+    public void testRunAsWithoutAuthentication()
+    {
+        String runAsUser = AuthenticationUtil.runAsSystem(new RunAsWork<String>()
+        {
+            @Override
+            public String doWork() throws Exception
+            {
+                return AuthenticationUtil.getRunAsUser();
+            }
+        });
+        assertEquals(AuthenticationUtil.getSystemUserName(), runAsUser);
+        assertNull(AuthenticationUtil.getFullAuthentication());
+    }
+
+    @Test
+    public void testPushAndPopAuthentication()
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser("userA");
+        AuthenticationUtil.pushAuthentication();
+        for (int i = 0; i < 10; i++)
+        {
+            AuthenticationUtil.setFullyAuthenticatedUser("user" + i);
+            AuthenticationUtil.pushAuthentication();
+        }
+        for (int i = 9; i >= 0; i--)
+        {
+            AuthenticationUtil.popAuthentication();
+            assertEquals("user" + i, AuthenticationUtil.getFullyAuthenticatedUser());
+        }
+        AuthenticationUtil.popAuthentication();
+        assertEquals("userA", AuthenticationUtil.getFullyAuthenticatedUser());
+
+        AuthenticationUtil.clearCurrentSecurityContext();
+        AuthenticationUtil.pushAuthentication();
+        AuthenticationUtil.setFullyAuthenticatedUser("userA");
+        AuthenticationUtil.popAuthentication();
+        assertNull(AuthenticationUtil.getFullAuthentication());
+        assertNull(TenantContextHolder.getTenantDomain());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.authentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.repo.tenant.TenantContextHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see ContextCarrier
+ */
+public class ContextCarrierTest
+{
+    private ExecutorService executor;
+
+    @Before
+    public void setUp()
+    {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        AuthenticationUtil.clearCurrentSecurityContext();
+    }
+
+    @Test
+    public void testContextIsCarriedAndDoesNotLeak() throws Exception
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser("userA");
+        AuthenticationUtil.setRunAsUser("userB");
+        TenantContextHolder.setTenantDomain("acme.com");
+        InMemoryTicketComponentImpl.setCurrentTicketString("TICKET_123");
+
+        String carried = CompletableFuture.supplyAsync(ContextCarrier.capture().wrapSupplier(() ->
+                AuthenticationUtil.getFullyAuthenticatedUser() + "/" + AuthenticationUtil.getRunAsUser() + "/" +
+                TenantContextHolder.getTenantDomain() + "/" + InMemoryTicketComponentImpl.getCurrentTicketString()), executor).get();
+        assertEquals("userA/userB/acme.com/TICKET_123", carried);
+
+        // the same pooled thread has nothing left behind
+        String leaked = CompletableFuture.supplyAsync(() ->
+                AuthenticationUtil.getFullAuthentication() + "/" + TenantContextHolder.getTenantDomain() + "/" +
+                InMemoryTicketComponentImpl.getCurrentTicketString(), executor).get();
+        assertEquals("null/null/null", leaked);
+    }
+
+    @Test
+    public void testPropagatingExecutorRestoresRunningThreadContext() throws Exception
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser("userA");
+        ContextCarrier carrier = ContextCarrier.capture();
+        AuthenticationUtil.clearCurrentSecurityContext();
+
+        AuthenticationUtil.setFullyAuthenticatedUser("userC");
+        String user = carrier.run(() -> AuthenticationUtil.getFullyAuthenticatedUser());
+        assertEquals("userA", user);
+        assertEquals("userC", AuthenticationUtil.getFullyAuthenticatedUser());
+
+        String propagated = CompletableFuture.supplyAsync(() -> AuthenticationUtil.getFullyAuthenticatedUser(),
+                ContextCarrier.propagating(executor)).get();
+        assertEquals("userC", propagated);
+
+        AuthenticationUtil.clearCurrentSecurityContext();
+        assertNull(CompletableFuture.supplyAsync(() -> AuthenticationUtil.getFullAuthentication(), executor).get());
+    }
+}
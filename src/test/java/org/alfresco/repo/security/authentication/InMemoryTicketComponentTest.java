@@ -1,12 +1,20 @@
 package org.alfresco.repo.security.authentication;
 
+import org.alfresco.repo.cache.MemoryCache;
+import org.alfresco.repo.cache.SimpleCache;
 import org.alfresco.service.cmr.repository.datatype.Duration;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -57,6 +65,171 @@ public class InMemoryTicketComponentTest
         checkInvalidExpireDateParameter(validDuration, expireMode, randomUserName);
     }
 
+    @Test
+    public void testCountAndInvalidateTickets()
+    {
+        SimpleCache<String, InMemoryTicketComponentImpl.Ticket> ticketsCache = new MemoryCache<>();
+        InMemoryTicketComponentImpl ticketComponent = newTicketComponent(ticketsCache);
+
+        // an expired ticket already in the (shared) cache
+        InMemoryTicketComponentImpl.Ticket expired = new InMemoryTicketComponentImpl.Ticket(
+                InMemoryTicketComponentImpl.ExpiryMode.AFTER_FIXED_TIME, new Date(System.currentTimeMillis() - 1000L), "userC", new Duration("PT1H"));
+        ticketsCache.put(expired.getTicketId(), expired);
+
+        ticketComponent.getNewTicket("userA");
+        ticketComponent.getNewTicket("userA");
+        String ticketB = ticketComponent.getNewTicket("userB");
+
+        assertEquals(4, ticketComponent.countTickets(false));
+        assertEquals(3, ticketComponent.countTickets(true));
+        assertEquals(new HashSet<>(Arrays.asList("userA", "userB")), ticketComponent.getUsersWithTickets(true));
+        assertEquals(new HashSet<>(Arrays.asList("userA", "userB", "userC")), ticketComponent.getUsersWithTickets(false));
+
+        assertEquals(1, ticketComponent.invalidateTickets(true));
+        assertEquals(3, ticketComponent.countTickets(false));
+
+        ticketComponent.invalidateTicketByUser("userA");
+        assertEquals(1, ticketComponent.countTickets(true));
+        assertEquals(1, ticketsCache.getKeys().size());
+        assertEquals("userB", ticketComponent.validateTicket(ticketB));
+
+        ticketComponent.invalidateTicketById(ticketB);
+        assertEquals(0, ticketComponent.countTickets(false));
+        assertEquals(0, ticketsCache.getKeys().size());
+    }
+
+    @Test
+    public void testInvalidateTicketByUserWithSharedCache()
+    {
+        SimpleCache<String, InMemoryTicketComponentImpl.Ticket> ticketsCache = new MemoryCache<>();
+        InMemoryTicketComponentImpl ticketComponent = newTicketComponent(ticketsCache);
+
+        String ticketA = ticketComponent.getNewTicket("userA");
+        ticketComponent.getNewTicket("userB");
+        assertEquals(2, ticketComponent.countTickets(true));
+
+        // a ticket issued by another member of the cluster, never seen by this component
+        InMemoryTicketComponentImpl.Ticket remote = new InMemoryTicketComponentImpl.Ticket(
+                InMemoryTicketComponentImpl.ExpiryMode.AFTER_FIXED_TIME, new Date(System.currentTimeMillis() + 3600000L), "userA", new Duration("PT1H"));
+        ticketsCache.put(remote.getTicketId(), remote);
+
+        ticketComponent.invalidateTicketByUser("userA");
+        assertNull(ticketsCache.get(remote.getTicketId()));
+        assertEquals(1, ticketsCache.getKeys().size());
+        assertEquals(1, ticketComponent.countTickets(false));
+        assertEquals(new HashSet<>(Arrays.asList("userB")), ticketComponent.getUsersWithTickets(true));
+        try
+        {
+            ticketComponent.validateTicket(ticketA);
+            fail("ticket of an invalidated user should not validate");
+        }
+        catch (AuthenticationException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCountsFollowTicketsCache()
+    {
+        SimpleCache<String, InMemoryTicketComponentImpl.Ticket> ticketsCache = new MemoryCache<>();
+        InMemoryTicketComponentImpl ticketComponent = newTicketComponent(ticketsCache);
+
+        ticketComponent.getNewTicket("userA");
+        ticketComponent.getNewTicket("userB");
+        assertEquals(2, ticketComponent.countTickets(true));
+
+        // evicted from the cache, or removed by another member of the cluster
+        for (String key : new HashSet<>(ticketsCache.getKeys()))
+        {
+            if ("userA".equals(ticketsCache.get(key).getUserName()))
+            {
+                ticketsCache.remove(key);
+            }
+        }
+
+        assertEquals(1, ticketComponent.countTickets(true));
+        assertEquals(1, ticketComponent.countTickets(false));
+        assertEquals(new HashSet<>(Arrays.asList("userB")), ticketComponent.getUsersWithTickets(false));
+        assertEquals(0, ticketComponent.invalidateTickets(true));
+    }
+
+    private InMemoryTicketComponentImpl newTicketComponent(SimpleCache<String, InMemoryTicketComponentImpl.Ticket> ticketsCache)
+    {
+        InMemoryTicketComponentImpl ticketComponent = new InMemoryTicketComponentImpl();
+        ticketComponent.setTicketsCache(ticketsCache);
+        ticketComponent.setUsernameToTicketIdCache(new MemoryCache<>());
+        ticketComponent.setUseSingleTicketPerUser(false);
+        ticketComponent.setTicketsExpire(true);
+        ticketComponent.setExpiryMode(InMemoryTicketComponentImpl.ExpiryMode.AFTER_FIXED_TIME.name());
+        ticketComponent.setValidDuration("PT1H");
+        return ticketComponent;
+    }
+
+    @Test
+    public void testCoarseSlidingExpiry()
+    {
+        SimpleCache<String, InMemoryTicketComponentImpl.Ticket> ticketsCache = new MemoryCache<>();
+        InMemoryTicketComponentImpl ticketComponent = new InMemoryTicketComponentImpl();
+        ticketComponent.setTicketsCache(ticketsCache);
+        ticketComponent.setUsernameToTicketIdCache(new MemoryCache<>());
+        ticketComponent.setTicketsExpire(true);
+        ticketComponent.setExpiryMode(InMemoryTicketComponentImpl.ExpiryMode.AFTER_INACTIVITY.name());
+        ticketComponent.setValidDuration("PT1H");
+        ticketComponent.setExpiryRefreshFraction(0.75);
+
+        // 35 minutes into the hour: due for renewal by the standard rule, but not before 45 minutes have passed
+        InMemoryTicketComponentImpl.Ticket ticket = new InMemoryTicketComponentImpl.Ticket(
+                InMemoryTicketComponentImpl.ExpiryMode.AFTER_INACTIVITY, new Date(System.currentTimeMillis() + 25 * 60000L), "userA", new Duration("PT1H"));
+        ticketsCache.put(ticket.getTicketId(), ticket);
+        String ticketString = InMemoryTicketComponentImpl.GRANTED_AUTHORITY_TICKET_PREFIX + ticket.getTicketId();
+
+        assertEquals("userA", ticketComponent.validateTicket(ticketString));
+        assertSame(ticket, ticketsCache.get(ticket.getTicketId()));
+        assertEquals(1, ticketComponent.getAvoidedTicketWrites());
+
+        ticketComponent.setExpiryRefreshFraction(0.5);
+        assertEquals("userA", ticketComponent.validateTicket(ticketString));
+        InMemoryTicketComponentImpl.Ticket renewed = ticketsCache.get(ticket.getTicketId());
+        assertNotSame(ticket, renewed);
+        assertTrue(renewed.getExpiryDate().after(ticket.getExpiryDate()));
+        assertEquals(1, ticketComponent.getAvoidedTicketWrites());
+    }
+
+    @Test
+    public void testCoarseSlidingExpiryNeverRenewsEarly()
+    {
+        SimpleCache<String, InMemoryTicketComponentImpl.Ticket> ticketsCache = new MemoryCache<>();
+        InMemoryTicketComponentImpl ticketComponent = new InMemoryTicketComponentImpl();
+        ticketComponent.setTicketsCache(ticketsCache);
+        ticketComponent.setUsernameToTicketIdCache(new MemoryCache<>());
+        ticketComponent.setTicketsExpire(true);
+        ticketComponent.setExpiryMode(InMemoryTicketComponentImpl.ExpiryMode.AFTER_INACTIVITY.name());
+        ticketComponent.setValidDuration("PT1H");
+        // below the standard renewal point of a new ticket (half the valid duration)
+        ticketComponent.setExpiryRefreshFraction(0.25);
+
+        // 20 minutes into the hour: past the fraction, but not yet due for renewal by the standard rule
+        InMemoryTicketComponentImpl.Ticket ticket = new InMemoryTicketComponentImpl.Ticket(
+                InMemoryTicketComponentImpl.ExpiryMode.AFTER_INACTIVITY, new Date(System.currentTimeMillis() + 40 * 60000L), "userA", new Duration("PT1H"));
+        ticketsCache.put(ticket.getTicketId(), ticket);
+        String ticketString = InMemoryTicketComponentImpl.GRANTED_AUTHORITY_TICKET_PREFIX + ticket.getTicketId();
+
+        assertEquals("userA", ticketComponent.validateTicket(ticketString));
+        assertSame(ticket, ticketsCache.get(ticket.getTicketId()));
+        assertEquals(0, ticketComponent.getAvoidedTicketWrites());
+
+        // 35 minutes into the hour: past both
+        ticket = new InMemoryTicketComponentImpl.Ticket(
+                InMemoryTicketComponentImpl.ExpiryMode.AFTER_INACTIVITY, new Date(System.currentTimeMillis() + 25 * 60000L), "userA", new Duration("PT1H"));
+        ticketsCache.put(ticket.getTicketId(), ticket);
+        ticketString = InMemoryTicketComponentImpl.GRANTED_AUTHORITY_TICKET_PREFIX + ticket.getTicketId();
+
+        assertEquals("userA", ticketComponent.validateTicket(ticketString));
+        assertNotSame(ticket, ticketsCache.get(ticket.getTicketId()));
+        assertEquals(0, ticketComponent.getAvoidedTicketWrites());
+    }
+
     private void checkEqualsAndHashCode(Duration validDuration, InMemoryTicketComponentImpl.ExpiryMode expireMode, Date someDate,
         String randomUserName)
     {
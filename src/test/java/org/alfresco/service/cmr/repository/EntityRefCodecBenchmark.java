@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.service.cmr.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.service.namespace.QName;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the binary {@link EntityRefCodec} form of child association refs against their string form.
+ * <p>
+ * Not run with the unit tests, use the <tt>benchmark</tt> profile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(EntityRefCodecBenchmark.REFS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityRefCodecBenchmark
+{
+    static final int REFS = 1000;
+
+    private static final String NAMESPACE = "http://www.alfresco.org/model/content/1.0";
+
+    private List<ChildAssociationRef> refs;
+    private byte[] binary;
+    private byte[] strings;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        refs = new ArrayList<ChildAssociationRef>(REFS);
+        NodeRef parentRef = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString());
+        for (int i = 0; i < REFS; i++)
+        {
+            NodeRef childRef = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString());
+            refs.add(new ChildAssociationRef(QName.createQName(NAMESPACE, "contains"), parentRef,
+                    QName.createQName(NAMESPACE, "child"), childRef, true, -1));
+        }
+        binary = writeBinary();
+        strings = writeStrings();
+    }
+
+    @Benchmark
+    public byte[] writeBinary() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EntityRefCodec.Writer writer = new EntityRefCodec.Writer(new DataOutputStream(bytes));
+        for (ChildAssociationRef ref : refs)
+        {
+            writer.writeChildAssociationRef(ref);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public void readBinary(Blackhole blackhole) throws IOException
+    {
+        EntityRefCodec.Reader reader = new EntityRefCodec.Reader(new DataInputStream(new ByteArrayInputStream(binary)));
+        for (int i = 0; i < REFS; i++)
+        {
+            blackhole.consume(reader.readChildAssociationRef());
+        }
+    }
+
+    @Benchmark
+    public byte[] writeStrings() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (ChildAssociationRef ref : refs)
+        {
+            out.writeUTF(ref.toString());
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public void readStrings(Blackhole blackhole) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(strings));
+        for (int i = 0; i < REFS; i++)
+        {
+            blackhole.consume(new ChildAssociationRef(in.readUTF()));
+        }
+    }
+}
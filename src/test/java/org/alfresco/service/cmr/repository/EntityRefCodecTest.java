@@ -0,0 +1,165 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.service.cmr.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.alfresco.service.namespace.QName;
+
+import junit.framework.TestCase;
+
+/**
+ * @see org.alfresco.service.cmr.repository.EntityRefCodec
+ */
+public class EntityRefCodecTest extends TestCase
+{
+    private static final String NAMESPACE = "http://www.alfresco.org/model/content/1.0";
+    private static final QName TYPE_CONTAINS = QName.createQName(NAMESPACE, "contains");
+
+    public void testUuid() throws Exception
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            UUID uuid = UUID.randomUUID();
+            String id = uuid.toString();
+            assertTrue(EntityRefCodec.isUuid(id));
+            assertEquals(id, EntityRefCodec.formatUuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+        }
+        assertFalse(EntityRefCodec.isUuid("ABCDEF01-2345-6789-abcd-ef0123456789"));
+        assertFalse(EntityRefCodec.isUuid("abcdef01+2345-6789-abcd-ef0123456789"));
+        assertFalse(EntityRefCodec.isUuid("123"));
+    }
+
+    public void testRoundTrip() throws Exception
+    {
+        StoreRef otherStore = new StoreRef("user", "alfrescoUserStore");
+        NodeRef uuidNode = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString());
+        NodeRef upperCaseNode = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString().toUpperCase());
+        NodeRef namedNode = new NodeRef(otherStore, "root");
+
+        List<Object> refs = new ArrayList<Object>();
+        refs.add(uuidNode);
+        refs.add(null);
+        refs.add(upperCaseNode);
+        refs.add(namedNode);
+        refs.add(new ChildAssociationRef(TYPE_CONTAINS, namedNode, QName.createQName(NAMESPACE, "child"), uuidNode, true, 3));
+        refs.add(new ChildAssociationRef(null, null, null, namedNode));
+        refs.add(new ChildAssociationRef(TYPE_CONTAINS, uuidNode, QName.createQName(NAMESPACE, "child"), upperCaseNode));
+        refs.add(new AssociationRef(12L, uuidNode, TYPE_CONTAINS, namedNode));
+        refs.add(new AssociationRef(uuidNode, QName.createQName(NAMESPACE, "references"), upperCaseNode));
+
+        List<Object> read = readAll(writeAll(refs), refs);
+        assertEquals(refs, read);
+        for (int i = 0; i < refs.size(); i++)
+        {
+            if (refs.get(i) instanceof ChildAssociationRef)
+            {
+                ChildAssociationRef expected = (ChildAssociationRef) refs.get(i);
+                ChildAssociationRef actual = (ChildAssociationRef) read.get(i);
+                assertEquals(expected.isPrimary(), actual.isPrimary());
+                assertEquals(expected.getNthSibling(), actual.getNthSibling());
+            }
+            else if (refs.get(i) instanceof AssociationRef)
+            {
+                assertEquals(((AssociationRef) refs.get(i)).getId(), ((AssociationRef) read.get(i)).getId());
+            }
+        }
+        assertSame(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, ((NodeRef) read.get(0)).getStoreRef());
+    }
+
+    public void testBinaryFormIsSmaller() throws Exception
+    {
+        List<Object> refs = new ArrayList<Object>();
+        NodeRef parentRef = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString());
+        for (int i = 0; i < 1000; i++)
+        {
+            NodeRef childRef = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, UUID.randomUUID().toString());
+            refs.add(new ChildAssociationRef(TYPE_CONTAINS, parentRef, QName.createQName(NAMESPACE, "child"), childRef, true, -1));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Object ref : refs)
+        {
+            out.writeUTF(ref.toString());
+        }
+        assertTrue("Binary form should be smaller", writeAll(refs).length < bytes.size());
+    }
+
+    private static byte[] writeAll(List<Object> refs) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EntityRefCodec.Writer writer = new EntityRefCodec.Writer(new DataOutputStream(bytes));
+        for (Object ref : refs)
+        {
+            if (ref instanceof ChildAssociationRef)
+            {
+                writer.writeChildAssociationRef((ChildAssociationRef) ref);
+            }
+            else if (ref instanceof AssociationRef)
+            {
+                writer.writeAssociationRef((AssociationRef) ref);
+            }
+            else
+            {
+                writer.writeNodeRef((NodeRef) ref);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Read back references of the same kinds as the given ones
+     */
+    private static List<Object> readAll(byte[] binary, List<Object> kinds) throws IOException
+    {
+        EntityRefCodec.Reader reader = new EntityRefCodec.Reader(new DataInputStream(new ByteArrayInputStream(binary)));
+        List<Object> refs = new ArrayList<Object>();
+        for (Object kind : kinds)
+        {
+            if (kind instanceof ChildAssociationRef)
+            {
+                refs.add(reader.readChildAssociationRef());
+            }
+            else if (kind instanceof AssociationRef)
+            {
+                refs.add(reader.readAssociationRef());
+            }
+            else
+            {
+                refs.add(reader.readNodeRef());
+            }
+        }
+        return refs;
+    }
+}
@@ -25,7 +25,20 @@
  */
 package org.alfresco.service.cmr.repository;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import junit.framework.TestCase;
 
@@ -57,4 +70,155 @@ public class MLTextTest extends TestCase
         assertNull("Expected no value for Japanese", mlText.getValue(Locale.JAPANESE));
         assertNotNull("Expected an arbirary value for Japanese", mlText.getClosestValue(Locale.JAPANESE));
     }
+    
+    public void testCompactStorage()
+    {
+        MLText text = new MLText(Locale.UK, "colour");
+        assertTrue(text.isCompact());
+        text.addValue(Locale.US, "color");
+        text.addValue(Locale.FRENCH, "couleur");
+        text.addValue(Locale.GERMAN, "Farbe");
+        assertTrue(text.isCompact());
+        assertEquals(4, text.size());
+        assertEquals("color", text.put(Locale.US, "colour"));
+        assertEquals("colour", text.get(Locale.US));
+        assertNull(text.get(Locale.ITALIAN));
+        
+        Map<Locale, String> hashMap = new HashMap<Locale, String>(text);
+        assertEquals(hashMap, text);
+        assertEquals(text, hashMap);
+        assertEquals(hashMap.hashCode(), text.hashCode());
+        
+        // a fifth locale moves the values into the hash table
+        text.addValue(Locale.ITALIAN, "colore");
+        assertFalse(text.isCompact());
+        assertEquals(5, text.size());
+        assertEquals("colore", text.get(Locale.ITALIAN));
+        hashMap.put(Locale.ITALIAN, "colore");
+        assertEquals(hashMap, text);
+    }
+    
+    public void testCompactViews()
+    {
+        MLText text = new MLText(Locale.UK, "colour");
+        text.addValue(Locale.US, "color");
+        text.addValue(Locale.FRENCH, "couleur");
+        
+        assertTrue(text.keySet().contains(Locale.US));
+        assertTrue(text.values().contains("couleur"));
+        for (Map.Entry<Locale, String> entry : text.entrySet())
+        {
+            entry.setValue(entry.getValue().toUpperCase());
+        }
+        assertEquals("COLOR", text.get(Locale.US));
+        
+        Iterator<Locale> iterator = text.keySet().iterator();
+        while (iterator.hasNext())
+        {
+            if (iterator.next().equals(Locale.US))
+            {
+                iterator.remove();
+            }
+        }
+        assertEquals(2, text.size());
+        assertFalse(text.containsKey(Locale.US));
+        assertEquals("COLOUR", text.getValue(Locale.UK));
+        
+        text.values().remove("COULEUR");
+        assertEquals(1, text.size());
+        text.clear();
+        assertTrue(text.isEmpty());
+        assertNull(text.getDefaultValue());
+    }
+    
+    public void testViewsAcrossStorageModes()
+    {
+        MLText text = new MLText(Locale.UK, "colour");
+        text.addValue(Locale.US, "color");
+        text.addValue(Locale.FRENCH, "couleur");
+        text.addValue(Locale.GERMAN, "Farbe");
+        assertTrue(text.isCompact());
+        Set<Locale> locales = text.keySet();
+        Collection<String> values = text.values();
+        Set<Map.Entry<Locale, String>> entries = text.entrySet();
+        
+        // compact to hash table
+        text.addValue(Locale.ITALIAN, "colore");
+        assertFalse(text.isCompact());
+        assertEquals(5, locales.size());
+        assertEquals(text.keySet(), new HashSet<Locale>(locales));
+        assertTrue(locales.contains(Locale.ITALIAN));
+        assertEquals(5, new ArrayList<String>(values).size());
+        assertTrue(values.contains("colore"));
+        assertEquals(5, new HashSet<Map.Entry<Locale, String>>(entries).size());
+        
+        // hash table to compact
+        locales.clear();
+        assertTrue(text.isEmpty());
+        assertTrue(text.isCompact());
+        text.addValue(Locale.UK, "colour");
+        text.addValue(Locale.US, "color");
+        assertEquals(2, locales.size());
+        assertEquals(new HashSet<Locale>(Arrays.asList(Locale.UK, Locale.US)), new HashSet<Locale>(locales));
+        assertEquals(new HashSet<String>(Arrays.asList("colour", "color")), new HashSet<String>(values));
+        assertEquals(2, new HashSet<Map.Entry<Locale, String>>(entries).size());
+        locales.remove(Locale.US);
+        assertEquals(1, text.size());
+        
+        // an iterator taken before the switch fails rather than missing values
+        text.addValue(Locale.US, "color");
+        text.addValue(Locale.FRENCH, "couleur");
+        text.addValue(Locale.GERMAN, "Farbe");
+        Iterator<Locale> iterator = locales.iterator();
+        iterator.next();
+        text.addValue(Locale.ITALIAN, "colore");
+        assertTrue(iterator.hasNext());
+        try
+        {
+            iterator.next();
+            fail("Iterator should fail once the text has moved to the hash table");
+        }
+        catch (ConcurrentModificationException e)
+        {
+            // expected
+        }
+    }
+    
+    public void testClosestValue()
+    {
+        MLText text = new MLText(Locale.UK, "colour");
+        assertEquals("colour", text.getClosestValue(Locale.JAPANESE));
+        text.addValue(Locale.FRENCH, "couleur");
+        assertEquals("couleur", text.getClosestValue(Locale.CANADA_FRENCH));
+        assertEquals("couleur", text.getClosestValue(Locale.CANADA_FRENCH));
+        text.addValue(Locale.CANADA_FRENCH, "couleur canadienne");
+        assertEquals("couleur canadienne", text.getClosestValue(Locale.CANADA_FRENCH));
+        text.removeValue(Locale.CANADA_FRENCH);
+        text.removeValue(Locale.FRENCH);
+        assertEquals("colour", text.getClosestValue(Locale.CANADA_FRENCH));
+    }
+    
+    public void testCloneAndSerialization() throws Exception
+    {
+        MLText text = new MLText(Locale.UK, "colour");
+        text.addValue(Locale.US, "color");
+        
+        MLText clone = (MLText) text.clone();
+        assertTrue(clone.isCompact());
+        assertEquals(text, clone);
+        clone.addValue(Locale.FRENCH, "couleur");
+        assertEquals(2, text.size());
+        
+        for (MLText original : new MLText[] { text, clone, mlText })
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(original);
+            out.close();
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            MLText copy = (MLText) in.readObject();
+            assertEquals(original, copy);
+            assertEquals(original.size() <= MLText.MAX_COMPACT_SIZE, copy.isCompact());
+        }
+    }
 }
@@ -25,6 +25,13 @@
  */
 package org.alfresco.service.cmr.repository;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+
 import junit.framework.TestCase;
 
 /**
@@ -68,4 +75,45 @@ public class NodeRefTest extends TestCase
         assertTrue(NodeRef.isNodeRef(nodeRef.toString()));
         assertFalse(NodeRef.isNodeRef("sdfsdf:sdfsdf"));
     }
+    
+    public void testCanonicalStoreRef() throws Exception
+    {
+        NodeRef nodeRef = new NodeRef("workspace://SpacesStore/456");
+        assertSame(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, nodeRef.getStoreRef());
+        assertEquals("456", nodeRef.getId());
+        assertEquals("workspace://SpacesStore/456", nodeRef.toString());
+        assertSame(StoreRef.STORE_REF_ARCHIVE_SPACESSTORE, StoreRef.valueOf("archive://SpacesStore"));
+        assertSame(StoreRef.STORE_REF_ARCHIVE_SPACESSTORE, StoreRef.valueOf(StoreRef.PROTOCOL_ARCHIVE, "SpacesStore"));
+        
+        // other workspace and archive stores become canonical once seen
+        assertSame(new NodeRef("workspace://123/456").getStoreRef(), new NodeRef("workspace://123/789").getStoreRef());
+        assertSame(StoreRef.valueOf("archive://123"), StoreRef.valueOf(StoreRef.PROTOCOL_ARCHIVE, "123"));
+        
+        // stores of other protocols are not kept
+        NodeRef nodeRef2 = new NodeRef("ABC://123/456");
+        assertNotSame(nodeRef2.getStoreRef(), new NodeRef("ABC://123/789").getStoreRef());
+        assertEquals(new StoreRef("ABC", "123"), nodeRef2.getStoreRef());
+        assertEquals(new NodeRef(new StoreRef("ABC", "123"), "456"), nodeRef2);
+        assertEquals("ABC://123/456", new NodeRef(new StoreRef("ABC", "123"), "456").toString());
+        
+        // deserialized references use the canonical store
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(nodeRef);
+        out.close();
+        NodeRef copy = (NodeRef) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(nodeRef, copy);
+        assertEquals(nodeRef.toString(), copy.toString());
+        assertSame(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, copy.getStoreRef());
+        
+        try
+        {
+            new NodeRef("ABC/123");
+            fail("Store ref without protocol should fail");
+        }
+        catch (AlfrescoRuntimeException e)
+        {
+            // expected
+        }
+    }
 }
@@ -25,6 +25,17 @@
  */
 package org.alfresco.service.cmr.repository;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.service.cmr.security.AccessStatus;
+import org.alfresco.service.cmr.security.PermissionService;
 import org.alfresco.service.namespace.QName;
 
 import junit.framework.TestCase;
@@ -117,4 +128,40 @@ public class PathTest extends TestCase
                 "descendant-or-self::node()/{http://www.google.com}documentx[4]/descendant-or-self::node()/../.",
                 relativePath.toString());
     }
-}
\ No newline at end of file
+    
+    public void testDisplayPathResolver() throws Exception
+    {
+        NodeRef rootRef = new NodeRef(storeRef, "R");
+        NodeRef siteRef = new NodeRef(storeRef, "S");
+        NodeRef hiddenRef = new NodeRef(storeRef, "H");
+        NodeService nodeService = mock(NodeService.class);
+        PermissionService permissionService = mock(PermissionService.class);
+        when(permissionService.hasPermission(parentRef, PermissionService.READ)).thenReturn(AccessStatus.ALLOWED);
+        when(permissionService.hasPermission(siteRef, PermissionService.READ)).thenReturn(AccessStatus.ALLOWED);
+        when(permissionService.hasPermission(hiddenRef, PermissionService.READ)).thenReturn(AccessStatus.DENIED);
+        when(nodeService.getProperty(parentRef, ContentModel.PROP_NAME)).thenReturn("Company Home");
+        when(nodeService.getProperty(siteRef, ContentModel.PROP_NAME)).thenReturn("Site");
+        
+        Path base = new Path()
+                .append(new Path.ChildAssocElement(new ChildAssociationRef(null, null, null, rootRef)))
+                .append(new Path.ChildAssocElement(new ChildAssociationRef(typeQName, rootRef, qname, parentRef)))
+                .append(new Path.ChildAssocElement(new ChildAssociationRef(typeQName, parentRef, qname, siteRef)));
+        Path path1 = new Path().append(base)
+                .append(new Path.ChildAssocElement(new ChildAssociationRef(typeQName, siteRef, qname, childRef)));
+        Path path2 = new Path().append(base)
+                .append(new Path.ChildAssocElement(new ChildAssociationRef(typeQName, siteRef, QName.createQName("http://www.google.com", "hidden"), hiddenRef)))
+                .append(new Path.ChildAssocElement(new ChildAssociationRef(typeQName, hiddenRef, qname, childRef)));
+        
+        assertEquals("/Company Home/Site", path1.toDisplayPath(nodeService, permissionService));
+        
+        DisplayPathResolver resolver = new DisplayPathResolver(nodeService, permissionService);
+        List<String> displayPaths = resolver.toDisplayPaths(Arrays.asList(path1, path2, path1));
+        assertEquals(Arrays.asList("/Company Home/Site", "/Company Home/Site/hidden", "/Company Home/Site"), displayPaths);
+        assertEquals("/Company Home/Site/hidden", resolver.toDisplayPath(path2));
+        
+        // one lookup for the single path above, one per distinct ancestor for the resolver
+        verify(permissionService, times(2)).hasPermission(siteRef, PermissionService.READ);
+        verify(nodeService, times(2)).getProperty(siteRef, ContentModel.PROP_NAME);
+        verify(permissionService, times(1)).hasPermission(hiddenRef, PermissionService.READ);
+    }
+}
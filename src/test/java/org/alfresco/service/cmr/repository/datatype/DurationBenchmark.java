@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.service.cmr.repository.datatype;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks parsing common durations and adding them to a date, against parsing them afresh and
+ * adding them with a calendar.
+ * <p>
+ * Not run with the unit tests, use the <tt>benchmark</tt> profile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(DurationBenchmark.DURATIONS_LENGTH)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DurationBenchmark
+{
+    private static final String[] DURATIONS = new String[] { "P1D", "PT1H", "P7D", "P1M", "P1Y", "-P60D" };
+
+    static final int DURATIONS_LENGTH = 6;
+
+    private final Date now = new Date();
+
+    @Benchmark
+    public void valueOf(Blackhole blackhole)
+    {
+        for (String duration : DURATIONS)
+        {
+            blackhole.consume(Duration.valueOf(duration));
+        }
+    }
+
+    @Benchmark
+    public void valueOfAndAdd(Blackhole blackhole)
+    {
+        for (String duration : DURATIONS)
+        {
+            blackhole.consume(Duration.add(now.getTime(), Duration.valueOf(duration)));
+        }
+    }
+
+    @Benchmark
+    public void parseAndAddWithCalendar(Blackhole blackhole)
+    {
+        for (String duration : DURATIONS)
+        {
+            blackhole.consume(DurationTest.addWithCalendar(now, new Duration(duration), 1));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.service.cmr.repository.datatype;
+
+import java.time.Instant;
+import java.time.Period;
+import java.util.Calendar;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+/**
+ * @see Duration
+ */
+public class DurationTest extends TestCase
+{
+    private static final String[] DURATIONS = new String[] {
+            "P1D", "PT1H", "P7D", "P1M", "P1Y", "-P60D", "P2Y6M5DT12H35M30.100S", "P1DT2H3M1.5S", "PT1.5S",
+            "P20M", "P0Y20M0D", "P1H", "-PT30M", "P1Y1M1DT1H1M1S" };
+
+    public void testParse()
+    {
+        assertEquals("P0Y1D", new Duration("P1D").toString());
+        assertEquals("P0YT1H", new Duration("PT1H").toString());
+        assertEquals("-P0Y60D", new Duration("-P60D").toString());
+        assertEquals("P1Y1M1DT1H1M1S", new Duration("P1Y1M1DT1H1M1S").toString());
+        assertEquals("P0YT1H", new Duration("P1H").toString());
+
+        // whole numbers are parsed directly, anything else by the full parser
+        assertEquals(new Duration("P2Y6M5DT12H35M30S"), new Duration("P2.0Y6.0M5.0DT12.0H35.0M30.0S"));
+        assertEquals(new Duration("PT2M"), new Duration("PT2.0M"));
+
+        String[] invalid = new String[] { "P", "P Jones", "P12Y Jones", "PPPPPPPPPPPPPP", "PY", "PM", "PP", "P1D1Y", "PT1H1H", "1D" };
+        for (String duration : invalid)
+        {
+            try
+            {
+                new Duration(duration);
+                fail("Expected parse failure for " + duration);
+            }
+            catch (RuntimeException e)
+            {
+                // expected
+            }
+        }
+    }
+
+    public void testValueOf()
+    {
+        Duration day = Duration.valueOf("P1D");
+        assertSame(day, Duration.valueOf("P1D"));
+        assertEquals(Duration.DAY, day);
+        assertEquals(new Duration("PT1H"), Duration.valueOf("PT1H"));
+    }
+
+    public void testJavaTimeViews()
+    {
+        Duration duration = new Duration("-P1Y2M3DT4H5M6.5S");
+        assertEquals(Period.of(-1, -2, -3), duration.getPeriod());
+        assertEquals(java.time.Duration.ofHours(-4).minusMinutes(5).minusSeconds(6).minusMillis(500), duration.getTimeDuration());
+        assertEquals(Period.ZERO, new Duration("PT1H").getPeriod());
+    }
+
+    public void testDateArithmetic()
+    {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2020, Calendar.JANUARY, 31, 10, 30, 15);
+        calendar.set(Calendar.MILLISECOND, 250);
+        long start = calendar.getTimeInMillis();
+        for (int i = 0; i < 400; i++)
+        {
+            Date date = new Date(start + i * 86400000L * 3 + i * 3599999L);
+            for (String string : DURATIONS)
+            {
+                Duration duration = new Duration(string);
+                assertEquals(string + " added to " + date, addWithCalendar(date, duration, 1), Duration.add(date, duration));
+                assertEquals(string + " subtracted from " + date, addWithCalendar(date, duration, -1), Duration.subtract(date, duration));
+                assertEquals(Duration.add(date, duration).getTime(), Duration.add(date.getTime(), duration));
+                assertEquals(Duration.subtract(date, duration).getTime(), Duration.subtract(date.getTime(), duration));
+                assertEquals(Duration.add(date, duration).toInstant(), Duration.add(Instant.ofEpochMilli(date.getTime()), duration));
+            }
+        }
+    }
+
+    public void testCompare()
+    {
+        assertTrue(new Duration("P1D").compareTo(new Duration("PT1H")) > 0);
+        assertTrue(new Duration("PT1H").compareTo(new Duration("P1D")) < 0);
+        assertTrue(new Duration("-P1D").compareTo(new Duration("-PT1H")) < 0);
+        assertTrue(new Duration("-P1D").compareTo(new Duration("PT1H")) < 0);
+        assertTrue(new Duration("P1M").compareTo(new Duration("P40D")) > 0);
+        assertTrue(new Duration("PT1.5S").compareTo(new Duration("PT1S")) > 0);
+        assertEquals(0, new Duration("P1D").compareTo(new Duration("PT24H")));
+    }
+
+    /**
+     * The calendar based arithmetic that {@link Duration#add(Date, Duration)} used
+     */
+    static Date addWithCalendar(Date date, Duration duration, int direction)
+    {
+        Duration signed = direction > 0 ? duration : duration.unaryMinus();
+        Period period = signed.getPeriod();
+        java.time.Duration time = signed.getTimeDuration();
+        Calendar c = Calendar.getInstance();
+        c.setTime(date);
+        c.add(Calendar.YEAR, period.getYears());
+        c.add(Calendar.MONTH, period.getMonths());
+        c.add(Calendar.DATE, period.getDays());
+        c.add(Calendar.HOUR_OF_DAY, (int) (time.getSeconds() / 3600));
+        c.add(Calendar.MINUTE, (int) (time.getSeconds() / 60 % 60));
+        c.add(Calendar.SECOND, (int) (time.getSeconds() % 60));
+        c.add(Calendar.MILLISECOND, time.getNano() / 1000000);
+        return c.getTime();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.service.namespace;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks matching child association names against {@link RegexQNamePattern}s: a literal namespace with a
+ * prefix, a match-all namespace and a combined pattern.
+ * <p>
+ * Not run with the unit tests, use the <tt>benchmark</tt> profile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(QNamePatternBenchmark.QNAMES)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QNamePatternBenchmark
+{
+    static final int QNAMES = 10000;
+
+    private static final String TEST_NAMESPACE = "http://www.alfresco.org/QNamePatternTest";
+
+    @Param({"PREFIX", "ANY_NAMESPACE", "COMBINED"})
+    private PatternKind kind;
+
+    private final QName[] qnames = new QName[QNAMES];
+    private QNamePattern pattern;
+
+    public enum PatternKind
+    {
+        PREFIX, ANY_NAMESPACE, COMBINED
+    }
+
+    @Setup
+    public void setUp()
+    {
+        // a large list of child association names as filtered by getChildAssocs
+        for (int i = 0; i < QNAMES; i++)
+        {
+            qnames[i] = QName.createQName(TEST_NAMESPACE, (i % 2 == 0 ? "child-" : "other-") + i);
+        }
+        switch (kind)
+        {
+        case PREFIX:
+            pattern = new RegexQNamePattern(TEST_NAMESPACE, "child-.*");
+            break;
+        case ANY_NAMESPACE:
+            pattern = new RegexQNamePattern(".*", "child-1.*");
+            break;
+        default:
+            pattern = new RegexQNamePattern("\\{.*\\}child-[0-9]+");
+        }
+    }
+
+    @Benchmark
+    public int isMatch()
+    {
+        int count = 0;
+        for (QName qname : qnames)
+        {
+            if (pattern.isMatch(qname))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -77,4 +77,47 @@ public class QNamePatternTest extends TestCase
         assertTrue("All match failed: " + check2, RegexQNamePattern.MATCH_ALL.isMatch(check2));
         assertTrue("All match failed: " + check3, RegexQNamePattern.MATCH_ALL.isMatch(check3));
     }
+    
+    public void testCompiledMatchers() throws Exception
+    {
+        String[] regexes = new String[] {
+                ".*", "ABC", "A.*", "A.?C", "", "http://www\\.alfresco\\.org/.*", "\\{.*\\}ABC", "AB\\w", "X|ABC" };
+        String[] values = new String[] {
+                "", "ABC", "ABCD", "XYZ", "A\nC", "AB\n", TEST_NAMESPACE, "http://www.alfresco.org/", "http://wwwXalfresco.org/",
+                check3.toString(), "{}ABC" };
+        for (String regex : regexes)
+        {
+            RegexQNamePattern.StringMatcher matcher = RegexQNamePattern.compile(regex);
+            for (String value : values)
+            {
+                assertEquals("Mismatch for " + regex + " against " + value, value.matches(regex), matcher.matches(value));
+            }
+        }
+        assertTrue(RegexQNamePattern.compile("ABC") instanceof RegexQNamePattern.LiteralMatcher);
+        assertTrue(RegexQNamePattern.compile("http://www\\.alfresco\\.org/.*") instanceof RegexQNamePattern.PrefixMatcher);
+        assertTrue(RegexQNamePattern.compile("A.?C") instanceof RegexQNamePattern.RegexMatcher);
+    }
+    
+    public void testCombinedPattern() throws Exception
+    {
+        QNamePattern pattern = new RegexQNamePattern("\\{" + TEST_NAMESPACE.replace(".", "\\.") + "\\}.*");
+        assertFalse(pattern.isMatch(check1));
+        assertTrue(pattern.isMatch(check2));
+        assertTrue(pattern.isMatch(check3));
+        
+        pattern = new RegexQNamePattern(".*\\}A.C");
+        assertTrue(pattern.isMatch(check1));
+        assertFalse(pattern.isMatch(check2));
+        assertTrue(pattern.isMatch(check3));
+    }
+    
+    public void testPatternFactory() throws Exception
+    {
+        assertSame(RegexQNamePattern.MATCH_ALL, RegexQNamePattern.getPattern(".*", ".*"));
+        assertSame(RegexQNamePattern.MATCH_ALL, RegexQNamePattern.getPattern(".*"));
+        QNamePattern pattern = RegexQNamePattern.getPattern(TEST_NAMESPACE.replace(".", "\\."), "A.*");
+        assertFalse(pattern.isMatch(check1));
+        assertFalse(pattern.isMatch(check2));
+        assertTrue(pattern.isMatch(check3));
+    }
 }
@@ -7,6 +7,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Test class created for MNT-21472
@@ -37,4 +39,119 @@ public class ConfigFileFinderTest extends TestCase
         succesRead = fileFinder.readFiles(TEST_PATH_WITH_SPACES, log);
         assertTrue("Expected to read files from folder with spaces successfully", succesRead);
     }
+
+    public void testHasChanged() throws Exception
+    {
+        Path dir = Files.createTempDirectory("ConfigFileFinderTest");
+        Path file = dir.resolve("config.json");
+        try
+        {
+            String path = dir.toString();
+            Files.writeString(file, "{}");
+            assertTrue("Files not yet read should be treated as changed", fileFinder.hasChanged(path, log));
+
+            assertTrue(fileFinder.readFiles(path, log));
+            assertFalse("Nothing has changed", fileFinder.hasChanged(path, log));
+
+            // Same content, just a new modification time
+            file.toFile().setLastModified(file.toFile().lastModified() - 10000);
+            assertFalse("Touching a file should not count as a change", fileFinder.hasChanged(path, log));
+
+            Files.writeString(file, "{\"a\":1}");
+            assertTrue("Modified file", fileFinder.hasChanged(path, log));
+
+            assertTrue(fileFinder.readFiles(path, log));
+            assertFalse(fileFinder.hasChanged(path, log));
+
+            Path added = dir.resolve("other.json");
+            Files.writeString(added, "{}");
+            assertTrue("Added file", fileFinder.hasChanged(path, log));
+
+            Files.delete(added);
+            assertFalse("Back to the files that were read", fileFinder.hasChanged(path, log));
+        }
+        finally
+        {
+            Files.deleteIfExists(dir.resolve("other.json"));
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    public void testTouchedFileIsNotReadAgain() throws Exception
+    {
+        Path dir = Files.createTempDirectory("ConfigFileFinderTest");
+        Path file = dir.resolve("config.json");
+        try
+        {
+            String path = dir.toString();
+            Files.writeString(file, "{}");
+            assertTrue(fileFinder.readFiles(path, log));
+
+            long touched = file.toFile().lastModified() - 10000;
+            file.toFile().setLastModified(touched);
+            assertFalse("Touching a file should not count as a change", fileFinder.hasChanged(path, log));
+
+            // The new modification time has been recorded, so the file is no longer read to check its content
+            Files.writeString(file, "[]");
+            file.toFile().setLastModified(touched);
+            assertFalse("Touched file should not be read again", fileFinder.hasChanged(path, log));
+
+            file.toFile().setLastModified(touched + 5000);
+            assertTrue("Modified file", fileFinder.hasChanged(path, log));
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    public void testChangeWhileReadingIsSeenByWatcher() throws Exception
+    {
+        Path dir = Files.createTempDirectory("ConfigFileFinderTest");
+        Path file = dir.resolve("config.json");
+        ConfigFileFinder watchingFinder = new ConfigFileFinder(jsonObjectMapper)
+        {
+            private boolean modified;
+
+            @Override protected void readJson(JsonNode jsonNode, String readFromMessage, String baseUrl) throws IOException
+            {
+                // Change the file after it has been read, but before readFiles returns
+                if (!modified)
+                {
+                    modified = true;
+                    Files.writeString(file, "{\"changed\":true}");
+                }
+            }
+        };
+        watchingFinder.setWatchDirectories(true);
+        try
+        {
+            String path = dir.toString();
+            Files.writeString(file, "{}");
+            assertTrue(watchingFinder.readFiles(path, log));
+
+            // Watch events are delivered asynchronously
+            boolean changed = false;
+            for (int i = 0; i < 100 && !changed; i++)
+            {
+                changed = watchingFinder.hasChanged(path, log);
+                if (!changed)
+                {
+                    Thread.sleep(100);
+                }
+            }
+            assertTrue("File modified while it was being read", changed);
+
+            assertTrue(watchingFinder.readFiles(path, log));
+            assertFalse(watchingFinder.hasChanged(path, log));
+        }
+        finally
+        {
+            watchingFinder.stopWatching();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
 }
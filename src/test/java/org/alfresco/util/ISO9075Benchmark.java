@@ -0,0 +1,114 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link ISO9075} encoding and decoding of names that mostly need no encoding.
+ * <p>
+ * Not run with the unit tests, use the <tt>benchmark</tt> profile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(ISO9075Benchmark.NAMES)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ISO9075Benchmark
+{
+    static final int NAMES = 1000;
+
+    private final String[] names = new String[NAMES];
+    private final String[] encoded = new String[NAMES];
+    private final StringBuilder builder = new StringBuilder();
+
+    @Setup
+    public void setUp()
+    {
+        // Mostly plain names with the occasional space, colon or encoded looking name
+        for (int i = 0; i < NAMES; i++)
+        {
+            switch (i % 10)
+            {
+            case 0:
+                names[i] = "Document " + i + ".txt";
+                break;
+            case 1:
+                names[i] = "cm:name" + i;
+                break;
+            case 2:
+                names[i] = "folder_x0020_" + i;
+                break;
+            default:
+                names[i] = "document_" + i;
+            }
+            encoded[i] = ISO9075.encode(names[i]);
+        }
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole)
+    {
+        for (String name : names)
+        {
+            blackhole.consume(ISO9075.encode(name));
+        }
+    }
+
+    @Benchmark
+    public void encodeToBuilder(Blackhole blackhole)
+    {
+        for (String name : names)
+        {
+            builder.setLength(0);
+            blackhole.consume(ISO9075.encode(name, builder).length());
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole)
+    {
+        for (String name : encoded)
+        {
+            blackhole.consume(ISO9075.decode(name));
+        }
+    }
+}
@@ -27,6 +27,8 @@ package org.alfresco.util;
 
 import junit.framework.TestCase;
 
+import org.alfresco.service.namespace.QName;
+
 public class ISO9075Test extends TestCase
 {
 
@@ -148,4 +150,35 @@ public class ISO9075Test extends TestCase
         assertEquals("_x0031_vns10:individual_x002d_entity", ISO9075.encodeSQL("1vns10:individual-entity"));
     }
 
+    public void testNoChangeReturnsSameInstance()
+    {
+        String[] unchanged = { "My2Documents", "My_Documents", "My_x0020Documents", "cm_content", "a_x0020" };
+        for (String name : unchanged)
+        {
+            assertSame(name, ISO9075.encode(name));
+            assertSame(name, ISO9075.decode(name));
+        }
+        String sql = "vns10:individual_entity";
+        assertSame(sql, ISO9075.encodeSQL(sql));
+    }
+
+    public void testAppendEncoding()
+    {
+        StringBuilder builder = new StringBuilder("/");
+        assertSame(builder, ISO9075.encode("My Documents", builder));
+        ISO9075.encode("/", builder);
+        ISO9075.encode("plain", builder);
+        ISO9075.encode(null, builder);
+        assertEquals("/My_x0020_Documents_x002f_plain", builder.toString());
+
+        builder.setLength(0);
+        ISO9075.encodeSQL("1vns10:individual-entity", builder);
+        assertEquals("_x0031_vns10:individual_x002d_entity", builder.toString());
+
+        QName qname = QName.createQName("http://www.alfresco.org/model/content/1.0", "My Documents");
+        builder.setLength(0);
+        assertEquals(ISO9075.getXPathName(qname), ISO9075.getXPathName(qname, builder).toString());
+        assertEquals("{http://www.alfresco.org/model/content/1.0}My_x0020_Documents", builder.toString());
+    }
+
 }
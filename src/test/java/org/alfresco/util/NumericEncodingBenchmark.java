@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.util;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the string, buffer and sortable binary encodings of {@link NumericEncoder} for longs.
+ * <p>
+ * Not run with the unit tests, use the <tt>benchmark</tt> profile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(NumericEncodingBenchmark.VALUES)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumericEncodingBenchmark
+{
+    static final int VALUES = 1024;
+
+    private final long[] values = new long[VALUES];
+    private final String[] encoded = new String[VALUES];
+    private final char[] buf = new char[16];
+    private final StringBuilder sb = new StringBuilder(16);
+    private final ByteBuffer buffer = ByteBuffer.allocate(8);
+
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < VALUES; i++)
+        {
+            values[i] = random.nextLong();
+            encoded[i] = NumericEncoder.encode(values[i]);
+        }
+    }
+
+    @Benchmark
+    public void encodeToString(Blackhole blackhole)
+    {
+        for (long value : values)
+        {
+            blackhole.consume(NumericEncoder.encode(value));
+        }
+    }
+
+    @Benchmark
+    public void encodeToBuffer(Blackhole blackhole)
+    {
+        for (long value : values)
+        {
+            NumericEncoder.encode(value, buf, 0);
+            blackhole.consume(buf[15]);
+        }
+    }
+
+    @Benchmark
+    public void encodeToStringBuilder(Blackhole blackhole)
+    {
+        for (long value : values)
+        {
+            sb.setLength(0);
+            blackhole.consume(NumericEncoder.encode(value, sb).length());
+        }
+    }
+
+    @Benchmark
+    public void encodeSortable(Blackhole blackhole)
+    {
+        for (long value : values)
+        {
+            buffer.clear();
+            blackhole.consume(NumericEncoder.encodeSortable(value, buffer).position());
+        }
+    }
+
+    @Benchmark
+    public void decodeString(Blackhole blackhole)
+    {
+        for (String hex : encoded)
+        {
+            blackhole.consume(NumericEncoder.decodeLong(hex));
+        }
+    }
+
+    @Benchmark
+    public void decodeInPlace(Blackhole blackhole)
+    {
+        for (String hex : encoded)
+        {
+            blackhole.consume(NumericEncoder.decodeLong(hex, 0));
+        }
+    }
+}
@@ -25,6 +25,9 @@
  */
 package org.alfresco.util;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import junit.framework.TestCase;
 
 /**
@@ -34,6 +37,8 @@ import junit.framework.TestCase;
  */
 public class NumericEncodingTest extends TestCase
 {
+    private static final long[] LONGS = { Long.MIN_VALUE, Long.MIN_VALUE + 1, -1234567890123L, -1L, 0L, 1L, 1234567890123L, Long.MAX_VALUE - 1, Long.MAX_VALUE };
+    private static final double[] DOUBLES = { Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, -0.9, -Double.MIN_VALUE, -0d, 0d, Double.MIN_VALUE, 0.88, 0.91, Double.MAX_VALUE, Double.POSITIVE_INFINITY };
 
     /**
      * 
@@ -219,4 +224,105 @@ public class NumericEncodingTest extends TestCase
         
         
     }
+
+    /**
+     * Encoding into buffers matches the string encoding
+     */
+    public void testBufferEncoding()
+    {
+        char[] buf = new char[40];
+        StringBuilder sb = new StringBuilder();
+        for (long l : LONGS)
+        {
+            int end = NumericEncoder.encode(l, buf, 4);
+            assertEquals(20, end);
+            assertEquals(NumericEncoder.encode(l), new String(buf, 4, 16));
+            assertEquals(l, NumericEncoder.decodeLong(new String(buf), 4));
+
+            int i = (int) l;
+            NumericEncoder.encode(i, buf, 0);
+            assertEquals(NumericEncoder.encode(i), new String(buf, 0, 8));
+            assertEquals(i, NumericEncoder.decodeInt(new String(buf, 0, 8), 0));
+
+            sb.setLength(0);
+            NumericEncoder.encode(l, sb.append("x:"));
+            assertEquals("x:" + NumericEncoder.encode(l), sb.toString());
+            sb.setLength(0);
+            assertEquals(NumericEncoder.encode(i), NumericEncoder.encode(i, sb).toString());
+        }
+        for (double d : DOUBLES)
+        {
+            NumericEncoder.encode(d, buf, 0);
+            assertEquals(NumericEncoder.encode(d), new String(buf, 0, 16));
+            sb.setLength(0);
+            assertEquals(NumericEncoder.encode(d), NumericEncoder.encode(d, sb).toString());
+
+            float f = (float) d;
+            NumericEncoder.encode(f, buf, 0);
+            assertEquals(NumericEncoder.encode(f), new String(buf, 0, 8));
+            sb.setLength(0);
+            assertEquals(NumericEncoder.encode(f), NumericEncoder.encode(f, sb).toString());
+        }
+    }
+
+    /**
+     * The sortable binary encoding round trips and orders as unsigned bytes, whatever the buffer byte order
+     */
+    public void testSortableEncoding()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] last = null;
+        for (long l : LONGS)
+        {
+            buffer.clear();
+            NumericEncoder.encodeSortable(l, buffer);
+            buffer.flip();
+            byte[] bytes = new byte[8];
+            buffer.duplicate().get(bytes);
+            assertEquals(l, NumericEncoder.decodeSortableLong(buffer));
+            if (last != null)
+            {
+                assertTrue(compareUnsigned(last, bytes) < 0);
+            }
+            last = bytes;
+
+            buffer.clear();
+            NumericEncoder.encodeSortable((int) l, buffer);
+            buffer.flip();
+            assertEquals((int) l, NumericEncoder.decodeSortableInt(buffer));
+        }
+        last = null;
+        for (double d : DOUBLES)
+        {
+            buffer.clear();
+            NumericEncoder.encodeSortable(d, buffer);
+            buffer.flip();
+            byte[] bytes = new byte[8];
+            buffer.duplicate().get(bytes);
+            assertEquals(Double.doubleToLongBits(d), Double.doubleToLongBits(NumericEncoder.decodeSortableDouble(buffer)));
+            if (last != null)
+            {
+                assertTrue(compareUnsigned(last, bytes) < 0);
+            }
+            last = bytes;
+
+            buffer.clear();
+            NumericEncoder.encodeSortable((float) d, buffer);
+            buffer.flip();
+            assertEquals(Float.floatToIntBits((float) d), Float.floatToIntBits(NumericEncoder.decodeSortableFloat(buffer)));
+        }
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b)
+    {
+        for (int i = 0; i < a.length; i++)
+        {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0)
+            {
+                return diff;
+            }
+        }
+        return 0;
+    }
 }
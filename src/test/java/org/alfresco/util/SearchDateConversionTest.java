@@ -84,6 +84,52 @@ public class SearchDateConversionTest
         assertNull(result);
     }
 
+    @Test
+    public void parseDateTimeString() throws Exception
+    {
+        setDefaults();
+        Pair<Date, Integer> result = subject.parseDateString("2017-12-12T10");
+        assertEquals(Calendar.HOUR_OF_DAY, result.getSecond().intValue());
+        assertEquals("2017-12-12T10:00:00.000Z", subject.getDateStart(result));
+        assertEquals("2017-12-12T10:59:59.999Z", subject.getDateEnd(result));
+
+        result = subject.parseDateString("2017-12-12T10:15:30.5+01:00");
+        assertEquals(Calendar.MILLISECOND, result.getSecond().intValue());
+        assertEquals("2017-12-12T09:15:30.500Z", subject.getDateStart(result));
+
+        result = subject.parseDateString("2016-02");
+        assertEquals("2016-02-29T23:59:59.999Z", subject.getDateEnd(result));
+
+        result = subject.parseDateString("MIN");
+        assertEquals("0001-01-01T00:00:00.000Z", subject.getDateStart(result));
+
+        result = subject.parseDateString("TODAY");
+        assertTrue(subject.getDateEnd(result).endsWith("T23:59:59.999Z"));
+    }
+
+    @Test
+    public void minAndMaxAsCalendarLimits() throws Exception
+    {
+        setDefaults();
+        // min is the first day of the Julian calendar and max overflows, as the calendar based keywords always did
+        assertEquals(-62135769600000L, subject.parseDateString("MIN").getFirst().getTime());
+        assertEquals(-9223372024957551617L, subject.parseDateString("MAX").getFirst().getTime());
+        assertEquals("0001-01-01T00:00:00.000Z", subject.getDateStart(subject.parseDateString("MIN")));
+
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        I18NUtil.setLocale(new Locale("th", "TH"));
+        try
+        {
+            assertEquals(-79271550000000L, subject.parseDateString("MIN").getFirst().getTime());
+            assertEquals(9223354913317199999L, subject.parseDateString("MAX").getFirst().getTime());
+        }
+        finally
+        {
+            I18NUtil.setLocale(null);
+            setDefaults();
+        }
+    }
+
     @Test
     public void getDateEnd() throws Exception
     {
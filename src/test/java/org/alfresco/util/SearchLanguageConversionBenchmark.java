@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link SearchLanguageConversion} of CIFS and SQL LIKE patterns, as repeated by searches.
+ * <p>
+ * Not run with the unit tests, use the <tt>benchmark</tt> profile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(SearchLanguageConversionBenchmark.PATTERNS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchLanguageConversionBenchmark
+{
+    static final int PATTERNS = 100;
+
+    private final String[] cifsPatterns = new String[PATTERNS];
+    private final String[] likePatterns = new String[PATTERNS];
+
+    @Setup
+    public void setUp()
+    {
+        for (int i = 0; i < PATTERNS; i++)
+        {
+            cifsPatterns[i] = "Folder " + i + "\\*.do?";
+            likePatterns[i] = "Folder " + i + "%.do_";
+        }
+    }
+
+    @Benchmark
+    public void convertCifsToLucene(Blackhole blackhole)
+    {
+        for (String pattern : cifsPatterns)
+        {
+            blackhole.consume(SearchLanguageConversion.convertCifsToLucene(pattern));
+        }
+    }
+
+    @Benchmark
+    public void convertSQLLikeToRegex(Blackhole blackhole)
+    {
+        for (String pattern : likePatterns)
+        {
+            blackhole.consume(SearchLanguageConversion.convertSQLLikeToRegex(pattern));
+        }
+    }
+
+    @Benchmark
+    public void compileSQLLikeToRegex(Blackhole blackhole)
+    {
+        for (String pattern : likePatterns)
+        {
+            blackhole.consume(SearchLanguageConversion.compileSQLLikeToRegex(pattern));
+        }
+    }
+}
@@ -25,6 +25,8 @@
  */
 package org.alfresco.util;
 
+import java.util.regex.Pattern;
+
 import junit.framework.TestCase;
 
 /**
@@ -158,4 +160,31 @@ public class SearchLanguageConversionTest extends TestCase
         assertEquals("no", res[1]);
         assertEquals("hope", res[2]);
     }
+    
+    public void testCachedConversion()
+    {
+        String first = SearchLanguageConversion.convertCifsToLucene("*.doc");
+        String second = SearchLanguageConversion.convertCifsToLucene("*.doc");
+        assertEquals("*.doc", first);
+        assertSame("Repeated conversion should be cached", first, second);
+        assertEquals("report?\\:\\&2*", SearchLanguageConversion.convertCifsToLucene("report?:&2*"));
+        // the same query against a different target language is translated separately
+        assertEquals("AB.*.", SearchLanguageConversion.convert(
+                SearchLanguageConversion.DEF_CIFS, SearchLanguageConversion.DEF_REGEX, "AB*?"));
+        assertEquals("AB*?", SearchLanguageConversion.convert(
+                SearchLanguageConversion.DEF_CIFS, SearchLanguageConversion.DEF_LUCENE, "AB*?"));
+    }
+    
+    public void testCompileSQLLikeToRegex()
+    {
+        Pattern pattern = SearchLanguageConversion.compileSQLLikeToRegex("a%b_c\\%");
+        assertSame(pattern, SearchLanguageConversion.compileSQLLikeToRegex("a%b_c\\%"));
+        assertEquals(SearchLanguageConversion.convertSQLLikeToRegex("a%b_c\\%"), pattern.pattern());
+        assertTrue(pattern.matcher("a\nxxbZc%").matches());
+        assertFalse(pattern.matcher("abZcx").matches());
+        
+        Pattern xpathPattern = SearchLanguageConversion.compileXPathLikeToRegex("%.txt");
+        assertTrue(xpathPattern.matcher("readme.txt").matches());
+        assertFalse(xpathPattern.matcher("readme_txt").matches());
+    }
 }